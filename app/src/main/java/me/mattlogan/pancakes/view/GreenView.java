@@ -30,6 +30,9 @@ public class GreenView extends RelativeLayout {
 
         final ViewStack viewStack = ((ViewStackActivity) getContext()).viewStack();
 
+        // This is the only place we go from here, so get it ready while the main thread is idle
+        viewStack.prefetch(R.layout.view_blue);
+
         findViewById(R.id.green_button_back).setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -27,6 +27,9 @@ public class RedView extends RelativeLayout {
 
         final ViewStack viewStack = ((ViewStackActivity) getContext()).viewStack();
 
+        // This is the only place we go from here, so get it ready while the main thread is idle
+        viewStack.prefetch(R.layout.view_green);
+
         findViewById(R.id.red_button_back).setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
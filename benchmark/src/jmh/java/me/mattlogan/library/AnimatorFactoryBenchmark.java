@@ -0,0 +1,75 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.animation.ValueAnimator;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Animated pops, each settled by the next push. Run with -prof gc to compare the allocation of a
+ * fresh Animator per transition with the reused ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnimatorFactoryBenchmark {
+
+    private static final AnimatorFactory FRESH_SLIDE = new AnimatorFactory() {
+        @Override
+        public Animator createAnimator(final View view) {
+            ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    view.setTranslationX(animation.getAnimatedFraction() * view.getWidth());
+                }
+            });
+            return animator.setDuration(300);
+        }
+    };
+
+    @Param({"fresh", "slide", "fade", "none"})
+    String animation;
+
+    ViewStack viewStack;
+    AnimatorFactory animatorFactory;
+
+    @Setup
+    public void setup() {
+        BenchmarkLayouts.install();
+        viewStack = ViewStack.create(BenchmarkLayouts.newContainer(),
+                BenchmarkLayouts.NO_OP_DELEGATE);
+        viewStack.setViewPool(ViewPool.create(2, 4));
+        viewStack.push(BenchmarkLayouts.RED);
+        viewStack.push(BenchmarkLayouts.GREEN);
+        switch (animation) {
+            case "fresh":
+                animatorFactory = FRESH_SLIDE;
+                break;
+            case "slide":
+                animatorFactory = SlideAnimatorFactory.create(SlideAnimatorFactory.OUT, 300);
+                break;
+            case "fade":
+                animatorFactory = FadeAnimatorFactory.create(FadeAnimatorFactory.OUT, 300);
+                break;
+            default:
+                animatorFactory = AnimatorFactory.NONE;
+        }
+    }
+
+    @Benchmark
+    public View popWithAnimationThenPush() {
+        viewStack.popWithAnimation(animatorFactory);
+        return viewStack.push(BenchmarkLayouts.GREEN);
+    }
+}
@@ -0,0 +1,54 @@
+package me.mattlogan.library;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Stand-in layouts for benchmarks. Every layout id inflates a small screen: a root ViewGroup
+ * with a few children, roughly the shape of the sample app's views.
+ */
+final class BenchmarkLayouts {
+
+    static final int RED = 1;
+    static final int GREEN = 2;
+    static final int BLUE = 3;
+
+    private static final int CHILDREN_PER_SCREEN = 5;
+
+    static final ViewStackDelegate NO_OP_DELEGATE = new ViewStackDelegate() {
+        @Override
+        public void finishStack() {
+        }
+    };
+
+    static void install() {
+        LayoutInflater.setLayoutFactory(new LayoutInflater.LayoutFactory() {
+            @Override
+            public View create(int resource, Context context) {
+                ViewGroup root = new ViewGroup(context);
+                root.setId(resource);
+                for (int i = 0; i < CHILDREN_PER_SCREEN; i++) {
+                    root.addView(new View(context));
+                }
+                return root;
+            }
+        });
+    }
+
+    static ViewGroup newContainer() {
+        return new ViewGroup(new Context());
+    }
+
+    /**
+     * @return A layout id for the provided stack position, cycling through the sample screens
+     */
+    static int layoutAt(int index) {
+        return RED + index % 3;
+    }
+
+    private BenchmarkLayouts() {
+        throw new AssertionError("No instances");
+    }
+}
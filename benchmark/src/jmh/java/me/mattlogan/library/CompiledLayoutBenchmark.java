@@ -0,0 +1,238 @@
+package me.mattlogan.library;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Inflates the sample app's red screen: a root ViewGroup with a row of two buttons and a group of
+ * three radio buttons, 8 Views in all. With "compiled", a CompiledLayout like the ones generated
+ * by layout-compiler creates the Views directly. With "xml", a synthetic inflater creates them the
+ * way LayoutInflater does: by walking the layout's parsed tags, creating each View through a
+ * cached reflective constructor and resolving its attributes by name.
+ * <p>
+ * The "xml" side is a stand-in, not LayoutInflater, and its result is not a measurement of real
+ * inflation. It leaves out parsing, since Android reads layouts from precompiled binary XML and
+ * the layout is tokenized once in setup() here, and it leaves out the styles and themes real Views
+ * resolve while they're constructed from attributes. Compare the two on a device before relying
+ * on the difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompiledLayoutBenchmark {
+
+    private static final String RED_LAYOUT = ""
+            + "<ViewGroup id='red_view' background='#FF0000' layout_width='match_parent'"
+            + "    layout_height='match_parent'>"
+            + "  <ViewGroup id='red_buttons' layout_width='wrap_content'"
+            + "      layout_height='wrap_content'>"
+            + "    <View id='red_button_back' layout_width='wrap_content'"
+            + "        layout_height='wrap_content'/>"
+            + "    <View id='red_button_go_to_green' layout_width='wrap_content'"
+            + "        layout_height='wrap_content'/>"
+            + "  </ViewGroup>"
+            + "  <ViewGroup id='red_radio_group' layout_width='wrap_content'"
+            + "      layout_height='wrap_content'>"
+            + "    <View id='red_radio_button_1' layout_width='wrap_content'"
+            + "        layout_height='wrap_content'/>"
+            + "    <View id='red_radio_button_2' layout_width='wrap_content'"
+            + "        layout_height='wrap_content'/>"
+            + "    <View id='red_radio_button_3' layout_width='wrap_content'"
+            + "        layout_height='wrap_content'/>"
+            + "  </ViewGroup>"
+            + "</ViewGroup>";
+
+    // A parsed start tag; depth says where it goes in the hierarchy
+    private static final class Tag {
+        final String name;
+        final int depth;
+        final String[] attributeNames;
+        final String[] attributeValues;
+
+        Tag(String name, int depth, String[] attributeNames, String[] attributeValues) {
+            this.name = name;
+            this.depth = depth;
+            this.attributeNames = attributeNames;
+            this.attributeValues = attributeValues;
+        }
+    }
+
+    // Like LayoutInflater's constructor cache
+    private static final HashMap<String, Constructor<? extends View>> CONSTRUCTORS =
+            new HashMap<>();
+
+    @Param({"xml", "compiled"})
+    String inflation;
+
+    ViewInflater inflater;
+    ViewGroup container;
+
+    @Setup
+    public void setup() throws XMLStreamException {
+        container = BenchmarkLayouts.newContainer();
+        inflater = new ViewInflater(LayoutInflater.from(container.getContext()));
+        final Tag[] tags = tokenize(RED_LAYOUT);
+        LayoutInflater.setLayoutFactory(new LayoutInflater.LayoutFactory() {
+            @Override
+            public View create(int resource, Context context) {
+                return inflate(tags, context);
+            }
+        });
+        if (inflation.equals("compiled")) {
+            inflater.setCompiledLayout(BenchmarkLayouts.RED, new CompiledLayout() {
+                @Override
+                public View createView(Context context, ViewGroup container) {
+                    return createRed(context);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public View inflate() {
+        return inflater.inflate(BenchmarkLayouts.RED, container);
+    }
+
+    // What layout-compiler generates for the layout
+    static View createRed(Context context) {
+        ViewGroup v0 = new ViewGroup(context);
+        v0.setId(id("red_view"));
+        v0.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        ViewGroup v1 = new ViewGroup(context);
+        v1.setId(id("red_buttons"));
+        View v2 = new View(context);
+        v2.setId(id("red_button_back"));
+        v1.addView(v2, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        View v3 = new View(context);
+        v3.setId(id("red_button_go_to_green"));
+        v1.addView(v3, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        v0.addView(v1, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        ViewGroup v4 = new ViewGroup(context);
+        v4.setId(id("red_radio_group"));
+        View v5 = new View(context);
+        v5.setId(id("red_radio_button_1"));
+        v4.addView(v5, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        View v6 = new View(context);
+        v6.setId(id("red_radio_button_2"));
+        v4.addView(v6, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        View v7 = new View(context);
+        v7.setId(id("red_radio_button_3"));
+        v4.addView(v7, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        v0.addView(v4, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        return v0;
+    }
+
+    private static Tag[] tokenize(String layout) throws XMLStreamException {
+        XMLStreamReader reader =
+                XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(layout));
+        ArrayList<Tag> tags = new ArrayList<>();
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String[] names = new String[reader.getAttributeCount()];
+                String[] values = new String[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = reader.getAttributeLocalName(i);
+                    values[i] = reader.getAttributeValue(i);
+                }
+                tags.add(new Tag(reader.getLocalName(), depth++, names, values));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return tags.toArray(new Tag[tags.size()]);
+    }
+
+    private static View inflate(Tag[] tags, Context context) {
+        View root = null;
+        ViewGroup[] parents = new ViewGroup[tags.length];
+        for (Tag tag : tags) {
+            View view = createView(tag.name, context);
+            int width = 0;
+            int height = 0;
+            for (int i = 0; i < tag.attributeNames.length; i++) {
+                String value = tag.attributeValues[i];
+                switch (tag.attributeNames[i]) {
+                    case "id":
+                        view.setId(id(value));
+                        break;
+                    case "layout_width":
+                        width = size(value);
+                        break;
+                    case "layout_height":
+                        height = size(value);
+                        break;
+                    default:
+                        // Resolved, but not modeled by the stand-ins
+                        break;
+                }
+            }
+            ViewGroup.LayoutParams params = new ViewGroup.LayoutParams(width, height);
+            if (tag.depth == 0) {
+                root = view;
+                view.setLayoutParams(params);
+            } else {
+                parents[tag.depth - 1].addView(view, params);
+            }
+            if (view instanceof ViewGroup) {
+                parents[tag.depth] = (ViewGroup) view;
+            }
+        }
+        return root;
+    }
+
+    private static View createView(String name, Context context) {
+        Constructor<? extends View> constructor = CONSTRUCTORS.get(name);
+        try {
+            if (constructor == null) {
+                constructor = Class.forName("android.view." + name).asSubclass(View.class)
+                        .getConstructor(Context.class);
+                CONSTRUCTORS.put(name, constructor);
+            }
+            return constructor.newInstance(context);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int size(String value) {
+        return value.equals("match_parent")
+                ? ViewGroup.LayoutParams.MATCH_PARENT : ViewGroup.LayoutParams.WRAP_CONTENT;
+    }
+
+    // Stands in for an R.id constant
+    private static int id(String name) {
+        return name.length();
+    }
+}
@@ -0,0 +1,73 @@
+package me.mattlogan.library;
+
+import android.os.Parcel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParcelableIntStackBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int depth;
+
+    ParcelableIntStack stack;
+    // Holds the written stack for createFromParcel()
+    Parcel parcel;
+    // Reused by writeToParcel(), like a Parcel the system writes saved state into
+    Parcel out;
+
+    @Setup
+    public void setup() {
+        stack = new ParcelableIntStack();
+        for (int i = 0; i < depth; i++) {
+            stack.push(BenchmarkLayouts.layoutAt(i));
+        }
+        parcel = Parcel.obtain();
+        stack.writeToParcel(parcel, 0);
+        out = Parcel.obtain();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parcel.recycle();
+        out.recycle();
+    }
+
+    @Benchmark
+    public int pushThenPop() {
+        stack.push(BenchmarkLayouts.RED);
+        return stack.pop();
+    }
+
+    @Benchmark
+    public int peek() {
+        return stack.peek();
+    }
+
+    @Benchmark
+    public Parcel writeToParcel() {
+        // A recycled Parcel must not be used again, so the same one is emptied instead
+        out.setDataSize(0);
+        out.setDataPosition(0);
+        stack.writeToParcel(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public ParcelableIntStack createFromParcel() {
+        parcel.setDataPosition(0);
+        return ParcelableIntStack.CREATOR.createFromParcel(parcel);
+    }
+}
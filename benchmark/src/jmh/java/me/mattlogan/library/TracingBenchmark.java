@@ -0,0 +1,55 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of trace sections and a StackEventLog on a push and pop. With "on", both are enabled;
+ * the gc profiler should show the same allocation rate as with "off".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TracingBenchmark {
+
+    @Param({"off", "on"})
+    String instrumentation;
+
+    ViewStack viewStack;
+
+    @Setup
+    public void setup() {
+        BenchmarkLayouts.install();
+        viewStack = ViewStack.create(BenchmarkLayouts.newContainer(),
+                BenchmarkLayouts.NO_OP_DELEGATE);
+        // Pooled, so that only the ViewStack's own work allocates
+        viewStack.setViewPool(ViewPool.create(2, 8));
+        viewStack.push(BenchmarkLayouts.RED);
+        if (instrumentation.equals("on")) {
+            ViewStack.setTraceSectionsEnabled(true);
+            viewStack.setStackEventLog(StackEventLog.create(64));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ViewStack.setTraceSectionsEnabled(false);
+    }
+
+    @Benchmark
+    public View pushThenPop() {
+        viewStack.push(BenchmarkLayouts.GREEN);
+        return viewStack.pop();
+    }
+}
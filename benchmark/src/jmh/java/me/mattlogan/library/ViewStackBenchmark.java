@@ -0,0 +1,142 @@
+package me.mattlogan.library;
+
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewStackBenchmark {
+
+    private static final String TAG = "stack";
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int depth;
+
+    ViewStack viewStack;
+    Bundle bundle;
+
+    @Setup
+    public void setup() {
+        BenchmarkLayouts.install();
+        viewStack = ViewStack.create(BenchmarkLayouts.newContainer(),
+                BenchmarkLayouts.NO_OP_DELEGATE);
+        for (int i = 0; i < depth; i++) {
+            viewStack.push(BenchmarkLayouts.layoutAt(i));
+        }
+        bundle = new Bundle();
+        viewStack.saveToBundle(bundle, TAG);
+    }
+
+    @Benchmark
+    public View pushThenPop() {
+        viewStack.push(BenchmarkLayouts.GREEN);
+        return viewStack.pop();
+    }
+
+    @Benchmark
+    public View peek() {
+        return viewStack.peek();
+    }
+
+    @Benchmark
+    public Bundle saveToBundle() {
+        viewStack.saveToBundle(bundle, TAG);
+        return bundle;
+    }
+
+    /**
+     * Rebuilding needs a fresh ViewStack for every invocation
+     */
+    @State(Scope.Thread)
+    public static class Rebuild {
+
+        @Param({"1", "10", "100", "1000", "10000"})
+        int depth;
+
+        Bundle bundle;
+        ViewGroup container;
+        ViewStack viewStack;
+
+        @Setup(Level.Trial)
+        public void saveStack() {
+            BenchmarkLayouts.install();
+            ViewStack saved = ViewStack.create(BenchmarkLayouts.newContainer(),
+                    BenchmarkLayouts.NO_OP_DELEGATE);
+            for (int i = 0; i < depth; i++) {
+                saved.push(BenchmarkLayouts.layoutAt(i));
+            }
+            bundle = new Bundle();
+            saved.saveToBundle(bundle, TAG);
+        }
+
+        @Setup(Level.Invocation)
+        public void createViewStack() {
+            container = BenchmarkLayouts.newContainer();
+            viewStack = ViewStack.create(container, BenchmarkLayouts.NO_OP_DELEGATE);
+        }
+    }
+
+    /**
+     * Like Rebuild, but the Bundle holds a ParcelableIntStack, as saved by versions before the
+     * compact encoding
+     */
+    @State(Scope.Thread)
+    public static class LegacyRebuild {
+
+        @Param({"1", "10", "100", "1000", "10000"})
+        int depth;
+
+        Bundle bundle;
+        ViewGroup container;
+        ViewStack viewStack;
+
+        @Setup(Level.Trial)
+        public void saveStack() {
+            BenchmarkLayouts.install();
+            ParcelableIntStack stack = new ParcelableIntStack();
+            for (int i = 0; i < depth; i++) {
+                stack.push(BenchmarkLayouts.layoutAt(i));
+            }
+            bundle = new Bundle();
+            bundle.putParcelable(TAG, stack);
+        }
+
+        @Setup(Level.Invocation)
+        public void createViewStack() {
+            container = BenchmarkLayouts.newContainer();
+            viewStack = ViewStack.create(container, BenchmarkLayouts.NO_OP_DELEGATE);
+        }
+    }
+
+    @Benchmark
+    public ViewGroup rebuildFromBundle(Rebuild state) {
+        state.viewStack.rebuildFromBundle(state.bundle, TAG);
+        return state.container;
+    }
+
+    @Benchmark
+    public ViewGroup rebuildFromBundleLazily(Rebuild state) {
+        state.viewStack.rebuildFromBundleLazily(state.bundle, TAG);
+        return state.container;
+    }
+
+    @Benchmark
+    public ViewGroup rebuildFromLegacyBundle(LegacyRebuild state) {
+        state.viewStack.rebuildFromBundle(state.bundle, TAG);
+        return state.container;
+    }
+}
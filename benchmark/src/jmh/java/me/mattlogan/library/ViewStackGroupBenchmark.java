@@ -0,0 +1,60 @@
+package me.mattlogan.library;
+
+import android.view.ViewGroup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Switches between the tabs of a ViewStackGroup. With the "unlimited" budget every inactive tab
+ * keeps its Views and a switch only re-attaches them. With the "saved" budget inactive tabs are
+ * trimmed to saved state, so a switch inflates the top View, from the shared ViewPool if it has
+ * one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewStackGroupBenchmark {
+
+    private static final String[] TABS = {"home", "search", "profile"};
+
+    @Param({"unlimited", "saved"})
+    String budget;
+
+    @Param({"1", "10"})
+    int depth;
+
+    ViewStackGroup group;
+    int next;
+
+    @Setup
+    public void setup() {
+        BenchmarkLayouts.install();
+        ViewGroup container = BenchmarkLayouts.newContainer();
+        group = ViewStackGroup.create(container, BenchmarkLayouts.NO_OP_DELEGATE);
+        group.setViewPool(ViewPool.create(2, 8));
+        if (budget.equals("saved")) {
+            group.setInactiveViewByteBudget(1, MemoryEstimator.DEFAULT);
+        }
+        for (String tab : TABS) {
+            ViewStack viewStack = group.setActiveStack(tab);
+            for (int i = 0; i < depth; i++) {
+                viewStack.push(BenchmarkLayouts.layoutAt(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public ViewStack switchTab() {
+        next = (next + 1) % TABS.length;
+        return group.setActiveStack(TABS[next]);
+    }
+}
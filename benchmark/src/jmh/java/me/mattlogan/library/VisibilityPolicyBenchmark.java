@@ -0,0 +1,89 @@
+package me.mattlogan.library;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares VisibilityPolicies. pushThenPopWithLayout() runs a layout pass after each operation,
+ * so it includes re-laying out the uncovered View. drawPass() walks every View which would be
+ * drawn in a frame, as a measure of overdraw.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisibilityPolicyBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Param({"GONE", "INVISIBLE", "KEEP_1_VISIBLE"})
+    String policy;
+
+    @Param({"2", "10"})
+    int depth;
+
+    ViewGroup container;
+    ViewStack viewStack;
+
+    @Setup
+    public void setup() {
+        BenchmarkLayouts.install();
+        container = BenchmarkLayouts.newContainer();
+        viewStack = ViewStack.create(container, BenchmarkLayouts.NO_OP_DELEGATE);
+        viewStack.setVisibilityPolicy(visibilityPolicy(policy));
+        for (int i = 0; i < depth; i++) {
+            viewStack.push(BenchmarkLayouts.layoutAt(i));
+        }
+        container.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public View pushThenPopWithLayout() {
+        viewStack.push(BenchmarkLayouts.GREEN);
+        container.layout(0, 0, WIDTH, HEIGHT);
+        View popped = viewStack.pop();
+        container.layout(0, 0, WIDTH, HEIGHT);
+        return popped;
+    }
+
+    @Benchmark
+    public int drawPass() {
+        return draw(container);
+    }
+
+    private static int draw(View view) {
+        if (view.getVisibility() != View.VISIBLE) return 0;
+        int drawn = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                drawn += draw(group.getChildAt(i));
+            }
+        }
+        return drawn;
+    }
+
+    private static VisibilityPolicy visibilityPolicy(String name) {
+        switch (name) {
+            case "GONE":
+                return VisibilityPolicy.GONE;
+            case "INVISIBLE":
+                return VisibilityPolicy.INVISIBLE;
+            case "KEEP_1_VISIBLE":
+                return VisibilityPolicy.KeepVisible.create(1);
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package android.animation;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.animation.Animator. As on Android, the base class doesn't run
+ * anything: start(), cancel() and end() are no-ops unless a subclass overrides them.
+ */
+public abstract class Animator implements Cloneable {
+
+    ArrayList<AnimatorListener> listeners;
+
+    public void start() {
+    }
+
+    public void cancel() {
+    }
+
+    public void end() {
+    }
+
+    public abstract long getStartDelay();
+
+    public abstract void setStartDelay(long startDelay);
+
+    public abstract Animator setDuration(long duration);
+
+    public abstract long getDuration();
+
+    public abstract void setInterpolator(TimeInterpolator value);
+
+    public abstract boolean isRunning();
+
+    public boolean isStarted() {
+        return isRunning();
+    }
+
+    public void addListener(AnimatorListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(AnimatorListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    public ArrayList<AnimatorListener> getListeners() {
+        return listeners;
+    }
+
+    public void removeAllListeners() {
+        if (listeners != null) {
+            listeners.clear();
+        }
+    }
+
+    public void setTarget(Object target) {
+    }
+
+    public interface AnimatorListener {
+        void onAnimationStart(Animator animation);
+
+        void onAnimationEnd(Animator animation);
+
+        void onAnimationCancel(Animator animation);
+
+        void onAnimationRepeat(Animator animation);
+    }
+}
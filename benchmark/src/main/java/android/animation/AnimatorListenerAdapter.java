@@ -0,0 +1,23 @@
+package android.animation;
+
+/**
+ * JVM stand-in for android.animation.AnimatorListenerAdapter.
+ */
+public abstract class AnimatorListenerAdapter implements Animator.AnimatorListener {
+
+    @Override
+    public void onAnimationStart(Animator animation) {
+    }
+
+    @Override
+    public void onAnimationEnd(Animator animation) {
+    }
+
+    @Override
+    public void onAnimationCancel(Animator animation) {
+    }
+
+    @Override
+    public void onAnimationRepeat(Animator animation) {
+    }
+}
@@ -0,0 +1,8 @@
+package android.animation;
+
+/**
+ * JVM stand-in for android.animation.TimeInterpolator.
+ */
+public interface TimeInterpolator {
+    float getInterpolation(float input);
+}
@@ -0,0 +1,161 @@
+package android.animation;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.animation.ValueAnimator. It runs on the stand-in Choreographer: the
+ * first frame after start() is its start time, and it ends in the first frame at or after its
+ * duration. Without an interpolator it's linear. Unlike Android, listeners aren't copied before
+ * they're called, so dispatching doesn't allocate; they may still remove themselves.
+ */
+public class ValueAnimator extends Animator {
+
+    public interface AnimatorUpdateListener {
+        void onAnimationUpdate(ValueAnimator animation);
+    }
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) return;
+            if (startNanos < 0) {
+                startNanos = frameTimeNanos;
+            }
+            long elapsedMillis = (frameTimeNanos - startNanos) / 1000000;
+            float fraction = duration > 0 ? Math.min(1f, (float) elapsedMillis / duration) : 1f;
+            animateValue(fraction);
+            if (fraction >= 1f) {
+                endAnimation();
+            } else {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    };
+
+    // Only the fraction is modelled; the values aren't interpolated
+    private float[] values;
+    private long duration = 300;
+    private long startDelay;
+    private TimeInterpolator interpolator;
+    private ArrayList<AnimatorUpdateListener> updateListeners;
+    private boolean running;
+    private long startNanos;
+    private float animatedFraction;
+
+    public static ValueAnimator ofFloat(float... values) {
+        ValueAnimator animator = new ValueAnimator();
+        animator.setFloatValues(values);
+        return animator;
+    }
+
+    public void setFloatValues(float... values) {
+        this.values = values;
+    }
+
+    public void addUpdateListener(AnimatorUpdateListener listener) {
+        if (updateListeners == null) {
+            updateListeners = new ArrayList<>();
+        }
+        updateListeners.add(listener);
+    }
+
+    public void removeUpdateListener(AnimatorUpdateListener listener) {
+        if (updateListeners != null) {
+            updateListeners.remove(listener);
+        }
+    }
+
+    public float getAnimatedFraction() {
+        return animatedFraction;
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            cancel();
+        }
+        running = true;
+        startNanos = -1;
+        if (listeners != null) {
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                listeners.get(i).onAnimationStart(this);
+            }
+        }
+        // Like Android, the start values are applied right away
+        animateValue(0);
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    @Override
+    public void cancel() {
+        if (!running) return;
+        if (listeners != null) {
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                listeners.get(i).onAnimationCancel(this);
+            }
+        }
+        endAnimation();
+    }
+
+    @Override
+    public void end() {
+        if (!running) return;
+        animateValue(1);
+        endAnimation();
+    }
+
+    private void endAnimation() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        if (listeners != null) {
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                if (i < listeners.size()) {
+                    listeners.get(i).onAnimationEnd(this);
+                }
+            }
+        }
+    }
+
+    private void animateValue(float fraction) {
+        animatedFraction =
+                interpolator != null ? interpolator.getInterpolation(fraction) : fraction;
+        if (updateListeners != null) {
+            for (int i = updateListeners.size() - 1; i >= 0; i--) {
+                updateListeners.get(i).onAnimationUpdate(this);
+            }
+        }
+    }
+
+    @Override
+    public long getStartDelay() {
+        return startDelay;
+    }
+
+    @Override
+    public void setStartDelay(long startDelay) {
+        this.startDelay = startDelay;
+    }
+
+    @Override
+    public ValueAnimator setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public void setInterpolator(TimeInterpolator value) {
+        this.interpolator = value;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
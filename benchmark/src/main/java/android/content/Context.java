@@ -0,0 +1,42 @@
+package android.content;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.content.Context. Every Context is its own application Context, and
+ * dispatchTrimMemory() plays the system's part in delivering memory pressure.
+ */
+public class Context {
+
+    private final ArrayList<ComponentCallbacks> componentCallbacks = new ArrayList<>();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+        componentCallbacks.add(callback);
+    }
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+        componentCallbacks.remove(callback);
+    }
+
+    /**
+     * Calls onTrimMemory() of every registered ComponentCallbacks2. Stand-in only.
+     */
+    public void dispatchTrimMemory(int level) {
+        for (ComponentCallbacks callback : new ArrayList<>(componentCallbacks)) {
+            if (callback instanceof ComponentCallbacks2) {
+                ((ComponentCallbacks2) callback).onTrimMemory(level);
+            }
+        }
+    }
+
+    /**
+     * @return The number of registered ComponentCallbacks. Stand-in only.
+     */
+    public int getComponentCallbacksCount() {
+        return componentCallbacks.size();
+    }
+}
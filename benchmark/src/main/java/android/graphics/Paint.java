@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for android.graphics.Paint. Only used as a setLayerType() argument.
+ */
+public class Paint {
+}
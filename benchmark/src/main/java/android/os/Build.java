@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Build. Reports the library's compile SDK version.
+ */
+public class Build {
+
+    public static class VERSION {
+        public static final int SDK_INT = 23;
+    }
+
+    public static class VERSION_CODES {
+        public static final int HONEYCOMB = 11;
+        public static final int HONEYCOMB_MR1 = 12;
+        public static final int ICE_CREAM_SANDWICH = 14;
+        public static final int JELLY_BEAN = 16;
+        public static final int JELLY_BEAN_MR1 = 17;
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int KITKAT = 19;
+    }
+}
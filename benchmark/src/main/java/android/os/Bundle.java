@@ -0,0 +1,104 @@
+package android.os;
+
+import android.util.SparseArray;
+
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * JVM stand-in for android.os.Bundle. Like a Bundle which hasn't been parceled yet, it holds
+ * references to its values.
+ */
+public final class Bundle implements Parcelable {
+
+    private final HashMap<String, Object> map = new HashMap<>();
+
+    public void putParcelable(String key, Parcelable value) {
+        map.put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(String key) {
+        return (T) map.get(key);
+    }
+
+    public void putBundle(String key, Bundle value) {
+        map.put(key, value);
+    }
+
+    public Bundle getBundle(String key) {
+        return (Bundle) map.get(key);
+    }
+
+    public void putSparseParcelableArray(String key, SparseArray<? extends Parcelable> value) {
+        map.put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> SparseArray<T> getSparseParcelableArray(String key) {
+        return (SparseArray<T>) map.get(key);
+    }
+
+    public void putByteArray(String key, byte[] value) {
+        map.put(key, value);
+    }
+
+    public byte[] getByteArray(String key) {
+        return (byte[]) map.get(key);
+    }
+
+    public void putString(String key, String value) {
+        map.put(key, value);
+    }
+
+    public String getString(String key) {
+        return (String) map.get(key);
+    }
+
+    public void putStringArray(String key, String[] value) {
+        map.put(key, value);
+    }
+
+    public String[] getStringArray(String key) {
+        return (String[]) map.get(key);
+    }
+
+    public void putLong(String key, long value) {
+        map.put(key, value);
+    }
+
+    public long getLong(String key) {
+        Long value = (Long) map.get(key);
+        return value == null ? 0L : value;
+    }
+
+    public Object get(String key) {
+        return map.get(key);
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public void remove(String key) {
+        map.remove(key);
+    }
+
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        throw new UnsupportedOperationException("Not supported by the JVM stand-in");
+    }
+}
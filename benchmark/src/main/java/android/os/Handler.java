@@ -0,0 +1,38 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Handler, posting to the stand-in main Looper.
+ */
+public class Handler {
+
+    private final Looper looper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public final boolean post(Runnable runnable) {
+        return postAtTime(runnable, SystemClock.uptimeMillis());
+    }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        return postAtTime(runnable, SystemClock.uptimeMillis() + delayMillis);
+    }
+
+    public final boolean postAtTime(Runnable runnable, long uptimeMillis) {
+        looper.getQueue().enqueue(this, runnable, uptimeMillis);
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        looper.getQueue().remove(this, runnable);
+    }
+}
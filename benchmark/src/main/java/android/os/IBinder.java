@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.IBinder. Only used as an opaque window token.
+ */
+public interface IBinder {
+}
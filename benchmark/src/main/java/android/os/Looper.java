@@ -0,0 +1,31 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Looper. There's a single main Looper, and whichever thread calls
+ * MessageQueue.runUntilIdle() acts as the main thread.
+ */
+public final class Looper {
+
+    private static final Looper MAIN = new Looper();
+
+    private final MessageQueue queue = new MessageQueue();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+
+    public static Looper myLooper() {
+        return MAIN;
+    }
+
+    public static MessageQueue myQueue() {
+        return MAIN.queue;
+    }
+
+    public MessageQueue getQueue() {
+        return queue;
+    }
+}
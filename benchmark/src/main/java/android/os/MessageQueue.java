@@ -0,0 +1,94 @@
+package android.os;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.os.MessageQueue. Messages only run when runUntilIdle() is called,
+ * which isn't part of the Android API.
+ */
+public final class MessageQueue {
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+    private final ArrayList<Message> messages = new ArrayList<>();
+    private final ArrayList<IdleHandler> idleHandlers = new ArrayList<>();
+
+    public void addIdleHandler(IdleHandler handler) {
+        synchronized (this) {
+            idleHandlers.add(handler);
+        }
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+        synchronized (this) {
+            idleHandlers.remove(handler);
+        }
+    }
+
+    synchronized void enqueue(Handler handler, Runnable runnable, long uptimeMillis) {
+        int index = messages.size();
+        while (index > 0 && messages.get(index - 1).when > uptimeMillis) {
+            index--;
+        }
+        messages.add(index, new Message(handler, runnable, uptimeMillis));
+    }
+
+    synchronized void remove(Handler handler, Runnable runnable) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Message message = messages.get(i);
+            if (message.handler == handler && message.runnable == runnable) {
+                messages.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Runs all messages which are due, then the idle handlers, until neither has anything left to
+     * do. Stand-in only.
+     */
+    public void runUntilIdle() {
+        while (true) {
+            Runnable next = null;
+            synchronized (this) {
+                if (!messages.isEmpty() && messages.get(0).when <= SystemClock.uptimeMillis()) {
+                    next = messages.remove(0).runnable;
+                }
+            }
+            if (next != null) {
+                next.run();
+                continue;
+            }
+            IdleHandler[] handlers;
+            synchronized (this) {
+                handlers = idleHandlers.toArray(new IdleHandler[idleHandlers.size()]);
+            }
+            if (handlers.length == 0) return;
+            for (IdleHandler handler : handlers) {
+                if (!handler.queueIdle()) {
+                    removeIdleHandler(handler);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of idle handlers and messages which haven't run yet. Stand-in only.
+     */
+    public synchronized int pendingCount() {
+        return messages.size() + idleHandlers.size();
+    }
+
+    private static final class Message {
+        final Handler handler;
+        final Runnable runnable;
+        final long when;
+
+        Message(Handler handler, Runnable runnable, long when) {
+            this.handler = handler;
+            this.runnable = runnable;
+            this.when = when;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package android.os;
+
+import java.util.Arrays;
+
+/**
+ * JVM stand-in for android.os.Parcel, backed by a growable int array. Only ints and int arrays
+ * are supported.
+ */
+public final class Parcel {
+
+    private int[] data = new int[16];
+    private int size;
+    private int position;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        size = 0;
+        position = 0;
+    }
+
+    public int dataSize() {
+        return size * 4;
+    }
+
+    public void setDataSize(int size) {
+        this.size = size / 4;
+        position = Math.min(position, this.size);
+    }
+
+    public void setDataPosition(int position) {
+        this.position = position / 4;
+    }
+
+    public void writeInt(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = value;
+    }
+
+    public int readInt() {
+        return data[position++];
+    }
+
+    public void writeIntArray(int[] values) {
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    public int[] createIntArray() {
+        int[] values = new int[readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readInt();
+        }
+        return values;
+    }
+}
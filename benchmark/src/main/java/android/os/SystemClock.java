@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.SystemClock.
+ */
+public final class SystemClock {
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime();
+    }
+
+    private SystemClock() {
+    }
+}
@@ -0,0 +1,36 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Trace. Sections aren't recorded, but their nesting depth is tracked
+ * per thread so that unbalanced sections can be detected.
+ */
+public final class Trace {
+
+    private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    public static void beginSection(String sectionName) {
+        if (sectionName.length() > 127) {
+            throw new IllegalArgumentException("sectionName is too long");
+        }
+        DEPTH.get()[0]++;
+    }
+
+    public static void endSection() {
+        DEPTH.get()[0]--;
+    }
+
+    /**
+     * @return The number of sections begun and not yet ended on this thread. Stand-in only.
+     */
+    public static int getDepth() {
+        return DEPTH.get()[0];
+    }
+
+    private Trace() {
+    }
+}
@@ -0,0 +1,54 @@
+package android.view;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.view.Choreographer. There's a single instance, like the main
+ * thread's, and no vsync: doFrame() runs the posted frame callbacks for a given frame time.
+ */
+public final class Choreographer {
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final Choreographer INSTANCE = new Choreographer();
+
+    private ArrayList<FrameCallback> callbacks = new ArrayList<>();
+
+    private Choreographer() {
+    }
+
+    public static Choreographer getInstance() {
+        return INSTANCE;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+        callbacks.add(callback);
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        while (callbacks.remove(callback)) {
+            // Removes every posting of the callback, like Android
+        }
+    }
+
+    /**
+     * Runs the callbacks which were posted before this frame. Callbacks which they post run in
+     * the next frame. Stand-in only.
+     */
+    public void doFrame(long frameTimeNanos) {
+        ArrayList<FrameCallback> frame = callbacks;
+        callbacks = new ArrayList<>();
+        for (FrameCallback callback : frame) {
+            callback.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * @return The number of callbacks waiting for the next frame. Stand-in only.
+     */
+    public int getFrameCallbackCount() {
+        return callbacks.size();
+    }
+}
@@ -0,0 +1,11 @@
+package android.view;
+
+/**
+ * JVM stand-in for android.view.Display, with a fixed refresh rate.
+ */
+public class Display {
+
+    public float getRefreshRate() {
+        return 60;
+    }
+}
@@ -0,0 +1,54 @@
+package android.view;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for android.view.LayoutInflater. There's no XML; layouts are built by the
+ * LayoutFactory set with setLayoutFactory(), which isn't part of the Android API.
+ */
+public class LayoutInflater {
+
+    /**
+     * Builds the View hierarchy for a layout id. Stand-in only.
+     */
+    public interface LayoutFactory {
+        View create(int resource, Context context);
+    }
+
+    private static volatile LayoutFactory layoutFactory = new LayoutFactory() {
+        @Override
+        public View create(int resource, Context context) {
+            return new View(context);
+        }
+    };
+
+    private final Context context;
+
+    protected LayoutInflater(Context context) {
+        this.context = context;
+    }
+
+    public static LayoutInflater from(Context context) {
+        return new LayoutInflater(context);
+    }
+
+    /**
+     * Sets the LayoutFactory used by every LayoutInflater. Stand-in only.
+     */
+    public static void setLayoutFactory(LayoutFactory factory) {
+        layoutFactory = factory;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public View inflate(int resource, ViewGroup root, boolean attachToRoot) {
+        View view = layoutFactory.create(resource, context);
+        if (attachToRoot && root != null) {
+            root.addView(view);
+            return root;
+        }
+        return view;
+    }
+}
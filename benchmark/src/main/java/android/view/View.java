@@ -0,0 +1,307 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.os.IBinder;
+import android.os.Parcelable;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.view.View. It models visibility, parents, size, ids, hierarchy state
+ * and ViewTreeObservers. There's no measuring or drawing; call layout() to give a View a size.
+ * Like on Android, layout() skips Views whose size didn't change unless they requested a layout,
+ * and switching to or from GONE requests one.
+ * There are no windows either: a View counts as attached while it has a parent.
+ */
+public class View {
+
+    public interface OnAttachStateChangeListener {
+        void onViewAttachedToWindow(View v);
+
+        void onViewDetachedFromWindow(View v);
+    }
+
+    public static final int NO_ID = -1;
+
+    public static final int VISIBLE = 0x0;
+    public static final int INVISIBLE = 0x4;
+    public static final int GONE = 0x8;
+
+    public static final int LAYER_TYPE_NONE = 0;
+    public static final int LAYER_TYPE_SOFTWARE = 1;
+    public static final int LAYER_TYPE_HARDWARE = 2;
+
+    private static final IBinder WINDOW_TOKEN = new IBinder() {
+    };
+
+    private final Context context;
+    private int id = NO_ID;
+    private int visibility = VISIBLE;
+    private int width;
+    private int height;
+    private float alpha = 1;
+    private float translationX;
+    private float translationY;
+    private float scaleX = 1;
+    private float scaleY = 1;
+    private float rotation;
+    private int layerType = LAYER_TYPE_NONE;
+    private boolean layoutRequested = true;
+    ViewParent parent;
+    private ViewTreeObserver floatingTreeObserver;
+    ViewTreeObserver rootTreeObserver;
+    Parcelable savedState;
+    ViewGroup.LayoutParams layoutParams;
+    private ArrayList<OnAttachStateChangeListener> attachStateListeners;
+
+    public View(Context context) {
+        this.context = context;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public ViewGroup.LayoutParams getLayoutParams() {
+        return layoutParams;
+    }
+
+    public void setLayoutParams(ViewGroup.LayoutParams params) {
+        this.layoutParams = params;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getVisibility() {
+        return visibility;
+    }
+
+    public void setVisibility(int visibility) {
+        if (visibility != this.visibility && (visibility == GONE || this.visibility == GONE)) {
+            requestLayout();
+        }
+        this.visibility = visibility;
+    }
+
+    public void requestLayout() {
+        layoutRequested = true;
+        if (parent instanceof View) {
+            View parentView = (View) parent;
+            if (!parentView.layoutRequested) {
+                parentView.requestLayout();
+            }
+        }
+    }
+
+    public boolean isLayoutRequested() {
+        return layoutRequested;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public void setAlpha(float alpha) {
+        this.alpha = alpha;
+    }
+
+    public float getTranslationX() {
+        return translationX;
+    }
+
+    public void setTranslationX(float translationX) {
+        this.translationX = translationX;
+    }
+
+    public float getTranslationY() {
+        return translationY;
+    }
+
+    public void setTranslationY(float translationY) {
+        this.translationY = translationY;
+    }
+
+    public float getScaleX() {
+        return scaleX;
+    }
+
+    public void setScaleX(float scaleX) {
+        this.scaleX = scaleX;
+    }
+
+    public float getScaleY() {
+        return scaleY;
+    }
+
+    public void setScaleY(float scaleY) {
+        this.scaleY = scaleY;
+    }
+
+    public float getRotation() {
+        return rotation;
+    }
+
+    public void setRotation(float rotation) {
+        this.rotation = rotation;
+    }
+
+    public int getLayerType() {
+        return layerType;
+    }
+
+    public void setLayerType(int layerType, Paint paint) {
+        this.layerType = layerType;
+    }
+
+    /**
+     * Stand-in Views are always hardware accelerated, so hardware layer handling can be measured.
+     */
+    /**
+     * There are no windows, so there's never a Display
+     */
+    public Display getDisplay() {
+        return null;
+    }
+
+    public boolean isHardwareAccelerated() {
+        return true;
+    }
+
+    public IBinder getWindowToken() {
+        return parent != null ? WINDOW_TOKEN : null;
+    }
+
+    public ViewParent getParent() {
+        return parent;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void layout(int left, int top, int right, int bottom) {
+        boolean changed = width != right - left || height != bottom - top;
+        width = right - left;
+        height = bottom - top;
+        if (changed || layoutRequested) {
+            layoutRequested = false;
+            onLayout(changed, left, top, right, bottom);
+        }
+    }
+
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    }
+
+    public ViewTreeObserver getViewTreeObserver() {
+        View root = getRootView();
+        if (root.rootTreeObserver != null) {
+            return root.rootTreeObserver;
+        }
+        if (floatingTreeObserver == null || !floatingTreeObserver.isAlive()) {
+            floatingTreeObserver = new ViewTreeObserver();
+        }
+        return floatingTreeObserver;
+    }
+
+    public View getRootView() {
+        View root = this;
+        while (root.parent instanceof View) {
+            root = (View) root.parent;
+        }
+        return root;
+    }
+
+    public void saveHierarchyState(SparseArray<Parcelable> container) {
+        dispatchSaveInstanceState(container);
+    }
+
+    public void restoreHierarchyState(SparseArray<Parcelable> container) {
+        dispatchRestoreInstanceState(container);
+    }
+
+    void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        if (id != NO_ID && savedState != null) {
+            container.put(id, savedState);
+        }
+    }
+
+    void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        if (id != NO_ID) {
+            Parcelable state = container.get(id);
+            if (state != null) {
+                savedState = state;
+            }
+        }
+    }
+
+    /**
+     * Sets the state which this View saves in saveHierarchyState(). Stand-in only.
+     */
+    public void setSavedState(Parcelable savedState) {
+        this.savedState = savedState;
+    }
+
+    /**
+     * @return The state last set or restored for this View. Stand-in only.
+     */
+    public Parcelable getSavedState() {
+        return savedState;
+    }
+
+    public void addOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        if (attachStateListeners == null) {
+            attachStateListeners = new ArrayList<>();
+        }
+        attachStateListeners.add(listener);
+    }
+
+    public void removeOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        if (attachStateListeners != null) {
+            attachStateListeners.remove(listener);
+        }
+    }
+
+    /**
+     * @return The number of registered OnAttachStateChangeListeners. Stand-in only.
+     */
+    public int attachStateListenerCount() {
+        return attachStateListeners != null ? attachStateListeners.size() : 0;
+    }
+
+    void dispatchAttachedToWindow() {
+        if (attachStateListeners != null) {
+            for (OnAttachStateChangeListener listener : new ArrayList<>(attachStateListeners)) {
+                listener.onViewAttachedToWindow(this);
+            }
+        }
+    }
+
+    void dispatchDetachedFromWindow() {
+        if (attachStateListeners != null) {
+            for (OnAttachStateChangeListener listener : new ArrayList<>(attachStateListeners)) {
+                listener.onViewDetachedFromWindow(this);
+            }
+        }
+    }
+
+    void onAttachedToParent() {
+        if (floatingTreeObserver != null && floatingTreeObserver.isAlive()) {
+            ViewTreeObserver target = getViewTreeObserver();
+            if (target != floatingTreeObserver) {
+                target.merge(floatingTreeObserver);
+            }
+        }
+    }
+}
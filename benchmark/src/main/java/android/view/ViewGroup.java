@@ -0,0 +1,145 @@
+package android.view;
+
+import android.content.Context;
+import android.os.Parcelable;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for android.view.ViewGroup. A ViewGroup without a parent acts as the root of a
+ * window and owns the ViewTreeObserver for its hierarchy.
+ */
+public class ViewGroup extends View implements ViewParent {
+
+    public static class LayoutParams {
+        public static final int MATCH_PARENT = -1;
+        public static final int WRAP_CONTENT = -2;
+
+        public int width;
+        public int height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final ArrayList<View> children = new ArrayList<>();
+
+    public ViewGroup(Context context) {
+        super(context);
+        rootTreeObserver = new ViewTreeObserver();
+    }
+
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public View getChildAt(int index) {
+        if (index < 0 || index >= children.size()) {
+            return null;
+        }
+        return children.get(index);
+    }
+
+    public int indexOfChild(View child) {
+        return children.indexOf(child);
+    }
+
+    public void addView(View child) {
+        addView(child, -1);
+    }
+
+    public void addView(View child, LayoutParams params) {
+        child.layoutParams = params;
+        addView(child, -1);
+    }
+
+    public void addView(View child, int index) {
+        if (child.parent != null) {
+            throw new IllegalStateException("The specified child already has a parent. "
+                    + "You must call removeView() on the child's parent first.");
+        }
+        if (index < 0) {
+            children.add(child);
+        } else {
+            children.add(index, child);
+        }
+        child.parent = this;
+        requestLayout();
+        child.onAttachedToParent();
+        child.dispatchAttachedToWindow();
+    }
+
+    public void removeView(View child) {
+        if (children.remove(child)) {
+            child.parent = null;
+            requestLayout();
+            child.dispatchDetachedFromWindow();
+        }
+    }
+
+    public void removeViewAt(int index) {
+        removeView(children.get(index));
+    }
+
+    public void removeAllViews() {
+        ArrayList<View> removed = new ArrayList<>(children);
+        children.clear();
+        requestLayout();
+        for (View child : removed) {
+            child.parent = null;
+            child.dispatchDetachedFromWindow();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        for (View child : children) {
+            if (child.getVisibility() != GONE) {
+                child.layout(0, 0, right - left, bottom - top);
+            }
+        }
+    }
+
+    @Override
+    void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        super.dispatchSaveInstanceState(container);
+        for (View child : children) {
+            child.dispatchSaveInstanceState(container);
+        }
+    }
+
+    @Override
+    void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        super.dispatchRestoreInstanceState(container);
+        for (View child : children) {
+            child.dispatchRestoreInstanceState(container);
+        }
+    }
+
+    @Override
+    void dispatchAttachedToWindow() {
+        super.dispatchAttachedToWindow();
+        for (View child : children) {
+            child.dispatchAttachedToWindow();
+        }
+    }
+
+    @Override
+    void dispatchDetachedFromWindow() {
+        super.dispatchDetachedFromWindow();
+        for (View child : children) {
+            child.dispatchDetachedFromWindow();
+        }
+    }
+
+    @Override
+    void onAttachedToParent() {
+        super.onAttachedToParent();
+        // Listeners added while this was a root move to the new root, as on Android
+        getRootView().getViewTreeObserver().merge(rootTreeObserver);
+        rootTreeObserver = new ViewTreeObserver();
+    }
+}
@@ -0,0 +1,89 @@
+package android.view;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JVM stand-in for android.view.ViewTreeObserver. Like the real one, a detached View gets a
+ * temporary observer which is merged into its root's observer when it's added to a parent.
+ */
+public final class ViewTreeObserver {
+
+    public interface OnGlobalLayoutListener {
+        void onGlobalLayout();
+    }
+
+    public interface OnPreDrawListener {
+        boolean onPreDraw();
+    }
+
+    private final CopyOnWriteArrayList<OnGlobalLayoutListener> globalLayoutListeners =
+            new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<OnPreDrawListener> preDrawListeners =
+            new CopyOnWriteArrayList<>();
+    private boolean alive = true;
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public void addOnGlobalLayoutListener(OnGlobalLayoutListener listener) {
+        checkIsAlive();
+        globalLayoutListeners.add(listener);
+    }
+
+    public void removeOnGlobalLayoutListener(OnGlobalLayoutListener listener) {
+        checkIsAlive();
+        globalLayoutListeners.remove(listener);
+    }
+
+    @Deprecated
+    public void removeGlobalOnLayoutListener(OnGlobalLayoutListener listener) {
+        removeOnGlobalLayoutListener(listener);
+    }
+
+    public void addOnPreDrawListener(OnPreDrawListener listener) {
+        checkIsAlive();
+        preDrawListeners.add(listener);
+    }
+
+    public void removeOnPreDrawListener(OnPreDrawListener listener) {
+        checkIsAlive();
+        preDrawListeners.remove(listener);
+    }
+
+    public void dispatchOnGlobalLayout() {
+        for (OnGlobalLayoutListener listener : globalLayoutListeners) {
+            listener.onGlobalLayout();
+        }
+    }
+
+    public boolean dispatchOnPreDraw() {
+        boolean cancelDraw = false;
+        for (OnPreDrawListener listener : preDrawListeners) {
+            cancelDraw |= !listener.onPreDraw();
+        }
+        return cancelDraw;
+    }
+
+    /**
+     * @return The number of registered listeners of any kind. Stand-in only.
+     */
+    public int listenerCount() {
+        return globalLayoutListeners.size() + preDrawListeners.size();
+    }
+
+    void merge(ViewTreeObserver observer) {
+        globalLayoutListeners.addAll(observer.globalLayoutListeners);
+        preDrawListeners.addAll(observer.preDrawListeners);
+        observer.globalLayoutListeners.clear();
+        observer.preDrawListeners.clear();
+        observer.alive = false;
+    }
+
+    private void checkIsAlive() {
+        if (!alive) {
+            throw new IllegalStateException("This ViewTreeObserver is not alive, call "
+                    + "getViewTreeObserver() again");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package android.view.animation;
+
+import android.animation.TimeInterpolator;
+
+/**
+ * JVM stand-in for android.view.animation.Interpolator.
+ */
+public interface Interpolator extends TimeInterpolator {
+}
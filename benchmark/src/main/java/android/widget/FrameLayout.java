@@ -0,0 +1,15 @@
+package android.widget;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+/**
+ * JVM stand-in for android.widget.FrameLayout. Lays out every child to fill it, like the
+ * ViewGroup stand-in.
+ */
+public class FrameLayout extends ViewGroup {
+
+    public FrameLayout(Context context) {
+        super(context);
+    }
+}
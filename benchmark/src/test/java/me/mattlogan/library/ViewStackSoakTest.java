@@ -0,0 +1,383 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.Trace;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs long random sequences of push, pop, animated push and pop, clear, save and restore and
+ * memory trims against a reference model, on the JVM stand-ins. After every operation the stack
+ * must match the model. At every checkpoint, once animations are finished, no listener, frame
+ * callback or trace section may be left registered. After every round, only cached Views may stay
+ * reachable and the retained heap must stay within a margin of the second round's. Time per
+ * operation depends on the machine and the JIT, so it's left to the JMH benchmarks.
+ */
+public class ViewStackSoakTest {
+
+    private static final long SEED = 0x5eed;
+    private static final int ROUNDS = 6;
+    private static final int OPERATIONS_PER_ROUND = 10000;
+    private static final int CHECKPOINT_INTERVAL = 500;
+    private static final int MAX_DEPTH = 1000;
+    private static final int LAYOUTS = 5;
+    private static final int CHILDREN_PER_SCREEN = 5;
+    private static final long RETAINED_HEAP_MARGIN_BYTES = 4 * 1024 * 1024;
+
+    private static final int MAX_LIVE_VIEWS = 16;
+    private static final int MAX_POOLED_VIEWS = 8;
+    private static final int MAX_PREFETCHED_VIEWS = 2;
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final long FRAME_NANOS = 16666667;
+    private static final String TAG = "stack";
+
+    private static final ViewStackDelegate NO_OP_DELEGATE = new ViewStackDelegate() {
+        @Override
+        public void finishStack() {
+        }
+    };
+
+    private final Random random = new Random(SEED);
+    private final ArrayList<Integer> model = new ArrayList<>();
+    private final ArrayList<WeakReference<View>> inflated = new ArrayList<>();
+    private final ArrayList<SoakAnimator> runningAnimators = new ArrayList<>();
+
+    private final AnimatorFactory animatorFactory = new AnimatorFactory() {
+        @Override
+        public Animator createAnimator(View view) {
+            return new SoakAnimator(runningAnimators);
+        }
+    };
+
+    private final TransitionFrameListener frameListener = new TransitionFrameListener() {
+        @Override
+        public void onTransitionFrames(int operation, int layoutId,
+                                       AnimatorFactory animatorFactory,
+                                       int frameCount, int slowFrameCount, long worstFrameNanos) {
+            transitionsReported++;
+        }
+    };
+
+    private Context context;
+    private ViewGroup root;
+    private ViewGroup container;
+    private ViewPool viewPool;
+    private ViewStack viewStack;
+    private long frameTimeNanos;
+    private int transitionsReported;
+    private int maxDepth;
+
+    @Before
+    public void setup() {
+        LayoutInflater.setLayoutFactory(new LayoutInflater.LayoutFactory() {
+            @Override
+            public View create(int resource, Context context) {
+                ViewGroup screen = new ViewGroup(context);
+                screen.setId(resource);
+                for (int i = 0; i < CHILDREN_PER_SCREEN; i++) {
+                    screen.addView(new View(context));
+                }
+                inflated.add(new WeakReference<View>(screen));
+                return screen;
+            }
+        });
+        ViewStack.setTraceSectionsEnabled(true);
+        context = new Context();
+        root = new FrameLayout(context);
+        viewPool = ViewPool.create(2, MAX_POOLED_VIEWS);
+        viewStack = newViewStack();
+    }
+
+    @After
+    public void tearDown() {
+        ViewStack.setTraceSectionsEnabled(false);
+    }
+
+    @Test
+    public void soak() {
+        long[] retainedBytes = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 1; i <= OPERATIONS_PER_ROUND; i++) {
+                runRandomOperation();
+                assertMatchesModel();
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    settle();
+                    assertNothingLeftRegistered();
+                }
+            }
+
+            viewStack.clear();
+            model.clear();
+            settle();
+            assertNothingLeftRegistered();
+            assertReachableViewsAreCached();
+            retainedBytes[round] = retainedHeapBytes();
+        }
+
+        assertTrue("No animated transitions were reported", transitionsReported > 0);
+        assertTrue("The stack only reached a depth of " + maxDepth, maxDepth >= MAX_DEPTH / 2);
+        // The first round also loads classes and fills caches, so later rounds are compared with
+        // the second one
+        for (int round = 2; round < ROUNDS; round++) {
+            assertTrue("Retained heap grew from " + retainedBytes[1] + " to "
+                            + retainedBytes[round] + " bytes in round " + round + ": "
+                            + Arrays.toString(retainedBytes),
+                    retainedBytes[round] - retainedBytes[1] < RETAINED_HEAP_MARGIN_BYTES);
+        }
+    }
+
+    private ViewStack newViewStack() {
+        container = new FrameLayout(context);
+        root.addView(container);
+        ViewStack viewStack = ViewStack.create(container, NO_OP_DELEGATE);
+        viewStack.setViewPool(viewPool);
+        viewStack.setMaxLiveViews(MAX_LIVE_VIEWS);
+        viewStack.setPrefetchLimits(MAX_PREFETCHED_VIEWS, 10000);
+        viewStack.setTransitionFrameListener(frameListener);
+        viewStack.setTrimMemoryEnabled(true);
+        return viewStack;
+    }
+
+    private void runRandomOperation() {
+        int depth = model.size();
+        int roll = random.nextInt(1000);
+        if (roll < 1) {
+            viewStack.clear();
+            model.clear();
+        } else if (roll < 4) {
+            saveAndRestore();
+        } else if (roll < 6) {
+            context.dispatchTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        } else if (roll < 20) {
+            viewStack.prefetch(randomLayoutId());
+        } else if (roll < 150) {
+            frame();
+        } else if (roll < 250) {
+            finishAnimations();
+        } else if (depth == 0 || (depth < MAX_DEPTH && roll < 700)) {
+            int layoutId = randomLayoutId();
+            if (random.nextBoolean()) {
+                viewStack.push(layoutId);
+            } else {
+                viewStack.pushWithAnimation(layoutId, animatorFactory);
+            }
+            model.add(layoutId);
+            maxDepth = Math.max(maxDepth, model.size());
+        } else {
+            if (random.nextBoolean()) {
+                viewStack.pop();
+            } else {
+                viewStack.popWithAnimation(animatorFactory);
+            }
+            // The last entry is never popped; the delegate is asked to finish the stack instead
+            if (depth > 1) {
+                model.remove(depth - 1);
+            }
+        }
+    }
+
+    private int randomLayoutId() {
+        return 1 + random.nextInt(LAYOUTS);
+    }
+
+    /**
+     * Saves the stack and rebuilds it in a new container, as when an Activity is recreated. The
+     * old container is detached first, like the old Activity's window.
+     */
+    private void saveAndRestore() {
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, TAG);
+        root.removeView(container);
+        viewStack = newViewStack();
+        if (!model.isEmpty()) {
+            viewStack.rebuildFromBundle(bundle, TAG);
+        }
+    }
+
+    /**
+     * Lays out the hierarchy and dispatches the pre-draw pass, which starts the animations of
+     * pushed Views, then runs the frame callbacks and the main thread's idle work
+     */
+    private void frame() {
+        frameTimeNanos += FRAME_NANOS;
+        root.layout(0, 0, WIDTH, HEIGHT);
+        root.getViewTreeObserver().dispatchOnPreDraw();
+        Choreographer.getInstance().doFrame(frameTimeNanos);
+        Looper.myQueue().runUntilIdle();
+    }
+
+    private void finishAnimations() {
+        while (!runningAnimators.isEmpty()) {
+            runningAnimators.get(0).end();
+        }
+    }
+
+    private void settle() {
+        frame();
+        finishAnimations();
+        frame();
+    }
+
+    private void assertMatchesModel() {
+        int[] expected = new int[model.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = model.get(i);
+        }
+        assertArrayEquals(expected, viewStack.getSnapshot().toArray());
+        assertEquals(expected.length, viewStack.size());
+        assertEquals("Unbalanced trace sections", 0, Trace.getDepth());
+        // The Views of live entries, plus one being animated off the stack
+        assertTrue(container.getChildCount() <= Math.min(expected.length, MAX_LIVE_VIEWS) + 1);
+    }
+
+    private void assertNothingLeftRegistered() {
+        assertTrue(runningAnimators.isEmpty());
+        assertEquals(0, root.getViewTreeObserver().listenerCount());
+        assertEquals(0, Choreographer.getInstance().getFrameCallbackCount());
+        assertEquals(1, context.getComponentCallbacksCount());
+        assertEquals(!model.isEmpty(), container.getChildCount() > 0);
+        if (!model.isEmpty()) {
+            assertEquals((int) model.get(model.size() - 1), viewStack.peek().getId());
+        }
+        for (WeakReference<View> reference : inflated) {
+            View view = reference.get();
+            if (view != null && view.attachStateListenerCount() != 0) {
+                fail("A View of layout " + view.getId() + " still has "
+                        + view.attachStateListenerCount() + " attach state listeners");
+            }
+        }
+    }
+
+    /**
+     * Once the stack is cleared, only the ViewPool and the prefetcher may keep Views
+     */
+    private void assertReachableViewsAreCached() {
+        collectGarbage();
+        int reachable = 0;
+        for (int i = inflated.size() - 1; i >= 0; i--) {
+            if (inflated.get(i).get() == null) {
+                inflated.remove(i);
+            } else {
+                reachable++;
+            }
+        }
+        assertTrue(reachable + " Views are still reachable",
+                reachable <= MAX_POOLED_VIEWS + MAX_PREFETCHED_VIEWS);
+    }
+
+    private static long retainedHeapBytes() {
+        collectGarbage();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void collectGarbage() {
+        // System.gc() is only a request, so wait until an unreachable object is actually gone
+        for (int i = 0; i < 3; i++) {
+            WeakReference<Object> sentinel = new WeakReference<>(new Object());
+            while (sentinel.get() != null) {
+                System.gc();
+            }
+        }
+    }
+
+    /**
+     * Stands in for an Animator which runs until the harness ends it, and calls its listeners
+     * like an Android Animator does
+     */
+    private static final class SoakAnimator extends Animator {
+        private final ArrayList<SoakAnimator> runningAnimators;
+        private boolean running;
+        private long duration = 300;
+
+        SoakAnimator(ArrayList<SoakAnimator> runningAnimators) {
+            this.runningAnimators = runningAnimators;
+        }
+
+        @Override
+        public void start() {
+            running = true;
+            runningAnimators.add(this);
+            for (AnimatorListener listener : copyListeners()) {
+                listener.onAnimationStart(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!running) return;
+            for (AnimatorListener listener : copyListeners()) {
+                listener.onAnimationCancel(this);
+            }
+            end();
+        }
+
+        @Override
+        public void end() {
+            if (!running) return;
+            running = false;
+            runningAnimators.remove(this);
+            for (AnimatorListener listener : copyListeners()) {
+                listener.onAnimationEnd(this);
+            }
+        }
+
+        private ArrayList<AnimatorListener> copyListeners() {
+            return getListeners() != null
+                    ? new ArrayList<>(getListeners()) : new ArrayList<AnimatorListener>();
+        }
+
+        @Override
+        public long getStartDelay() {
+            return 0;
+        }
+
+        @Override
+        public void setStartDelay(long startDelay) {
+        }
+
+        @Override
+        public Animator setDuration(long duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        @Override
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public void setInterpolator(TimeInterpolator value) {
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+    }
+}
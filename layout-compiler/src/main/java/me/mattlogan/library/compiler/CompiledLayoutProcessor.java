@@ -0,0 +1,124 @@
+package me.mattlogan.library.compiler;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Generates CompiledLayouts for the layouts named by @GenerateCompiledLayouts. The layouts are read
+ * from the res directory given by the "pancakes.resDirectory" processor option.
+ */
+public final class CompiledLayoutProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "me.mattlogan.library.GenerateCompiledLayouts";
+    static final String OPTION_RES_DIRECTORY = "pancakes.resDirectory";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_RES_DIRECTORY);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                generate((TypeElement) element, layoutNames(element));
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, List<String> layoutNames) {
+        String resDirectory = processingEnv.getOptions().get(OPTION_RES_DIRECTORY);
+        if (resDirectory == null) {
+            error(type, "Set the " + OPTION_RES_DIRECTORY
+                    + " annotation processor option to the app's res directory");
+            return;
+        }
+        String packageName =
+                processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        LayoutWriter writer = new LayoutWriter(processingEnv, packageName);
+        List<String> generated = new ArrayList<>();
+        for (String layoutName : layoutNames) {
+            File file = new File(resDirectory, "layout" + File.separator + layoutName + ".xml");
+            try {
+                writer.writeLayout(layoutName, parse(file));
+                generated.add(layoutName);
+            } catch (LayoutWriter.UnsupportedLayoutException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        layoutName + " is inflated from XML: " + e.getMessage(), type);
+            } catch (IOException | SAXException | ParserConfigurationException e) {
+                error(type, "Couldn't read " + file + ": " + e.getMessage());
+            }
+        }
+        String className = type.getSimpleName() + "_CompiledLayouts";
+        try {
+            Writer source = processingEnv.getFiler()
+                    .createSourceFile(packageName + "." + className, type)
+                    .openWriter();
+            try {
+                source.write(writer.writeClass(className, generated));
+            } finally {
+                source.close();
+            }
+        } catch (IOException e) {
+            error(type, "Couldn't write " + className + ": " + e.getMessage());
+        }
+    }
+
+    private static List<String> layoutNames(Element element) {
+        List<String> names = new ArrayList<>();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().toString().equals(ANNOTATION)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                // javac reports array values as a List, even when written without braces
+                for (Object name : (List<?>) entry.getValue().getValue()) {
+                    names.add((String) ((AnnotationValue) name).getValue());
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Document parse(File file)
+            throws ParserConfigurationException, IOException, SAXException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(file);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,683 @@
+package me.mattlogan.library.compiler;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Translates layout XML into Java code which builds the same View hierarchy, the way
+ * LayoutInflater would: each View is created with its constructor, given its attributes and
+ * LayoutParams, then added to its parent after its own children. Only a common subset of
+ * attributes is supported; anything else makes the whole layout unsupported, so it's never built
+ * differently from its XML.
+ */
+final class LayoutWriter {
+
+    static final class UnsupportedLayoutException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedLayoutException(String message) {
+            super(message);
+        }
+    }
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+    private static final String TOOLS_NS = "http://schemas.android.com/tools";
+    private static final String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
+
+    // The packages LayoutInflater tries for tags without a package
+    private static final String[] TAG_PACKAGES =
+            {"android.widget.", "android.webkit.", "android.app.", "android.view."};
+
+    private static final String VIEW = "android.view.View";
+    private static final String VIEW_GROUP = "android.view.ViewGroup";
+    private static final String MARGIN_LAYOUT_PARAMS = "android.view.ViewGroup.MarginLayoutParams";
+    private static final String TEXT_VIEW = "android.widget.TextView";
+    private static final String LINEAR_LAYOUT = "android.widget.LinearLayout";
+    private static final String RELATIVE_LAYOUT_PARAMS =
+            "android.widget.RelativeLayout.LayoutParams";
+    private static final String LINEAR_LAYOUT_PARAMS = "android.widget.LinearLayout.LayoutParams";
+    private static final String FRAME_LAYOUT_PARAMS = "android.widget.FrameLayout.LayoutParams";
+
+    private static final Pattern REFERENCE = Pattern.compile("@(\\+)?(android:)?(\\w+)/(\\w+)");
+    private static final Pattern DIMENSION = Pattern.compile("(-?\\d+(?:\\.\\d+)?)(dp|dip|px|sp)");
+    private static final Pattern COLOR =
+            Pattern.compile("#([0-9a-fA-F]{3,4}|[0-9a-fA-F]{6}|[0-9a-fA-F]{8})");
+
+    private static final Map<String, String> RELATIVE_LAYOUT_BOOLEAN_RULES = new HashMap<>();
+    private static final Map<String, String> RELATIVE_LAYOUT_ANCHOR_RULES = new HashMap<>();
+    private static final Set<String> GRAVITIES = new HashSet<>(Arrays.asList("top", "bottom",
+            "left", "right", "center_vertical", "fill_vertical", "center_horizontal",
+            "fill_horizontal", "center", "fill", "clip_vertical", "clip_horizontal", "start",
+            "end"));
+
+    static {
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentTop", "ALIGN_PARENT_TOP");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentBottom", "ALIGN_PARENT_BOTTOM");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentLeft", "ALIGN_PARENT_LEFT");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentRight", "ALIGN_PARENT_RIGHT");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentStart", "ALIGN_PARENT_START");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_alignParentEnd", "ALIGN_PARENT_END");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_centerInParent", "CENTER_IN_PARENT");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_centerHorizontal", "CENTER_HORIZONTAL");
+        RELATIVE_LAYOUT_BOOLEAN_RULES.put("layout_centerVertical", "CENTER_VERTICAL");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_below", "BELOW");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_above", "ABOVE");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_toLeftOf", "LEFT_OF");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_toRightOf", "RIGHT_OF");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_toStartOf", "START_OF");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_toEndOf", "END_OF");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignTop", "ALIGN_TOP");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignBottom", "ALIGN_BOTTOM");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignLeft", "ALIGN_LEFT");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignRight", "ALIGN_RIGHT");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignStart", "ALIGN_START");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignEnd", "ALIGN_END");
+        RELATIVE_LAYOUT_ANCHOR_RULES.put("layout_alignBaseline", "ALIGN_BASELINE");
+    }
+
+    private final Elements elements;
+    private final Types types;
+    private final String packageName;
+    private final StringBuilder methods = new StringBuilder();
+
+    // Per layout
+    private StringBuilder body;
+    private int variableCount;
+
+    LayoutWriter(ProcessingEnvironment env, String packageName) {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.packageName = packageName;
+    }
+
+    /**
+     * Writes the builder method for a layout. Nothing is written if the layout is unsupported.
+     */
+    void writeLayout(String layoutName, Document document) throws UnsupportedLayoutException {
+        body = new StringBuilder();
+        variableCount = 0;
+        String root = writeView(document.getDocumentElement(), null, null);
+        methods.append("    static View ").append(methodName(layoutName))
+                .append("(Context context, ViewGroup container) {\n")
+                .append("        float density = ")
+                .append("context.getResources().getDisplayMetrics().density;\n")
+                .append(body)
+                .append("        return ").append(root).append(";\n")
+                .append("    }\n\n");
+    }
+
+    /**
+     * @return The source of the class with the builder methods of all written layouts
+     */
+    String writeClass(String className, List<String> layoutNames) {
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by layout-compiler from layout XML. Do not edit.\n")
+                .append("package ").append(packageName).append(";\n\n")
+                .append("import android.content.Context;\n")
+                .append("import android.view.View;\n")
+                .append("import android.view.ViewGroup;\n\n")
+                .append("import java.lang.reflect.InvocationTargetException;\n")
+                .append("import java.lang.reflect.Method;\n\n")
+                .append("import me.mattlogan.library.CompiledLayout;\n\n")
+                .append("public final class ").append(className).append(" {\n\n")
+                .append("    /**\n")
+                .append("     * Registers a CompiledLayout for each supported layout\n")
+                .append("     */\n")
+                .append("    public static void register(CompiledLayout.Registry registry) {\n");
+        for (String layoutName : layoutNames) {
+            source.append("        registry.setCompiledLayout(R.layout.").append(layoutName)
+                    .append(", new CompiledLayout() {\n")
+                    .append("            @Override\n")
+                    .append("            public View createView(Context context, ")
+                    .append("ViewGroup container) {\n")
+                    .append("                return ").append(methodName(layoutName))
+                    .append("(context, container);\n")
+                    .append("            }\n")
+                    .append("        });\n");
+        }
+        source.append("    }\n\n")
+                .append(methods)
+                .append("    // Rounds like TypedValue.complexToDimensionPixelSize()\n")
+                .append("    private static int dp(float value, float density) {\n")
+                .append("        int px = ")
+                .append("(int) (value * density + (value >= 0 ? 0.5f : -0.5f));\n")
+                .append("        if (px != 0 || value == 0) return px;\n")
+                .append("        return value > 0 ? 1 : -1;\n")
+                .append("    }\n\n")
+                .append("    // onFinishInflate() is protected, so it's called the way ")
+                .append("LayoutInflater would, through View\n")
+                .append("    private static final class FinishInflate {\n")
+                .append("        static final Method METHOD;\n\n")
+                .append("        static {\n")
+                .append("            try {\n")
+                .append("                METHOD = ")
+                .append("View.class.getDeclaredMethod(\"onFinishInflate\");\n")
+                .append("                METHOD.setAccessible(true);\n")
+                .append("            } catch (NoSuchMethodException e) {\n")
+                .append("                throw new AssertionError(e);\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("    }\n\n")
+                .append("    private static void finishInflate(View view) {\n")
+                .append("        try {\n")
+                .append("            FinishInflate.METHOD.invoke(view);\n")
+                .append("        } catch (IllegalAccessException e) {\n")
+                .append("            throw new AssertionError(e);\n")
+                .append("        } catch (InvocationTargetException e) {\n")
+                .append("            Throwable cause = e.getCause();\n")
+                .append("            if (cause instanceof RuntimeException) ")
+                .append("throw (RuntimeException) cause;\n")
+                .append("            if (cause instanceof Error) throw (Error) cause;\n")
+                .append("            throw new RuntimeException(cause);\n")
+                .append("        }\n")
+                .append("    }\n\n")
+                .append("    private ").append(className).append("() {\n")
+                .append("        throw new AssertionError(\"No instances\");\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Writes the code which creates a View and its children
+     *
+     * @return The name of the View's variable
+     */
+    private String writeView(Element element, TypeElement parentType, String parentVariable)
+            throws UnsupportedLayoutException {
+        TypeElement type = resolveViewType(element.getTagName());
+        String typeName = type.getQualifiedName().toString();
+        String view = "v" + variableCount++;
+        body.append("        ").append(typeName).append(' ').append(view)
+                .append(" = new ").append(typeName).append(constructorArguments(type))
+                .append(";\n");
+        writeViewAttributes(element, type, view);
+        String params = writeLayoutParams(element, parentType, view);
+        if (parentVariable == null) {
+            body.append("        ").append(view).append(".setLayoutParams(").append(params)
+                    .append(");\n");
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            if (!isSubtype(type, VIEW_GROUP)) {
+                throw new UnsupportedLayoutException(typeName + " isn't a ViewGroup");
+            }
+            writeView((Element) child, type, view);
+        }
+        if (declaresFinishInflate(type)) {
+            body.append("        finishInflate(").append(view).append(");\n");
+        }
+        if (parentVariable != null) {
+            body.append("        ").append(parentVariable).append(".addView(").append(view)
+                    .append(", ").append(params).append(");\n");
+        }
+        return view;
+    }
+
+    private void writeViewAttributes(Element element, TypeElement type, String view)
+            throws UnsupportedLayoutException {
+        String[] padding = new String[4];
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String namespace = attribute.getNamespaceURI();
+            if (XMLNS_NS.equals(namespace) || TOOLS_NS.equals(namespace)) continue;
+            if (!ANDROID_NS.equals(namespace)) {
+                throw new UnsupportedLayoutException("attribute " + attribute.getName());
+            }
+            String name = attribute.getLocalName();
+            String value = attribute.getValue();
+            if (name.startsWith("layout_")) continue;
+            switch (name) {
+                case "id":
+                    writeCall(view, "setId", reference(value, "id"));
+                    break;
+                case "background":
+                    if (COLOR.matcher(value).matches()) {
+                        writeCall(view, "setBackgroundColor", color(value));
+                    } else {
+                        writeCall(view, "setBackgroundResource", anyReference(value));
+                    }
+                    break;
+                case "visibility":
+                    writeCall(view, "setVisibility", VIEW + "." + constant(value,
+                            "visible", "invisible", "gone"));
+                    break;
+                case "alpha":
+                    writeCall(view, "setAlpha", floatLiteral(value));
+                    break;
+                case "enabled":
+                    writeCall(view, "setEnabled", bool(value));
+                    break;
+                case "text":
+                    requireSubtype(type, TEXT_VIEW, name);
+                    writeCall(view, "setText", value.startsWith("@")
+                            ? reference(value, "string") : stringLiteral(value));
+                    break;
+                case "textSize":
+                    requireSubtype(type, TEXT_VIEW, name);
+                    writeTextSize(view, value);
+                    break;
+                case "orientation":
+                    requireSubtype(type, LINEAR_LAYOUT, name);
+                    writeCall(view, "setOrientation", LINEAR_LAYOUT + "."
+                            + constant(value, "horizontal", "vertical"));
+                    break;
+                case "gravity":
+                    if (!isSubtype(type, TEXT_VIEW) && !isSubtype(type, LINEAR_LAYOUT)
+                            && !isSubtype(type, "android.widget.RelativeLayout")) {
+                        throw new UnsupportedLayoutException(name + " on " + type);
+                    }
+                    writeCall(view, "setGravity", gravity(value));
+                    break;
+                case "padding":
+                    Arrays.fill(padding, dimension(value));
+                    break;
+                case "paddingLeft":
+                    padding[0] = dimension(value);
+                    break;
+                case "paddingTop":
+                    padding[1] = dimension(value);
+                    break;
+                case "paddingRight":
+                    padding[2] = dimension(value);
+                    break;
+                case "paddingBottom":
+                    padding[3] = dimension(value);
+                    break;
+                default:
+                    throw new UnsupportedLayoutException("attribute android:" + name);
+            }
+        }
+        if (padding[0] != null || padding[1] != null || padding[2] != null
+                || padding[3] != null) {
+            String[] getters = {"getPaddingLeft", "getPaddingTop", "getPaddingRight",
+                    "getPaddingBottom"};
+            StringBuilder arguments = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                if (i > 0) arguments.append(", ");
+                arguments.append(padding[i] != null ? padding[i] : view + "." + getters[i] + "()");
+            }
+            writeCall(view, "setPadding", arguments.toString());
+        }
+    }
+
+    /**
+     * Writes the LayoutParams of a View
+     *
+     * @return The name of the LayoutParams variable
+     */
+    private String writeLayoutParams(Element element, TypeElement parentType, String view)
+            throws UnsupportedLayoutException {
+        // The root's LayoutParams come from the container, which is only known at runtime. Like
+        // LayoutInflater, the container converts them when the root is added.
+        TypeElement paramsType = parentType != null
+                ? layoutParamsType(parentType) : elements.getTypeElement(MARGIN_LAYOUT_PARAMS);
+        String paramsName = paramsType.getQualifiedName().toString();
+        String params = "p" + view.substring(1);
+        String width = layoutSize(element, "layout_width");
+        String height = layoutSize(element, "layout_height");
+        body.append("        ").append(paramsName).append(' ').append(params).append(" = new ")
+                .append(paramsName).append('(').append(width).append(", ").append(height)
+                .append(");\n");
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String name = attribute.getLocalName();
+            String value = attribute.getValue();
+            if (!ANDROID_NS.equals(attribute.getNamespaceURI()) || !name.startsWith("layout_")
+                    || name.equals("layout_width") || name.equals("layout_height")) {
+                continue;
+            }
+            if (name.startsWith("layout_margin")) {
+                requireSubtype(paramsType, MARGIN_LAYOUT_PARAMS, name);
+                writeMargin(params, name, dimension(value));
+            } else if (RELATIVE_LAYOUT_BOOLEAN_RULES.containsKey(name)) {
+                requireSubtype(paramsType, RELATIVE_LAYOUT_PARAMS, name);
+                if (bool(value).equals("true")) {
+                    writeCall(params, "addRule", "android.widget.RelativeLayout."
+                            + RELATIVE_LAYOUT_BOOLEAN_RULES.get(name));
+                }
+            } else if (RELATIVE_LAYOUT_ANCHOR_RULES.containsKey(name)) {
+                requireSubtype(paramsType, RELATIVE_LAYOUT_PARAMS, name);
+                writeCall(params, "addRule", "android.widget.RelativeLayout."
+                        + RELATIVE_LAYOUT_ANCHOR_RULES.get(name) + ", " + reference(value, "id"));
+            } else if (name.equals("layout_weight")) {
+                requireSubtype(paramsType, LINEAR_LAYOUT_PARAMS, name);
+                body.append("        ").append(params).append(".weight = ")
+                        .append(floatLiteral(value)).append(";\n");
+            } else if (name.equals("layout_gravity")) {
+                if (!isSubtype(paramsType, LINEAR_LAYOUT_PARAMS)
+                        && !isSubtype(paramsType, FRAME_LAYOUT_PARAMS)) {
+                    throw new UnsupportedLayoutException(name + " in " + parentType);
+                }
+                body.append("        ").append(params).append(".gravity = ")
+                        .append(gravity(value)).append(";\n");
+            } else {
+                throw new UnsupportedLayoutException("attribute android:" + name);
+            }
+        }
+        return params;
+    }
+
+    private void writeMargin(String params, String name, String dimension)
+            throws UnsupportedLayoutException {
+        switch (name) {
+            case "layout_margin":
+                writeCall(params, "setMargins", dimension + ", " + dimension + ", " + dimension
+                        + ", " + dimension);
+                break;
+            case "layout_marginLeft":
+                body.append("        ").append(params).append(".leftMargin = ").append(dimension)
+                        .append(";\n");
+                break;
+            case "layout_marginTop":
+                body.append("        ").append(params).append(".topMargin = ").append(dimension)
+                        .append(";\n");
+                break;
+            case "layout_marginRight":
+                body.append("        ").append(params).append(".rightMargin = ").append(dimension)
+                        .append(";\n");
+                break;
+            case "layout_marginBottom":
+                body.append("        ").append(params).append(".bottomMargin = ")
+                        .append(dimension).append(";\n");
+                break;
+            default:
+                throw new UnsupportedLayoutException("attribute android:" + name);
+        }
+    }
+
+    private void writeTextSize(String view, String value) throws UnsupportedLayoutException {
+        Matcher matcher = DIMENSION.matcher(value);
+        if (!matcher.matches()) {
+            throw new UnsupportedLayoutException("textSize " + value);
+        }
+        String unit;
+        switch (matcher.group(2)) {
+            case "sp":
+                unit = "COMPLEX_UNIT_SP";
+                break;
+            case "px":
+                unit = "COMPLEX_UNIT_PX";
+                break;
+            default:
+                unit = "COMPLEX_UNIT_DIP";
+        }
+        writeCall(view, "setTextSize", "android.util.TypedValue." + unit + ", "
+                + matcher.group(1) + "f");
+    }
+
+    private void writeCall(String target, String method, String arguments) {
+        body.append("        ").append(target).append('.').append(method).append('(')
+                .append(arguments).append(");\n");
+    }
+
+    private TypeElement resolveViewType(String tag) throws UnsupportedLayoutException {
+        if (tag.equals("include") || tag.equals("merge") || tag.equals("fragment")
+                || tag.equals("view") || tag.equals("requestFocus") || tag.equals("blink")) {
+            throw new UnsupportedLayoutException("<" + tag + ">");
+        }
+        TypeElement type = null;
+        if (tag.indexOf('.') >= 0) {
+            type = elements.getTypeElement(tag);
+        } else {
+            for (String prefix : TAG_PACKAGES) {
+                type = elements.getTypeElement(prefix + tag);
+                if (type != null) break;
+            }
+        }
+        if (type == null || !isSubtype(type, VIEW)) {
+            throw new UnsupportedLayoutException("unknown View class " + tag);
+        }
+        if (!type.getModifiers().contains(Modifier.PUBLIC)
+                || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedLayoutException(tag + " can't be instantiated");
+        }
+        return type;
+    }
+
+    /**
+     * @return The constructor arguments for the View type, preferring the constructor which
+     * LayoutInflater would call
+     */
+    private String constructorArguments(TypeElement type) throws UnsupportedLayoutException {
+        boolean contextOnly = false;
+        for (javax.lang.model.element.Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.CONSTRUCTOR
+                    || !member.getModifiers().contains(Modifier.PUBLIC)) {
+                continue;
+            }
+            List<? extends javax.lang.model.element.VariableElement> parameters =
+                    ((ExecutableElement) member).getParameters();
+            if (parameters.size() == 2
+                    && isType(parameters.get(0).asType(), "android.content.Context")
+                    && isType(parameters.get(1).asType(), "android.util.AttributeSet")) {
+                return "(context, null)";
+            }
+            if (parameters.size() == 1
+                    && isType(parameters.get(0).asType(), "android.content.Context")) {
+                contextOnly = true;
+            }
+        }
+        if (contextOnly) return "(context)";
+        throw new UnsupportedLayoutException(type + " has no View constructor");
+    }
+
+    /**
+     * @return The LayoutParams class which the ViewGroup type uses for its children: the nested
+     * LayoutParams class of the type or its closest superclass which has one
+     */
+    private TypeElement layoutParamsType(TypeElement parentType) {
+        TypeElement type = parentType;
+        while (type != null) {
+            for (javax.lang.model.element.Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.CLASS
+                        && member.getSimpleName().contentEquals("LayoutParams")
+                        && member.getModifiers().contains(Modifier.PUBLIC)) {
+                    return (TypeElement) member;
+                }
+            }
+            type = superclass(type);
+        }
+        return elements.getTypeElement("android.view.ViewGroup.LayoutParams");
+    }
+
+    /**
+     * @return true if the View type or one of its superclasses below View overrides
+     * onFinishInflate(), which LayoutInflater calls once a View's children are added
+     */
+    private boolean declaresFinishInflate(TypeElement type) {
+        while (type != null && !type.getQualifiedName().contentEquals(VIEW)) {
+            for (javax.lang.model.element.Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD
+                        && member.getSimpleName().contentEquals("onFinishInflate")
+                        && ((ExecutableElement) member).getParameters().isEmpty()) {
+                    return true;
+                }
+            }
+            type = superclass(type);
+        }
+        return false;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private boolean isSubtype(TypeElement type, String superType) {
+        TypeElement other = elements.getTypeElement(superType);
+        return other != null && types.isSubtype(types.erasure(type.asType()),
+                types.erasure(other.asType()));
+    }
+
+    private void requireSubtype(TypeElement type, String superType, String attribute)
+            throws UnsupportedLayoutException {
+        if (!isSubtype(type, superType)) {
+            throw new UnsupportedLayoutException(attribute + " on " + type);
+        }
+    }
+
+    private boolean isType(TypeMirror mirror, String name) {
+        return types.erasure(mirror).toString().equals(name);
+    }
+
+    private static String layoutSize(Element element, String name)
+            throws UnsupportedLayoutException {
+        String value = element.getAttributeNS(ANDROID_NS, name);
+        switch (value) {
+            case "match_parent":
+            case "fill_parent":
+                return "ViewGroup.LayoutParams.MATCH_PARENT";
+            case "wrap_content":
+                return "ViewGroup.LayoutParams.WRAP_CONTENT";
+            case "":
+                throw new UnsupportedLayoutException("missing " + name);
+            default:
+                return dimension(value);
+        }
+    }
+
+    private static String dimension(String value) throws UnsupportedLayoutException {
+        Matcher matcher = DIMENSION.matcher(value);
+        if (matcher.matches()) {
+            String number = matcher.group(1);
+            if (matcher.group(2).equals("px")) {
+                return "(int) " + number + "f";
+            }
+            if (matcher.group(2).equals("sp")) {
+                // Scaled by the font scale, which generated code would have to look up
+                throw new UnsupportedLayoutException("dimension " + value);
+            }
+            return "dp(" + number + "f, density)";
+        }
+        if (value.startsWith("@")) {
+            return "context.getResources().getDimensionPixelSize(" + reference(value, "dimen")
+                    + ")";
+        }
+        throw new UnsupportedLayoutException("dimension " + value);
+    }
+
+    private static String color(String value) {
+        String hex = value.substring(1);
+        if (hex.length() <= 4) {
+            // #RGB and #ARGB repeat each digit
+            StringBuilder expanded = new StringBuilder();
+            for (char c : hex.toCharArray()) {
+                expanded.append(c).append(c);
+            }
+            hex = expanded.toString();
+        }
+        if (hex.length() == 6) {
+            hex = "ff" + hex;
+        }
+        return "0x" + hex.toUpperCase();
+    }
+
+    private static String reference(String value, String expectedType)
+            throws UnsupportedLayoutException {
+        Matcher matcher = REFERENCE.matcher(value);
+        if (!matcher.matches() || !matcher.group(3).equals(expectedType)) {
+            throw new UnsupportedLayoutException("reference " + value);
+        }
+        return resourceField(matcher);
+    }
+
+    private static String anyReference(String value) throws UnsupportedLayoutException {
+        Matcher matcher = REFERENCE.matcher(value);
+        if (!matcher.matches() || matcher.group(1) != null) {
+            throw new UnsupportedLayoutException("reference " + value);
+        }
+        return resourceField(matcher);
+    }
+
+    private static String resourceField(Matcher matcher) {
+        return (matcher.group(2) != null ? "android.R." : "R.") + matcher.group(3) + "."
+                + matcher.group(4);
+    }
+
+    private static String gravity(String value) throws UnsupportedLayoutException {
+        StringBuilder expression = new StringBuilder();
+        for (String flag : value.split("\\|")) {
+            if (!GRAVITIES.contains(flag)) {
+                throw new UnsupportedLayoutException("gravity " + value);
+            }
+            if (expression.length() > 0) expression.append(" | ");
+            expression.append("android.view.Gravity.").append(flag.toUpperCase());
+        }
+        return expression.toString();
+    }
+
+    private static String constant(String value, String... allowed)
+            throws UnsupportedLayoutException {
+        if (!Arrays.asList(allowed).contains(value)) {
+            throw new UnsupportedLayoutException("value " + value);
+        }
+        return value.toUpperCase();
+    }
+
+    private static String bool(String value) throws UnsupportedLayoutException {
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new UnsupportedLayoutException("boolean " + value);
+        }
+        return value;
+    }
+
+    private static String floatLiteral(String value) throws UnsupportedLayoutException {
+        try {
+            return Float.parseFloat(value) + "f";
+        } catch (NumberFormatException e) {
+            throw new UnsupportedLayoutException("number " + value);
+        }
+    }
+
+    private static String stringLiteral(String value) throws UnsupportedLayoutException {
+        if (value.startsWith("?") || value.indexOf('\\') >= 0 || value.indexOf('"') >= 0) {
+            // Android unescapes and unquotes string values in its own way
+            throw new UnsupportedLayoutException("text " + value);
+        }
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c < 0x20 || c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String methodName(String layoutName) {
+        StringBuilder name = new StringBuilder("create");
+        for (String part : layoutName.split("_")) {
+            if (part.isEmpty()) continue;
+            name.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,340 @@
+package me.mattlogan.library.compiler;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the processor inside javac on the layouts in src/test/resources/res, compiles the
+ * generated source together with the library's CompiledLayout and stand-ins for the android
+ * classes, and builds the Views by running the generated code.
+ */
+public class CompiledLayoutProcessorTest {
+
+    // The library's sources, so the generated code is compiled against its real API. Gradle
+    // runs tests in the module's directory.
+    private static final String[] LIBRARY_SOURCES = {
+            "../library/src/main/java/me/mattlogan/library/CompiledLayout.java",
+            "../library/src/main/java/me/mattlogan/library/GenerateCompiledLayouts.java"};
+
+    private static final int LAYOUT_PROFILE = 0x7f030001;
+    private static final int ID_TITLE = 0x7f050001;
+    private static final int ID_OK = 0x7f050002;
+    private static final int STRING_OK = 0x7f060001;
+    private static final int DRAWABLE_FRAME = 0x7f080001;
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    File resDirectory;
+    File classesDirectory;
+    File generatedDirectory;
+    List<String> errors = new ArrayList<>();
+    List<String> warnings = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        resDirectory = resource("/res");
+        classesDirectory = temporaryFolder.newFolder("classes");
+        generatedDirectory = temporaryFolder.newFolder("generated");
+    }
+
+    @Test
+    public void supportedLayoutsCompile() throws Exception {
+        assertTrue(compile(true, "profile", "buttons", "card"));
+
+        assertEquals(new ArrayList<String>(), errors);
+        assertEquals(new ArrayList<String>(), warnings);
+        assertTrue(new File(generatedDirectory, "com/example/Screens_CompiledLayouts.java")
+                .exists());
+    }
+
+    @Test
+    public void buildsProfileLayout() throws Exception {
+        assertTrue(compile(true, "profile"));
+
+        Object root = createView(LAYOUT_PROFILE);
+        assertEquals("android.widget.LinearLayout", root.getClass().getName());
+        assertEquals(1, call(root, "getOrientation"));
+        assertEquals(32, call(root, "getPaddingLeft"));
+        assertEquals(32, call(root, "getPaddingBottom"));
+        // The container converts the root's LayoutParams when it's added
+        Object rootParams = call(root, "getLayoutParams");
+        assertEquals("android.view.ViewGroup$MarginLayoutParams", rootParams.getClass().getName());
+        assertEquals(-1, field(rootParams, "width"));
+        assertEquals(3, call(root, "getChildCount"));
+
+        Object title = call(root, "getChildAt", 0);
+        assertEquals(ID_TITLE, call(title, "getId"));
+        assertEquals("Hello", call(title, "getText"));
+        assertEquals(2 /* COMPLEX_UNIT_SP */, call(title, "getTextSizeUnit"));
+        assertEquals(18f, call(title, "getTextSize"));
+        assertEquals(0x01 | 0x30, call(title, "getGravity"));
+        Object titleParams = call(title, "getLayoutParams");
+        assertEquals("android.widget.LinearLayout$LayoutParams",
+                titleParams.getClass().getName());
+        assertEquals(-2, field(titleParams, "height"));
+        assertEquals(16, field(titleParams, "bottomMargin"));
+
+        Object frame = call(root, "getChildAt", 1);
+        assertEquals(DRAWABLE_FRAME, call(frame, "getBackgroundResource"));
+        assertEquals(1f, field(call(frame, "getLayoutParams"), "weight"));
+        assertEquals(0, field(call(frame, "getLayoutParams"), "height"));
+
+        Object icon = call(frame, "getChildAt", 0);
+        assertEquals(0xffff0000, call(icon, "getBackgroundColor"));
+        assertEquals(0.5f, call(icon, "getAlpha"));
+        Object iconParams = call(icon, "getLayoutParams");
+        assertEquals("android.widget.FrameLayout$LayoutParams", iconParams.getClass().getName());
+        assertEquals(48, field(iconParams, "width"));
+        // From the dimension resource
+        assertEquals(10, field(iconParams, "height"));
+        assertEquals(0x11, field(iconParams, "gravity"));
+
+        Object ok = call(root, "getChildAt", 2);
+        assertEquals(ID_OK, call(ok, "getId"));
+        assertEquals(STRING_OK, call(ok, "getTextResource"));
+        assertEquals(false, call(ok, "isEnabled"));
+        assertEquals(0x00800005, field(call(ok, "getLayoutParams"), "gravity"));
+    }
+
+    @Test
+    public void buildsRelativeLayoutRules() throws Exception {
+        assertTrue(compile(true, "buttons"));
+
+        Object root = createView(0x7f030002);
+        assertEquals(0xff0000ff, call(root, "getBackgroundColor"));
+        int[] okRules = (int[]) call(call(call(root, "getChildAt", 0), "getLayoutParams"),
+                "getRules");
+        assertEquals(-1, okRules[13 /* CENTER_IN_PARENT */]);
+
+        Object cancel = call(root, "getChildAt", 1);
+        assertEquals(8 /* GONE */, call(cancel, "getVisibility"));
+        Object cancelParams = call(cancel, "getLayoutParams");
+        int[] cancelRules = (int[]) call(cancelParams, "getRules");
+        assertEquals(ID_OK, cancelRules[3 /* BELOW */]);
+        assertEquals(-1, cancelRules[14 /* CENTER_HORIZONTAL */]);
+        assertEquals(24, field(cancelParams, "topMargin"));
+    }
+
+    @Test
+    public void callsOnFinishInflateAfterAddingChildren() throws Exception {
+        assertTrue(compile(true, "card"));
+
+        Object card = createView(0x7f030003);
+
+        assertEquals("com.example.CardView", card.getClass().getName());
+        assertEquals(1, field(card, "childCountAtFinishInflate"));
+    }
+
+    @Test
+    public void unsupportedLayoutsAreInflatedFromXml() throws Exception {
+        assertTrue(compile(true, "profile", "with_include", "unknown_attribute"));
+
+        assertEquals(new ArrayList<String>(), errors);
+        assertEquals(Arrays.asList("with_include is inflated from XML: <include>",
+                "unknown_attribute is inflated from XML: attribute android:fontFamily"),
+                warnings);
+        List<Integer> registered = register();
+        assertEquals(Arrays.asList(LAYOUT_PROFILE), registered);
+    }
+
+    @Test
+    public void missingResDirectoryOption() throws Exception {
+        assertFalse(compile(false, "profile"));
+
+        assertEquals(Arrays.asList("Set the pancakes.resDirectory annotation processor option "
+                + "to the app's res directory"), errors);
+    }
+
+    @Test
+    public void missingLayoutFile() throws Exception {
+        assertFalse(compile(true, "missing"));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).startsWith("Couldn't read "));
+    }
+
+    /**
+     * Compiles a class annotated with the layout names, the library's API and the stand-ins
+     *
+     * @return true if compilation succeeded
+     */
+    private boolean compile(boolean withResDirectory, String... layoutNames) throws Exception {
+        File screens = temporaryFolder.newFile("Screens.java");
+        StringBuilder names = new StringBuilder();
+        for (String layoutName : layoutNames) {
+            if (names.length() > 0) names.append(", ");
+            names.append('"').append(layoutName).append('"');
+        }
+        write(screens, "package com.example;\n\n"
+                + "import me.mattlogan.library.GenerateCompiledLayouts;\n\n"
+                + "@GenerateCompiledLayouts({" + names + "})\n"
+                + "final class Screens {\n"
+                + "}\n");
+
+        List<File> sources = new ArrayList<>();
+        sources.add(screens);
+        for (String librarySource : LIBRARY_SOURCES) {
+            sources.add(new File(librarySource));
+        }
+        addJavaFiles(resource("/stubs"), sources);
+
+        List<String> options = new ArrayList<>(Arrays.asList("-d", classesDirectory.getPath(),
+                "-s", generatedDirectory.getPath()));
+        if (withResDirectory) {
+            options.add("-A" + CompiledLayoutProcessor.OPTION_RES_DIRECTORY + "="
+                    + resDirectory.getPath());
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, Locale.US, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    options, null, fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Arrays.asList(new CompiledLayoutProcessor()));
+            boolean success = task.call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic.getMessage(Locale.US));
+                } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING) {
+                    warnings.add(diagnostic.getMessage(Locale.US));
+                }
+            }
+            return success;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Calls the generated register() method
+     *
+     * @return The layout ids it registered CompiledLayouts for
+     */
+    private List<Integer> register() throws Exception {
+        return register(new ArrayList<Object>());
+    }
+
+    private List<Integer> register(final List<Object> compiledLayouts) throws Exception {
+        ClassLoader classLoader = classLoader();
+        Class<?> registryClass =
+                classLoader.loadClass("me.mattlogan.library.CompiledLayout$Registry");
+        final List<Integer> layoutIds = new ArrayList<>();
+        Object registry = Proxy.newProxyInstance(classLoader, new Class<?>[]{registryClass},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        layoutIds.add((Integer) args[0]);
+                        compiledLayouts.add(args[1]);
+                        return null;
+                    }
+                });
+        classLoader.loadClass("com.example.Screens_CompiledLayouts")
+                .getMethod("register", registryClass)
+                .invoke(null, registry);
+        return layoutIds;
+    }
+
+    /**
+     * Builds the Views of a layout with its registered CompiledLayout
+     */
+    private Object createView(int layoutId) throws Exception {
+        List<Object> compiledLayouts = new ArrayList<>();
+        int index = register(compiledLayouts).indexOf(layoutId);
+        assertTrue("No CompiledLayout for 0x" + Integer.toHexString(layoutId), index >= 0);
+        ClassLoader classLoader = compiledLayouts.get(index).getClass().getClassLoader();
+        Class<?> contextClass = classLoader.loadClass("android.content.Context");
+        Object context = contextClass.newInstance();
+        Object container = classLoader.loadClass("android.widget.FrameLayout")
+                .getConstructor(contextClass)
+                .newInstance(context);
+        return call(compiledLayouts.get(index), "createView", context, container);
+    }
+
+    private ClassLoader classLoader() throws IOException {
+        return new URLClassLoader(new URL[]{classesDirectory.toURI().toURL()},
+                getClass().getClassLoader());
+    }
+
+    private static Object call(Object target, String name, Object... args) throws Exception {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getName().equals(name)
+                        && method.getParameterTypes().length == args.length) {
+                    method.setAccessible(true);
+                    return method.invoke(target, args);
+                }
+            }
+        }
+        throw new NoSuchMethodException(target.getClass().getName() + "." + name);
+    }
+
+    private static Object field(Object target, String name) throws Exception {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException e) {
+                // Declared by a superclass
+            }
+        }
+        throw new NoSuchFieldException(target.getClass().getName() + "." + name);
+    }
+
+    private static File resource(String name) throws URISyntaxException {
+        return new File(CompiledLayoutProcessorTest.class.getResource(name).toURI());
+    }
+
+    private static void addJavaFiles(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addJavaFiles(child, files);
+            } else if (child.getName().endsWith(".java")) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+public class Resources {
+    private final DisplayMetrics displayMetrics = new DisplayMetrics();
+
+    public DisplayMetrics getDisplayMetrics() {
+        return displayMetrics;
+    }
+
+    // Every dimension resource is 10px
+    public int getDimensionPixelSize(int id) {
+        return 10;
+    }
+}
@@ -0,0 +1,7 @@
+package android.util;
+
+public class TypedValue {
+    public static final int COMPLEX_UNIT_PX = 0;
+    public static final int COMPLEX_UNIT_DIP = 1;
+    public static final int COMPLEX_UNIT_SP = 2;
+}
@@ -0,0 +1,104 @@
+package android.view;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+public class View {
+    public static final int VISIBLE = 0;
+    public static final int INVISIBLE = 4;
+    public static final int GONE = 8;
+
+    private int id;
+    private int backgroundColor;
+    private int backgroundResource;
+    private int visibility;
+    private float alpha = 1;
+    private boolean enabled = true;
+    private int[] padding = new int[4];
+    private ViewGroup.LayoutParams layoutParams;
+
+    public View(Context context) {
+    }
+
+    public View(Context context, AttributeSet attrs) {
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    public void setBackgroundColor(int color) {
+        this.backgroundColor = color;
+    }
+
+    public int getBackgroundResource() {
+        return backgroundResource;
+    }
+
+    public void setBackgroundResource(int resid) {
+        this.backgroundResource = resid;
+    }
+
+    public int getVisibility() {
+        return visibility;
+    }
+
+    public void setVisibility(int visibility) {
+        this.visibility = visibility;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public void setAlpha(float alpha) {
+        this.alpha = alpha;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setPadding(int left, int top, int right, int bottom) {
+        padding = new int[]{left, top, right, bottom};
+    }
+
+    public int getPaddingLeft() {
+        return padding[0];
+    }
+
+    public int getPaddingTop() {
+        return padding[1];
+    }
+
+    public int getPaddingRight() {
+        return padding[2];
+    }
+
+    public int getPaddingBottom() {
+        return padding[3];
+    }
+
+    public ViewGroup.LayoutParams getLayoutParams() {
+        return layoutParams;
+    }
+
+    public void setLayoutParams(ViewGroup.LayoutParams params) {
+        this.layoutParams = params;
+    }
+
+    protected void onFinishInflate() {
+    }
+}
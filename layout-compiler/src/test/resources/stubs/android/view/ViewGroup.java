@@ -0,0 +1,64 @@
+package android.view;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class ViewGroup extends View {
+
+    public static class LayoutParams {
+        public static final int MATCH_PARENT = -1;
+        public static final int WRAP_CONTENT = -2;
+
+        public int width;
+        public int height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static class MarginLayoutParams extends LayoutParams {
+        public int leftMargin;
+        public int topMargin;
+        public int rightMargin;
+        public int bottomMargin;
+
+        public MarginLayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public void setMargins(int left, int top, int right, int bottom) {
+            leftMargin = left;
+            topMargin = top;
+            rightMargin = right;
+            bottomMargin = bottom;
+        }
+    }
+
+    private final List<View> children = new ArrayList<>();
+
+    public ViewGroup(Context context) {
+        super(context);
+    }
+
+    public ViewGroup(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void addView(View child, LayoutParams params) {
+        child.setLayoutParams(params);
+        children.add(child);
+    }
+
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public View getChildAt(int index) {
+        return children.get(index);
+    }
+}
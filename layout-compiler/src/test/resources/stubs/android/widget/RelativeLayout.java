@@ -0,0 +1,68 @@
+package android.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.ViewGroup;
+
+public class RelativeLayout extends ViewGroup {
+    public static final int LEFT_OF = 0;
+    public static final int RIGHT_OF = 1;
+    public static final int ABOVE = 2;
+    public static final int BELOW = 3;
+    public static final int ALIGN_BASELINE = 4;
+    public static final int ALIGN_LEFT = 5;
+    public static final int ALIGN_TOP = 6;
+    public static final int ALIGN_RIGHT = 7;
+    public static final int ALIGN_BOTTOM = 8;
+    public static final int ALIGN_PARENT_LEFT = 9;
+    public static final int ALIGN_PARENT_TOP = 10;
+    public static final int ALIGN_PARENT_RIGHT = 11;
+    public static final int ALIGN_PARENT_BOTTOM = 12;
+    public static final int CENTER_IN_PARENT = 13;
+    public static final int CENTER_HORIZONTAL = 14;
+    public static final int CENTER_VERTICAL = 15;
+    public static final int START_OF = 16;
+    public static final int END_OF = 17;
+    public static final int ALIGN_START = 18;
+    public static final int ALIGN_END = 19;
+    public static final int ALIGN_PARENT_START = 20;
+    public static final int ALIGN_PARENT_END = 21;
+
+    public static class LayoutParams extends ViewGroup.MarginLayoutParams {
+        private final int[] rules = new int[22];
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public void addRule(int verb) {
+            rules[verb] = -1;
+        }
+
+        public void addRule(int verb, int subject) {
+            rules[verb] = subject;
+        }
+
+        public int[] getRules() {
+            return rules;
+        }
+    }
+
+    private int gravity;
+
+    public RelativeLayout(Context context) {
+        super(context);
+    }
+
+    public RelativeLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public int getGravity() {
+        return gravity;
+    }
+
+    public void setGravity(int gravity) {
+        this.gravity = gravity;
+    }
+}
@@ -0,0 +1,58 @@
+package android.widget;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+
+public class TextView extends View {
+    private CharSequence text;
+    private int textResource;
+    private int textSizeUnit;
+    private float textSize;
+    private int gravity;
+
+    public TextView(Context context) {
+        super(context);
+    }
+
+    public TextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public void setText(CharSequence text) {
+        this.text = text;
+    }
+
+    public int getTextResource() {
+        return textResource;
+    }
+
+    public void setText(int resid) {
+        this.textResource = resid;
+    }
+
+    public int getTextSizeUnit() {
+        return textSizeUnit;
+    }
+
+    public float getTextSize() {
+        return textSize;
+    }
+
+    public void setTextSize(int unit, float size) {
+        this.textSizeUnit = unit;
+        this.textSize = size;
+    }
+
+    public int getGravity() {
+        return gravity;
+    }
+
+    public void setGravity(int gravity) {
+        this.gravity = gravity;
+    }
+}
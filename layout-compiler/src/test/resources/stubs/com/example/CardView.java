@@ -0,0 +1,19 @@
+package com.example;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.widget.LinearLayout;
+
+// Records how many children it had when onFinishInflate() was called
+public class CardView extends LinearLayout {
+    public int childCountAtFinishInflate = -1;
+
+    public CardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        childCountAtFinishInflate = getChildCount();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example;
+
+public final class R {
+    public static final class layout {
+        public static final int profile = 0x7f030001;
+        public static final int buttons = 0x7f030002;
+        public static final int card = 0x7f030003;
+        public static final int with_include = 0x7f030004;
+        public static final int unknown_attribute = 0x7f030005;
+    }
+
+    public static final class id {
+        public static final int title = 0x7f050001;
+        public static final int ok = 0x7f050002;
+        public static final int cancel = 0x7f050003;
+        public static final int icon = 0x7f050004;
+    }
+
+    public static final class string {
+        public static final int ok = 0x7f060001;
+    }
+
+    public static final class dimen {
+        public static final int icon_size = 0x7f070001;
+    }
+
+    public static final class drawable {
+        public static final int frame = 0x7f080001;
+    }
+}
@@ -0,0 +1,159 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.animation.ValueAnimator;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static me.mattlogan.library.AdaptiveAnimatorFactory.LEVEL_FULL;
+import static me.mattlogan.library.AdaptiveAnimatorFactory.LEVEL_NONE;
+import static me.mattlogan.library.AdaptiveAnimatorFactory.LEVEL_REDUCED;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_POP;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_PUSH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class AdaptiveAnimatorFactoryTest {
+
+    private static final int LAYOUT = 1;
+
+    Animator fullAnimator;
+    Animator reducedAnimator;
+    AdaptiveAnimatorFactory factory;
+    int levelChanges;
+    int lastLevel;
+
+    @Before
+    public void setup() {
+        fullAnimator = ValueAnimator.ofFloat(0, 1);
+        reducedAnimator = ValueAnimator.ofFloat(0, 1);
+        factory = AdaptiveAnimatorFactory.create(new AnimatorFactory() {
+            @Override
+            public Animator createAnimator(View view) {
+                return fullAnimator;
+            }
+        }, new AnimatorFactory() {
+            @Override
+            public Animator createAnimator(View view) {
+                return reducedAnimator;
+            }
+        });
+        factory.setOnLevelChangedListener(new AdaptiveAnimatorFactory.OnLevelChangedListener() {
+            @Override
+            public void onLevelChanged(int oldLevel, int newLevel, float slowFrameRatio) {
+                levelChanges++;
+                lastLevel = newLevel;
+            }
+        });
+    }
+
+    @Test
+    public void createWithNullFull() {
+        try {
+            AdaptiveAnimatorFactory.create(null);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("full == null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void setThresholdsWithRecoverAboveDegrade() {
+        try {
+            factory.setThresholds(0.1f, 0.2f);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Thresholds must satisfy 0 <= recoverRatio <= degradeRatio <= 1",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void degradesOnceHistoryIsFull() {
+        View view = new View(InstrumentationRegistry.getContext());
+        assertSame(fullAnimator, factory.createAnimator(view));
+
+        reportTransitions(2, 10, 5);
+        assertEquals(LEVEL_FULL, factory.getLevel());
+
+        reportTransitions(1, 10, 5);
+        assertEquals(LEVEL_REDUCED, factory.getLevel());
+        assertEquals(1, levelChanges);
+        assertSame(reducedAnimator, factory.createAnimator(view));
+    }
+
+    @Test
+    public void stepsDownToNoneAndBackUp() {
+        View view = new View(InstrumentationRegistry.getContext());
+        factory.setHistorySize(2);
+
+        reportTransitions(4, 10, 5);
+        assertEquals(LEVEL_NONE, factory.getLevel());
+        assertNotSame(fullAnimator, factory.createAnimator(view));
+        assertNotSame(reducedAnimator, factory.createAnimator(view));
+
+        // Frames at LEVEL_NONE don't count, however slow they are
+        reportTransitions(2, 10, 10);
+        assertEquals(LEVEL_REDUCED, factory.getLevel());
+
+        reportTransitions(2, 10, 0);
+        assertEquals(LEVEL_FULL, factory.getLevel());
+        assertEquals(4, levelChanges);
+        assertEquals(LEVEL_FULL, lastLevel);
+    }
+
+    @Test
+    public void ignoresOtherAnimatorFactories() {
+        for (int i = 0; i < 5; i++) {
+            factory.onTransitionFrames(OPERATION_PUSH, LAYOUT, AnimatorFactory.NONE,
+                    10, 10, 100000000);
+        }
+
+        assertEquals(LEVEL_FULL, factory.getLevel());
+    }
+
+    @Test
+    public void separatePushAndPopFactoriesAdaptSeparately() {
+        AdaptiveAnimatorFactory pop = AdaptiveAnimatorFactory.create(AnimatorFactory.NONE);
+        TransitionFrameListener listener = both(factory, pop);
+
+        // Slow pushes only degrade the push factory
+        for (int i = 0; i < 3; i++) {
+            listener.onTransitionFrames(OPERATION_PUSH, LAYOUT, factory, 10, 5, 50000000);
+            listener.onTransitionFrames(OPERATION_POP, LAYOUT, pop, 10, 0, 20000000);
+        }
+
+        assertEquals(LEVEL_REDUCED, factory.getLevel());
+        assertEquals(LEVEL_FULL, pop.getLevel());
+    }
+
+    private void reportTransitions(int count, int frameCount, int slowFrameCount) {
+        for (int i = 0; i < count; i++) {
+            factory.onTransitionFrames(OPERATION_PUSH, LAYOUT, factory,
+                    frameCount, slowFrameCount, 50000000);
+        }
+    }
+
+    private static TransitionFrameListener both(final TransitionFrameListener first,
+                                                final TransitionFrameListener second) {
+        return new TransitionFrameListener() {
+            @Override
+            public void onTransitionFrames(int operation, int layoutId,
+                                           AnimatorFactory animatorFactory, int frameCount,
+                                           int slowFrameCount, long worstFrameNanos) {
+                first.onTransitionFrames(operation, layoutId, animatorFactory, frameCount,
+                        slowFrameCount, worstFrameNanos);
+                second.onTransitionFrames(operation, layoutId, animatorFactory, frameCount,
+                        slowFrameCount, worstFrameNanos);
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package me.mattlogan.library;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class FirstFrameListenerTest {
+
+    View view;
+    CountingListener listener;
+
+    @Before
+    public void setup() {
+        view = new View(InstrumentationRegistry.getContext());
+        listener = new CountingListener(view);
+    }
+
+    @Test
+    public void waitsUntilViewHasSize() {
+        listener.register();
+
+        view.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertEquals(0, listener.firstFrames);
+    }
+
+    @Test
+    public void calledOnceThenUnregistered() {
+        listener.register();
+        view.layout(0, 0, 10, 10);
+
+        view.getViewTreeObserver().dispatchOnPreDraw();
+        view.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertEquals(1, listener.firstFrames);
+    }
+
+    @Test
+    public void notCalledAfterUnregister() {
+        listener.register();
+        listener.unregister();
+        view.layout(0, 0, 10, 10);
+
+        view.getViewTreeObserver().dispatchOnPreDraw();
+
+        assertEquals(0, listener.firstFrames);
+    }
+
+    static class CountingListener extends FirstFrameListener {
+        int firstFrames;
+
+        CountingListener(View view) {
+            super(view);
+        }
+
+        @Override
+        void onFirstFrame(View view) {
+            firstFrames++;
+        }
+
+        @Override
+        void onDetachedBeforeFirstFrame(View view) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.mattlogan.library;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static me.mattlogan.library.TransitionMetrics.OPERATION_POP;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_PUSH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class FrameMonitorTest {
+
+    private static final int LAYOUT = 1;
+    private static final long FRAME_NANOS = 16666667;
+
+    RecordingFrameListener listener;
+    View view;
+
+    @Before
+    public void setup() {
+        listener = new RecordingFrameListener();
+        view = new View(InstrumentationRegistry.getContext());
+    }
+
+    @Test
+    public void countsFramesUntilStopped() {
+        // Everything runs in one main thread message, so no real frame gets in between
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor monitor = new FrameMonitor(listener);
+                monitor.start(OPERATION_PUSH, LAYOUT, AnimatorFactory.NONE, view);
+                monitor.doFrame(FRAME_NANOS);
+                monitor.doFrame(2 * FRAME_NANOS);
+                monitor.doFrame(5 * FRAME_NANOS);
+                monitor.doFrame(6 * FRAME_NANOS);
+                monitor.stop();
+                monitor.doFrame(7 * FRAME_NANOS);
+                monitor.stop();
+            }
+        });
+
+        assertEquals(1, listener.count);
+        assertEquals(OPERATION_PUSH, listener.operation);
+        assertEquals(LAYOUT, listener.layoutId);
+        assertSame(AnimatorFactory.NONE, listener.animatorFactory);
+        assertEquals(4, listener.frameCount);
+        assertEquals(1, listener.slowFrameCount);
+        assertEquals(3 * FRAME_NANOS, listener.worstFrameNanos);
+    }
+
+    @Test
+    public void cancelDoesNotReport() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor monitor = new FrameMonitor(listener);
+                monitor.start(OPERATION_POP, LAYOUT, AnimatorFactory.NONE, view);
+                monitor.doFrame(FRAME_NANOS);
+                monitor.cancel();
+                monitor.stop();
+            }
+        });
+
+        assertEquals(0, listener.count);
+    }
+
+    @Test
+    public void startResetsCount() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameMonitor monitor = new FrameMonitor(listener);
+                monitor.start(OPERATION_PUSH, LAYOUT, AnimatorFactory.NONE, view);
+                monitor.doFrame(FRAME_NANOS);
+                monitor.doFrame(10 * FRAME_NANOS);
+                monitor.start(OPERATION_POP, LAYOUT, AnimatorFactory.NONE, view);
+                monitor.doFrame(20 * FRAME_NANOS);
+                monitor.stop();
+            }
+        });
+
+        assertEquals(1, listener.count);
+        assertEquals(OPERATION_POP, listener.operation);
+        assertEquals(1, listener.frameCount);
+        assertEquals(0, listener.slowFrameCount);
+        assertEquals(0, listener.worstFrameNanos);
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    static class RecordingFrameListener implements TransitionFrameListener {
+        int count;
+        int operation;
+        int layoutId;
+        AnimatorFactory animatorFactory;
+        int frameCount;
+        int slowFrameCount;
+        long worstFrameNanos;
+
+        @Override
+        public void onTransitionFrames(int operation, int layoutId,
+                                       AnimatorFactory animatorFactory,
+                                       int frameCount, int slowFrameCount,
+                                       long worstFrameNanos) {
+            this.count++;
+            this.operation = operation;
+            this.layoutId = layoutId;
+            this.animatorFactory = animatorFactory;
+            this.frameCount = frameCount;
+            this.slowFrameCount = slowFrameCount;
+            this.worstFrameNanos = worstFrameNanos;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package me.mattlogan.library;
+
+import android.os.Debug;
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.EmptyStackException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ParcelableIntStackTest {
+
+    ParcelableIntStack stack;
+
+    @Before
+    public void setup() {
+        stack = new ParcelableIntStack();
+    }
+
+    @Test
+    public void pushAndPop() {
+        stack.push(1);
+        stack.push(2);
+        stack.push(3);
+
+        assertEquals(3, stack.size());
+        assertEquals(3, stack.pop());
+        assertEquals(2, stack.pop());
+        assertEquals(1, stack.pop());
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void pushGrowsPastDefaultCapacity() {
+        for (int i = 0; i < 100; i++) {
+            stack.push(i);
+        }
+
+        assertEquals(100, stack.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, stack.get(i));
+        }
+    }
+
+    @Test
+    public void peek() {
+        stack.push(1);
+        stack.push(2);
+
+        assertEquals(2, stack.peek());
+        assertEquals(2, stack.size());
+    }
+
+    @Test
+    public void popWithSizeZero() {
+        try {
+            stack.pop();
+            fail();
+        } catch (EmptyStackException e) {
+            assertNotNull(e);
+        }
+    }
+
+    @Test
+    public void peekWithSizeZero() {
+        try {
+            stack.peek();
+            fail();
+        } catch (EmptyStackException e) {
+            assertNotNull(e);
+        }
+    }
+
+    @Test
+    public void clear() {
+        stack.push(1);
+        stack.push(2);
+
+        stack.clear();
+
+        assertEquals(0, stack.size());
+    }
+
+    @Test
+    public void parcelRoundTrip() {
+        for (int i = 0; i < 20; i++) {
+            stack.push(i * 7);
+        }
+
+        Parcel parcel = Parcel.obtain();
+        stack.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ParcelableIntStack restored = ParcelableIntStack.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertEquals(20, restored.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * 7, restored.get(i));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void pushPopAndPeekDoNotAllocate() {
+        // Grow the backing array first, so only steady state operations are counted
+        for (int i = 0; i < 64; i++) {
+            stack.push(i);
+        }
+        stack.clear();
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < 1000; i++) {
+            stack.push(i);
+            stack.peek();
+            if (stack.size() == 64) {
+                while (!stack.isEmpty()) {
+                    stack.pop();
+                }
+            }
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertEquals(0, allocations);
+    }
+}
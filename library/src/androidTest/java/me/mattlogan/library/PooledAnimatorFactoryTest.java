@@ -0,0 +1,112 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class PooledAnimatorFactoryTest {
+
+    View view;
+
+    @Before
+    public void setup() {
+        view = new View(InstrumentationRegistry.getContext());
+        view.layout(0, 0, 100, 50);
+    }
+
+    @Test
+    public void createSlideWithUnknownDirection() {
+        try {
+            SlideAnimatorFactory.create(2, 300);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown direction: 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void createFadeWithNonPositiveDuration() {
+        try {
+            FadeAnimatorFactory.create(FadeAnimatorFactory.IN, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("durationMillis <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void slideInMovesViewFromRightEdge() {
+        final Animator animator = SlideAnimatorFactory.create(SlideAnimatorFactory.IN, 300)
+                .createAnimator(view);
+        assertEquals(100, view.getTranslationX(), 0);
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                animator.start();
+                animator.end();
+            }
+        });
+
+        assertEquals(0, view.getTranslationX(), 0);
+    }
+
+    @Test
+    public void fadeOutHidesView() {
+        final Animator animator = FadeAnimatorFactory.create(FadeAnimatorFactory.OUT, 300)
+                .createAnimator(view);
+        assertEquals(1, view.getAlpha(), 0);
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                animator.start();
+                animator.end();
+            }
+        });
+
+        assertEquals(0, view.getAlpha(), 0);
+    }
+
+    @Test
+    public void releasedAnimatorIsRetargeted() {
+        SlideAnimatorFactory animatorFactory =
+                SlideAnimatorFactory.create(SlideAnimatorFactory.OUT, 300);
+        Animator first = animatorFactory.createAnimator(view);
+        first.setDuration(50);
+        animatorFactory.releaseAnimator(first);
+
+        View other = new View(InstrumentationRegistry.getContext());
+        Animator second = animatorFactory.createAnimator(other);
+
+        assertSame(first, second);
+        assertEquals(300, second.getDuration());
+        assertNotSame(second, animatorFactory.createAnimator(view));
+    }
+
+    @Test
+    public void ignoresForeignAnimators() {
+        SlideAnimatorFactory animatorFactory =
+                SlideAnimatorFactory.create(SlideAnimatorFactory.IN, 300);
+        Animator animator = animatorFactory.createAnimator(view);
+
+        animatorFactory.releaseAnimator(AnimatorFactory.NONE.createAnimator(view));
+
+        assertNotSame(animator, animatorFactory.createAnimator(view));
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
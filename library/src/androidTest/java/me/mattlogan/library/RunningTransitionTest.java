@@ -0,0 +1,63 @@
+package me.mattlogan.library;
+
+import android.animation.AnimatorListenerAdapter;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class RunningTransitionTest {
+
+    RunningTransition transition;
+    View view;
+
+    @Before
+    public void setup() {
+        transition = new RunningTransition();
+        view = new View(InstrumentationRegistry.getContext());
+    }
+
+    @Test
+    public void clearRestoresOriginalLayerType() {
+        view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+        transition.begin(TransitionMetrics.OPERATION_PUSH, 1, view);
+
+        transition.promoteToHardwareLayer(view);
+        assertEquals(View.LAYER_TYPE_HARDWARE, view.getLayerType());
+
+        transition.clear(new AnimatorListenerAdapter() {
+        });
+        assertEquals(View.LAYER_TYPE_SOFTWARE, view.getLayerType());
+    }
+
+    @Test
+    public void hardwareLayerIsKept() {
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        transition.begin(TransitionMetrics.OPERATION_POP, 1, view);
+
+        transition.promoteToHardwareLayer(view);
+        transition.clear(new AnimatorListenerAdapter() {
+        });
+
+        assertEquals(View.LAYER_TYPE_HARDWARE, view.getLayerType());
+    }
+
+    @Test
+    public void clearForgetsTransition() {
+        transition.begin(TransitionMetrics.OPERATION_PUSH, 1, view);
+
+        transition.clear(new AnimatorListenerAdapter() {
+        });
+
+        assertFalse(transition.isRunning());
+        assertNull(transition.view);
+    }
+}
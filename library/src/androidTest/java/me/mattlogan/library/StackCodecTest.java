@@ -0,0 +1,89 @@
+package me.mattlogan.library;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class StackCodecTest {
+
+    @Test
+    public void encodeAndDecode() {
+        ParcelableIntStack stack = new ParcelableIntStack();
+        stack.push(0x7f030001);
+        stack.push(0x7f030005);
+        stack.push(0x7f030002);
+        stack.push(Integer.MIN_VALUE);
+        stack.push(Integer.MAX_VALUE);
+
+        ParcelableIntStack decoded = StackCodec.decode(StackCodec.encode(stack));
+
+        assertEquals(stack.size(), decoded.size());
+        for (int i = 0; i < stack.size(); i++) {
+            assertEquals(stack.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void encodeAndDecodeEmptyStack() {
+        ParcelableIntStack decoded = StackCodec.decode(StackCodec.encode(new ParcelableIntStack()));
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void encodingIsCompact() {
+        ParcelableIntStack stack = new ParcelableIntStack();
+        for (int i = 0; i < 100; i++) {
+            stack.push(0x7f030000 + (i % 4));
+        }
+
+        // About 2 bytes per entry for the ids after the first, instead of 4
+        assertTrue(StackCodec.encode(stack).length < 2 * 100 + 10);
+    }
+
+    @Test
+    public void repeatedEntriesAreOneRun() {
+        ParcelableIntStack stack = new ParcelableIntStack();
+        for (int i = 0; i < 1000; i++) {
+            stack.push(0x7f030001);
+        }
+
+        byte[] bytes = StackCodec.encode(stack);
+
+        assertTrue(bytes.length < 16);
+        assertEquals(1000, StackCodec.decode(bytes).size());
+    }
+
+    @Test
+    public void decodeUnsupportedVersion() {
+        try {
+            StackCodec.decode(new byte[]{(byte) (StackCodec.VERSION + 1), 0});
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unsupported saved state version: " + (StackCodec.VERSION + 1),
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void decodeTruncated() {
+        ParcelableIntStack stack = new ParcelableIntStack();
+        stack.push(0x7f030001);
+        stack.push(0x7f030002);
+        byte[] bytes = StackCodec.encode(stack);
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        try {
+            StackCodec.decode(truncated);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Malformed saved state", e.getMessage());
+        }
+    }
+}
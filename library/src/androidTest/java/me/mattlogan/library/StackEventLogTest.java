@@ -0,0 +1,84 @@
+package me.mattlogan.library;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class StackEventLogTest {
+
+    @Test
+    public void createWithNonPositiveCapacity() {
+        try {
+            StackEventLog.create(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("capacity <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void recordsOldestFirst() {
+        StackEventLog log = StackEventLog.create(4);
+        log.record(StackEventLog.EVENT_PUSH, 1, 1);
+        log.record(StackEventLog.EVENT_PUSH, 2, 2);
+
+        assertEquals(2, log.size());
+        assertEquals(StackEventLog.EVENT_PUSH, log.getEvent(0));
+        assertEquals(1, log.getLayoutId(0));
+        assertEquals(2, log.getLayoutId(1));
+        assertEquals(2, log.getStackSize(1));
+        assertTrue(log.getUptimeMillis(0) <= log.getUptimeMillis(1));
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        StackEventLog log = StackEventLog.create(3);
+        for (int i = 1; i <= 5; i++) {
+            log.record(StackEventLog.EVENT_PUSH, i, i);
+        }
+
+        assertEquals(3, log.size());
+        assertEquals(3, log.getLayoutId(0));
+        assertEquals(4, log.getLayoutId(1));
+        assertEquals(5, log.getLayoutId(2));
+    }
+
+    @Test
+    public void getWithIndexOutOfBounds() {
+        StackEventLog log = StackEventLog.create(3);
+        log.record(StackEventLog.EVENT_PUSH, 1, 1);
+        try {
+            log.getEvent(1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("index 1, size 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void dumpAndReset() {
+        StackEventLog log = StackEventLog.create(3);
+        log.record(StackEventLog.EVENT_PUSH, 0x7f030001, 1);
+        log.record(StackEventLog.EVENT_ANIMATION_START, 0x7f030002, 2);
+        StringWriter writer = new StringWriter();
+
+        log.dump(new PrintWriter(writer));
+
+        String dump = writer.toString();
+        assertTrue(dump, dump.contains("push layout 0x7f030001 size 1"));
+        assertTrue(dump, dump.contains("animation start layout 0x7f030002 size 2"));
+
+        log.reset();
+
+        assertEquals(0, log.size());
+    }
+}
@@ -0,0 +1,60 @@
+package me.mattlogan.library;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StackSnapshotTest {
+
+    @Test
+    public void pushAndPop() {
+        StackSnapshot snapshot = StackSnapshot.EMPTY.push(1, 1).push(2, 2).push(3, 3).pop(4);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.getTopLayoutId());
+        assertEquals(4, snapshot.getVersion());
+        assertArrayEquals(new int[]{1, 2}, snapshot.toArray());
+    }
+
+    @Test
+    public void popToEmpty() {
+        StackSnapshot snapshot = StackSnapshot.EMPTY.push(1, 1).pop(2);
+
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getTopLayoutId());
+        assertArrayEquals(new int[0], snapshot.toArray());
+    }
+
+    @Test
+    public void earlierSnapshotsDoNotChange() {
+        StackSnapshot earlier = StackSnapshot.EMPTY.push(1, 1).push(2, 2);
+        earlier.pop(3).push(4, 4);
+
+        assertArrayEquals(new int[]{1, 2}, earlier.toArray());
+    }
+
+    @Test
+    public void toArrayReturnsCopy() {
+        StackSnapshot snapshot = StackSnapshot.EMPTY.push(1, 1);
+        snapshot.toArray()[0] = 2;
+
+        assertArrayEquals(new int[]{1}, snapshot.toArray());
+    }
+
+    @Test
+    public void contains() {
+        StackSnapshot snapshot = StackSnapshot.EMPTY.push(1, 1).push(2, 2);
+
+        assertTrue(snapshot.contains(1));
+        assertTrue(snapshot.contains(2));
+        assertFalse(snapshot.contains(3));
+        assertFalse(StackSnapshot.EMPTY.contains(0));
+    }
+}
@@ -0,0 +1,112 @@
+package me.mattlogan.library;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static me.mattlogan.library.TransitionMetrics.OPERATION_POP;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_PUSH;
+import static me.mattlogan.library.TransitionMetrics.PHASE_ANIMATION;
+import static me.mattlogan.library.TransitionMetrics.PHASE_INFLATE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class TransitionHistogramsTest {
+
+    private static final int LAYOUT_A = 1;
+    private static final int LAYOUT_B = 2;
+
+    TransitionHistograms histograms;
+
+    @Before
+    public void setup() {
+        histograms = TransitionHistograms.create();
+    }
+
+    @Test
+    public void countsByLayoutIdOperationAndPhase() {
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 1000);
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 2000);
+        histograms.onPhaseTimed(OPERATION_POP, PHASE_ANIMATION, LAYOUT_A, 3000);
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_B, 4000);
+
+        assertEquals(2, histograms.getCount(LAYOUT_A, OPERATION_PUSH, PHASE_INFLATE));
+        assertEquals(1, histograms.getCount(LAYOUT_A, OPERATION_POP, PHASE_ANIMATION));
+        assertEquals(0, histograms.getCount(LAYOUT_A, OPERATION_PUSH, PHASE_ANIMATION));
+        assertEquals(1, histograms.getCount(LAYOUT_B, OPERATION_PUSH, PHASE_INFLATE));
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        for (int i = 0; i < 9; i++) {
+            histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 1000);
+        }
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 1000000);
+
+        assertEquals(1024, histograms.getPercentileNanos(LAYOUT_A, OPERATION_PUSH,
+                PHASE_INFLATE, 50));
+        assertEquals(1024, histograms.getPercentileNanos(LAYOUT_A, OPERATION_PUSH,
+                PHASE_INFLATE, 90));
+        assertEquals(1048576, histograms.getPercentileNanos(LAYOUT_A, OPERATION_PUSH,
+                PHASE_INFLATE, 100));
+        assertEquals(0, histograms.getPercentileNanos(LAYOUT_B, OPERATION_PUSH,
+                PHASE_INFLATE, 50));
+    }
+
+    @Test
+    public void percentileOutOfRange() {
+        try {
+            histograms.getPercentileNanos(LAYOUT_A, OPERATION_PUSH, PHASE_INFLATE, 101);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("percentile must be between 0 and 100", e.getMessage());
+        }
+    }
+
+    @Test
+    public void unknownPhase() {
+        try {
+            histograms.onPhaseTimed(OPERATION_PUSH, 5, LAYOUT_A, 1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown phase: 5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void recordingDoesNotAllocateForKnownLayoutId() {
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 1000);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < 1000; i++) {
+            histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, i);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertEquals(0, allocations);
+    }
+
+    @Test
+    public void dumpAndReset() {
+        histograms.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE, LAYOUT_A, 1000);
+        StringWriter output = new StringWriter();
+
+        histograms.dump(new PrintWriter(output));
+
+        assertTrue(output.toString().contains("layout 0x1"));
+        assertTrue(output.toString().contains("push inflate: count=1"));
+
+        histograms.reset();
+        assertEquals(0, histograms.getCount(LAYOUT_A, OPERATION_PUSH, PHASE_INFLATE));
+    }
+}
@@ -0,0 +1,148 @@
+package me.mattlogan.library;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ViewPoolTest {
+
+    private static final int LAYOUT_A = 1;
+    private static final int LAYOUT_B = 2;
+
+    Context context;
+
+    @Before
+    public void setup() {
+        context = InstrumentationRegistry.getContext();
+    }
+
+    @Test
+    public void createWithNonPositiveLimits() {
+        try {
+            ViewPool.create(0, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("maxViewsPerLayout <= 0", e.getMessage());
+        }
+        try {
+            ViewPool.create(1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("maxViews <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void acquireWithEmptyPool() {
+        ViewPool pool = ViewPool.create(2, 4);
+        assertNull(pool.acquire(LAYOUT_A));
+    }
+
+    @Test
+    public void acquireReturnsMostRecentlyReleased() {
+        ViewPool pool = ViewPool.create(2, 4);
+        View first = new View(context);
+        View second = new View(context);
+
+        pool.release(LAYOUT_A, first);
+        pool.release(LAYOUT_A, second);
+
+        assertSame(second, pool.acquire(LAYOUT_A));
+        assertSame(first, pool.acquire(LAYOUT_A));
+        assertNull(pool.acquire(LAYOUT_A));
+    }
+
+    @Test
+    public void releaseEvictsOldestViewForLayoutWhenLayoutIsFull() {
+        ViewPool pool = ViewPool.create(1, 4);
+        View other = new View(context);
+        View first = new View(context);
+        View second = new View(context);
+
+        pool.release(LAYOUT_B, other);
+        pool.release(LAYOUT_A, first);
+        pool.release(LAYOUT_A, second);
+
+        assertEquals(1, pool.size(LAYOUT_A));
+        assertEquals(2, pool.size());
+        assertSame(second, pool.acquire(LAYOUT_A));
+        assertSame(other, pool.acquire(LAYOUT_B));
+    }
+
+    @Test
+    public void releaseEvictsLeastRecentlyReleasedWhenPoolIsFull() {
+        ViewPool pool = ViewPool.create(2, 2);
+        View oldest = new View(context);
+
+        pool.release(LAYOUT_A, oldest);
+        pool.release(LAYOUT_B, new View(context));
+        pool.release(LAYOUT_B, new View(context));
+
+        assertEquals(2, pool.size());
+        assertNull(pool.acquire(LAYOUT_A));
+    }
+
+    @Test
+    public void releaseWithAttachedView() {
+        ViewPool pool = ViewPool.create(2, 4);
+        View view = new View(context);
+        new FrameLayout(context).addView(view);
+
+        try {
+            pool.release(LAYOUT_A, view);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("view still has a parent", e.getMessage());
+        }
+    }
+
+    @Test
+    public void releaseResetsView() {
+        ViewPool pool = ViewPool.create(2, 4);
+        View view = new View(context);
+        view.setVisibility(View.GONE);
+
+        pool.release(LAYOUT_A, view);
+
+        assertEquals(View.VISIBLE, view.getVisibility());
+    }
+
+    @Test
+    public void releaseCallsCustomResetter() {
+        final int[] resetLayoutId = new int[1];
+        ViewPool pool = ViewPool.create(2, 4, new ViewPool.Resetter() {
+            @Override
+            public void reset(View view, int layoutId) {
+                resetLayoutId[0] = layoutId;
+            }
+        });
+
+        pool.release(LAYOUT_B, new View(context));
+
+        assertEquals(LAYOUT_B, resetLayoutId[0]);
+    }
+
+    @Test
+    public void clear() {
+        ViewPool pool = ViewPool.create(2, 4);
+        pool.release(LAYOUT_A, new View(context));
+        pool.release(LAYOUT_B, new View(context));
+
+        pool.clear();
+
+        assertEquals(0, pool.size());
+        assertNull(pool.acquire(LAYOUT_A));
+    }
+}
@@ -0,0 +1,223 @@
+package me.mattlogan.library;
+
+import android.content.ComponentCallbacks2;
+import android.os.Bundle;
+import android.support.annotation.LayoutRes;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+@RunWith(AndroidJUnit4.class)
+public class ViewStackGroupTest {
+
+    @LayoutRes private static final int BOTTOM_LAYOUT_RES = android.R.layout.simple_list_item_1;
+    @LayoutRes private static final int TOP_LAYOUT_RES = android.R.layout.simple_list_item_2;
+
+    FrameLayout container;
+    ViewStackGroup group;
+
+    @Before
+    public void setup() {
+        container = new FrameLayout(InstrumentationRegistry.getContext());
+        group = ViewStackGroup.create(container, mock(ViewStackDelegate.class));
+    }
+
+    @Test
+    public void createWithNullContainer() {
+        try {
+            ViewStackGroup.create(null, mock(ViewStackDelegate.class));
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("container == null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void setActiveStackWithEmptyName() {
+        try {
+            group.setActiveStack("");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("name is empty", e.getMessage());
+        }
+    }
+
+    @Test
+    public void onlyActiveStackIsAttached() {
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        ViewStack search = group.setActiveStack("search");
+        search.push(TOP_LAYOUT_RES);
+
+        assertEquals(1, container.getChildCount());
+        assertSame(search, group.getActiveStack());
+        assertEquals("search", group.getActiveStackName());
+        assertSame(container.getChildAt(0), search.peek().getParent());
+        assertNull(home.peek().getParent().getParent());
+    }
+
+    @Test
+    public void switchingBackReattachesViews() {
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        View top = home.push(TOP_LAYOUT_RES);
+        group.setActiveStack("search").push(BOTTOM_LAYOUT_RES);
+
+        group.setActiveStack("home");
+
+        assertSame(top, home.peek());
+        assertSame(container.getChildAt(0), top.getParent());
+    }
+
+    @Test
+    public void inactiveStacksOverBudgetAreDeferred() {
+        ViewPool viewPool = ViewPool.create(2, 8);
+        group.setViewPool(viewPool);
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        View top = home.push(TOP_LAYOUT_RES);
+        group.setActiveStack("search").push(BOTTOM_LAYOUT_RES);
+
+        group.setInactiveViewByteBudget(1, MemoryEstimator.DEFAULT);
+
+        assertEquals(2, home.size());
+        assertEquals(2, viewPool.size());
+
+        group.setActiveStack("home");
+
+        // The top View comes back out of the pool instead of being inflated
+        assertSame(top, home.peek());
+        assertEquals(2, home.size());
+    }
+
+    @Test
+    public void onTrimMemoryTrimsInactiveStacks() {
+        ViewPool viewPool = ViewPool.create(2, 8);
+        group.setViewPool(viewPool);
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        View top = home.push(TOP_LAYOUT_RES);
+        ViewStack search = group.setActiveStack("search");
+        View searchTop = search.push(BOTTOM_LAYOUT_RES);
+
+        group.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertNotNull(top.getParent());
+
+        group.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+
+        assertNull(top.getParent());
+        assertEquals(0, viewPool.size());
+        assertEquals(2, home.size());
+        assertSame(searchTop, search.peek());
+        assertNotNull(searchTop.getParent());
+
+        group.setActiveStack("home");
+
+        assertNotSame(top, home.peek());
+        assertEquals(2, home.size());
+    }
+
+    @Test
+    public void stacksSharePool() {
+        ViewPool viewPool = ViewPool.create(2, 8);
+        group.setViewPool(viewPool);
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        View popped = home.push(TOP_LAYOUT_RES);
+        home.pop();
+
+        ViewStack search = group.setActiveStack("search");
+
+        assertSame(popped, search.push(TOP_LAYOUT_RES));
+    }
+
+    @Test
+    public void saveToBundleAndRebuild() {
+        group.setActiveStack("search").push(TOP_LAYOUT_RES);
+        ViewStack home = group.setActiveStack("home");
+        home.push(BOTTOM_LAYOUT_RES);
+        home.push(TOP_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        group.saveToBundle(bundle, "tag");
+
+        FrameLayout otherContainer = new FrameLayout(InstrumentationRegistry.getContext());
+        ViewStackGroup rebuilt =
+                ViewStackGroup.create(otherContainer, mock(ViewStackDelegate.class));
+        assertTrue(rebuilt.rebuildFromBundle(bundle, "tag"));
+
+        assertEquals(2, rebuilt.size());
+        assertEquals("home", rebuilt.getActiveStackName());
+        assertEquals(2, rebuilt.getStack("home").size());
+        assertEquals(1, rebuilt.getStack("search").size());
+        assertEquals(1, otherContainer.getChildCount());
+        assertNotSame(rebuilt.getStack("home"), rebuilt.getStack("search"));
+    }
+
+    @Test
+    public void rebuildFromBundleRestoresRecencyOrder() {
+        group.setActiveStack("a").push(BOTTOM_LAYOUT_RES);
+        group.setActiveStack("b").push(BOTTOM_LAYOUT_RES);
+        group.setActiveStack("c").push(BOTTOM_LAYOUT_RES);
+        group.setActiveStack("d").push(BOTTOM_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        group.saveToBundle(bundle, "tag");
+
+        ViewStackGroup rebuilt = ViewStackGroup.create(
+                new FrameLayout(InstrumentationRegistry.getContext()),
+                mock(ViewStackDelegate.class));
+        rebuilt.rebuildFromBundle(bundle, "tag");
+        Bundle resaved = new Bundle();
+        rebuilt.saveToBundle(resaved, "tag");
+
+        assertArrayEquals(new String[]{"d", "c", "b", "a"}, resaved.getStringArray("tag:names"));
+    }
+
+    @Test
+    public void rebuildFromBundleReportsLostFile() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        ViewStack home = group.setActiveStack("home");
+        home.setSavedStateDirectory(directory, 1);
+        home.push(BOTTOM_LAYOUT_RES);
+        group.setActiveStack("search").push(TOP_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        group.saveToBundle(bundle, "tag");
+        assertTrue(new File(directory, bundle.getString("tag:home:file")).delete());
+
+        ViewStackGroup rebuilt = ViewStackGroup.create(
+                new FrameLayout(InstrumentationRegistry.getContext()),
+                mock(ViewStackDelegate.class));
+        rebuilt.getStack("home").setSavedStateDirectory(directory, 1);
+
+        assertFalse(rebuilt.rebuildFromBundle(bundle, "tag"));
+        assertEquals(0, rebuilt.getStack("home").size());
+        assertEquals(1, rebuilt.getStack("search").size());
+    }
+
+    @Test
+    public void rebuildFromBundleWithoutState() {
+        try {
+            group.rebuildFromBundle(new Bundle(), "tag");
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("Bundle doesn't contain any ViewStackGroup state.", e.getMessage());
+        }
+    }
+}
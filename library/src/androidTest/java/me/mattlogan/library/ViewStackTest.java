@@ -1,6 +1,11 @@
 package me.mattlogan.library;
 
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Debug;
 import android.support.annotation.LayoutRes;
 import android.support.test.InstrumentationRegistry;
 import android.view.View;
@@ -10,8 +15,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.isA;
@@ -24,7 +34,10 @@ import android.widget.FrameLayout;
 import android.widget.TextView;
 import android.widget.TwoLineListItem;
 
+import java.io.File;
 import java.util.EmptyStackException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(AndroidJUnit4.class)
 public class ViewStackTest {
@@ -39,6 +52,15 @@ public class ViewStackTest {
 
     @LayoutRes private static int BOTTOM_LAYOUT_RES = android.R.layout.simple_list_item_1;
     @LayoutRes private static int TOP_LAYOUT_RES = android.R.layout.simple_list_item_2;
+    @LayoutRes private static int THIRD_LAYOUT_RES = android.R.layout.simple_list_item_checked;
+
+    // Its Animators never end by themselves, so tests end the transitions through the listeners
+    private static final AnimatorFactory MANUAL = new AnimatorFactory() {
+        @Override
+        public Animator createAnimator(View view) {
+            return new ManualAnimator();
+        }
+    };
 
     @Before
     public void setup() {
@@ -108,7 +130,200 @@ public class ViewStackTest {
 
         Bundle bundle = new Bundle();
         viewStack.saveToBundle(bundle, "tag");
-        assertNotNull(bundle.getParcelable("tag"));
+        assertNotNull(bundle.getByteArray("tag"));
+    }
+
+    @Test
+    public void saveToBundleAndRebuild() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+
+        ViewStack rebuilt = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        rebuilt.rebuildFromBundle(bundle, "tag");
+
+        assertEquals(2, rebuilt.size());
+        assertTrue(rebuilt.peek() instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void saveToFileAndRebuild() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+
+        assertFalse(bundle.containsKey("tag"));
+        assertNotNull(bundle.getString("tag:file"));
+
+        ViewStack rebuilt = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        rebuilt.setSavedStateDirectory(directory, 1);
+        rebuilt.rebuildFromBundle(bundle, "tag");
+
+        assertEquals(2, rebuilt.size());
+        assertTrue(rebuilt.peek() instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void saveSmallStackToBundleWithSavedStateDirectory() {
+        viewStack.setSavedStateDirectory(
+                InstrumentationRegistry.getTargetContext().getCacheDir(), 1024);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+
+        assertNotNull(bundle.getByteArray("tag"));
+        assertFalse(bundle.containsKey("tag:file"));
+    }
+
+    @Test
+    public void rebuildFromCorruptFile() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+        bundle.putLong("tag:crc", bundle.getLong("tag:crc") + 1);
+
+        ViewStack rebuilt = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        rebuilt.setSavedStateDirectory(directory, 1);
+
+        assertFalse(rebuilt.rebuildFromBundle(bundle, "tag"));
+        assertEquals(0, rebuilt.size());
+    }
+
+    @Test
+    public void rebuildFromMissingFile() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+        assertTrue(new File(directory, bundle.getString("tag:file")).delete());
+
+        ViewStack rebuilt = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        rebuilt.setSavedStateDirectory(directory, 1);
+
+        assertFalse(rebuilt.rebuildFromBundle(bundle, "tag"));
+        assertEquals(0, rebuilt.size());
+    }
+
+    @Test
+    public void saveToFileWithSharedTagKeepsEachStack() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        ViewStack other = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        other.setSavedStateDirectory(directory, 1);
+        other.push(THIRD_LAYOUT_RES);
+
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+        Bundle otherBundle = new Bundle();
+        other.saveToBundle(otherBundle, "tag");
+        // Unchanged, so the file isn't written again
+        viewStack.saveToBundle(bundle, "tag");
+
+        ViewStack rebuilt = ViewStack.create(
+                new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+        rebuilt.setSavedStateDirectory(directory, 1);
+        assertTrue(rebuilt.rebuildFromBundle(bundle, "tag"));
+        assertEquals(2, rebuilt.size());
+        assertTrue(rebuilt.peek() instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void saveToFileDeletesPreviousFile() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+        File first = new File(directory, bundle.getString("tag:file"));
+
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.saveToBundle(bundle, "tag");
+
+        assertFalse(first.exists());
+        assertTrue(new File(directory, bundle.getString("tag:file")).exists());
+    }
+
+    @Test
+    public void clearAndFinishDeleteSavedStateFile() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        viewStack.setSavedStateDirectory(directory, 1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+        File cleared = new File(directory, bundle.getString("tag:file"));
+
+        viewStack.clear();
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.saveToBundle(bundle, "tag");
+        File finished = new File(directory, bundle.getString("tag:file"));
+        viewStack.pop();
+
+        assertFalse(cleared.exists());
+        assertFalse(finished.exists());
+        verify(delegate).finishStack();
+    }
+
+    @Test
+    public void saveAndRecreateKeepsSavedStateFilesBounded() {
+        File directory = InstrumentationRegistry.getTargetContext().getCacheDir();
+        Bundle bundle = null;
+        for (int i = 0; i < 50; i++) {
+            ViewStack recreated = ViewStack.create(
+                    new FrameLayout(InstrumentationRegistry.getContext()), delegate);
+            recreated.setSavedStateDirectory(directory, 1);
+            // Every other instance is killed without being restored, and starts over
+            if (bundle == null || !recreated.rebuildFromBundle(bundle, "bounded")) {
+                recreated.push(BOTTOM_LAYOUT_RES);
+            }
+            recreated.push(i % 2 == 0 ? TOP_LAYOUT_RES : THIRD_LAYOUT_RES);
+            Bundle saved = new Bundle();
+            recreated.saveToBundle(saved, "bounded");
+            bundle = i % 2 == 0 ? saved : null;
+        }
+
+        int files = 0;
+        for (String name : directory.list()) {
+            if (name.startsWith("viewstack-bounded-")) {
+                files++;
+            }
+        }
+        assertTrue(files + " saved state files", files <= 8);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void saveToBundleAndPeekDoNotAllocate() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        Bundle bundle = new Bundle();
+        viewStack.saveToBundle(bundle, "tag");
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < 1000; i++) {
+            viewStack.saveToBundle(bundle, "tag");
+            viewStack.peek();
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertEquals(0, allocations);
     }
 
     @Test
@@ -173,6 +388,53 @@ public class ViewStackTest {
         verifyOnViewAddedCalled(1);
     }
 
+    @Test
+    public void rebuildFromBundleLazily() {
+        ParcelableIntStack intStack = new ParcelableIntStack();
+        intStack.push(BOTTOM_LAYOUT_RES);
+        intStack.push(TOP_LAYOUT_RES);
+
+        Bundle bundle = new Bundle();
+        bundle.putParcelable("tag", intStack);
+
+        viewStack.rebuildFromBundleLazily(bundle, "tag");
+
+        assertEquals(2, viewStack.size());
+        assertEquals(1, container.getChildCount());
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+        verifyOnViewAddedCalled(1);
+
+        viewStack.pop();
+
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+    }
+
+    @Test
+    public void inflateDeferredViewsWhenIdle() {
+        ParcelableIntStack intStack = new ParcelableIntStack();
+        intStack.push(BOTTOM_LAYOUT_RES);
+        intStack.push(TOP_LAYOUT_RES);
+
+        final Bundle bundle = new Bundle();
+        bundle.putParcelable("tag", intStack);
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.rebuildFromBundleLazily(bundle, "tag");
+                viewStack.inflateDeferredViewsWhenIdle();
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertNumberOfViews(2);
+        assertBottomViewIsCorrectType();
+        assertTopViewIsCorrectType();
+        assertEquals(View.GONE, container.getChildAt(0).getVisibility());
+    }
+
     @Test
     public void pushReturnsCorrectView() {
         View view = viewStack.push(BOTTOM_LAYOUT_RES);
@@ -221,7 +483,7 @@ public class ViewStackTest {
 
     @Test
     public void pushWithAnimationFirstTime() {
-        AnimatorFactory animatorFactory = AnimatorFactory.NONE;
+        AnimatorFactory animatorFactory = MANUAL;
 
         viewStack.pushWithAnimation(BOTTOM_LAYOUT_RES, animatorFactory);
         viewStack.pushAnimatorListener.onAnimationEnd(null);
@@ -236,7 +498,7 @@ public class ViewStackTest {
     public void pushWithAnimationSecondTime() {
         viewStack.push(BOTTOM_LAYOUT_RES);
 
-        viewStack.pushWithAnimation(TOP_LAYOUT_RES, AnimatorFactory.NONE);
+        viewStack.pushWithAnimation(TOP_LAYOUT_RES, MANUAL);
         viewStack.pushAnimatorListener.onAnimationEnd(null);
 
         assertNumberOfViews(2);
@@ -248,6 +510,169 @@ public class ViewStackTest {
         verifyOnViewAddedCalled(2);
     }
 
+    @Test
+    public void pushWithAnimationNoneCompletesRightAway() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.pushWithAnimation(TOP_LAYOUT_RES, AnimatorFactory.NONE);
+
+        assertNumberOfViews(2);
+        assertEquals(View.GONE, container.getChildAt(0).getVisibility());
+        // The next transition doesn't have to settle an animation first
+        assertSame(container.getChildAt(1), viewStack.pop());
+        assertNumberOfViews(1);
+    }
+
+    @Test
+    public void popWithAnimationNoneCompletesRightAway() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.popWithAnimation(AnimatorFactory.NONE);
+
+        assertNumberOfViews(1);
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+        verifyOnViewRemovedCalled(1);
+    }
+
+    @Test
+    public void noneAnimatorEndsWhenStarted() {
+        Animator animator = AnimatorFactory.NONE.createAnimator(null);
+        Animator.AnimatorListener listener = mock(Animator.AnimatorListener.class);
+        animator.addListener(listener);
+
+        animator.start();
+
+        verify(listener).onAnimationStart(animator);
+        verify(listener).onAnimationEnd(animator);
+        // Each transition gets its own Animator, so a leftover listener hears of nothing else
+        assertNotSame(animator, AnimatorFactory.NONE.createAnimator(null));
+    }
+
+    @Test
+    public void reusableAnimatorFactoryGetsAnimatorBack() {
+        RecordingReusableFactory animatorFactory = new RecordingReusableFactory();
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.popWithAnimation(animatorFactory);
+        assertEquals(0, animatorFactory.released);
+        viewStack.popAnimationListener.onAnimationEnd(null);
+
+        assertEquals(1, animatorFactory.released);
+    }
+
+    @Test
+    public void reusableAnimatorFactoryGetsSettledAnimatorBack() {
+        RecordingReusableFactory animatorFactory = new RecordingReusableFactory();
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.popWithAnimation(animatorFactory);
+
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertEquals(1, animatorFactory.released);
+    }
+
+    @Test
+    public void pushAsyncWithNullCallback() {
+        try {
+            viewStack.pushAsync(BOTTOM_LAYOUT_RES, null);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("callback == null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pushAsync() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.pushAsync(BOTTOM_LAYOUT_RES, new AsyncPushCallback() {
+                    @Override
+                    public void onPushed(View view) {
+                        assertTrue(view instanceof TextView);
+                        latch.countDown();
+                    }
+                });
+            }
+        });
+        awaitOnMainThread(latch);
+
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        verifyOnViewAddedCalled(1);
+    }
+
+    @Test
+    public void pushAsyncAttachesInRequestedOrder() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(2);
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.pushAsync(BOTTOM_LAYOUT_RES, countDown(latch));
+                viewStack.pushAsync(TOP_LAYOUT_RES, countDown(latch));
+            }
+        });
+        awaitOnMainThread(latch);
+
+        assertNumberOfViews(2);
+        assertBottomViewIsCorrectType();
+        assertTopViewIsCorrectType();
+        assertEquals(View.GONE, container.getChildAt(0).getVisibility());
+        verifyOnViewAddedCalled(2);
+    }
+
+    @Test
+    public void popCancelsPendingPush() throws InterruptedException {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                PendingPush pendingPush = viewStack.pushAsync(TOP_LAYOUT_RES,
+                        new AsyncPushCallback() {
+                            @Override
+                            public void onPushed(View view) {
+                                fail();
+                            }
+                        });
+                assertNull(viewStack.pop());
+                assertTrue(pendingPush.isCancelled());
+                assertFalse(pendingPush.cancel());
+                // Inflations finish in order, so this one finishing means the first one has too
+                viewStack.pushAsync(BOTTOM_LAYOUT_RES, countDown(latch));
+            }
+        });
+        awaitOnMainThread(latch);
+
+        assertNumberOfViews(2);
+        assertTrue(container.getChildAt(1) instanceof TextView);
+        verifyOnViewAddedCalled(2);
+    }
+
+    @Test
+    public void clearCancelsPendingPushes() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                PendingPush pendingPush = viewStack.pushAsync(TOP_LAYOUT_RES,
+                        countDown(new CountDownLatch(1)));
+                viewStack.clear();
+                assertTrue(pendingPush.isCancelled());
+                viewStack.pushAsync(BOTTOM_LAYOUT_RES, countDown(latch));
+            }
+        });
+        awaitOnMainThread(latch);
+
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+    }
+
     @Test
     public void popWithSizeZero() {
         try {
@@ -284,62 +709,990 @@ public class ViewStackTest {
         viewStack.push(BOTTOM_LAYOUT_RES);
         viewStack.push(TOP_LAYOUT_RES);
 
-        viewStack.popWithAnimation(AnimatorFactory.NONE);
+        viewStack.popWithAnimation(MANUAL);
         viewStack.popAnimationListener.onAnimationEnd(null);
         assertNumberOfViews(1);
         verifyOnViewRemovedCalled(1);
     }
 
     @Test
-    public void peekWithSizeZero() {
-        try {
-            viewStack.peek();
-            fail();
-        } catch (EmptyStackException e) {
-            assertNotNull(e);
-        }
+    public void popWithAnimationTwiceRemovesEachPoppedView() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        View middle = viewStack.push(TOP_LAYOUT_RES);
+        View top = viewStack.push(TOP_LAYOUT_RES);
+
+        assertSame(top, viewStack.popWithAnimation(MANUAL));
+        assertSame(middle, viewStack.popWithAnimation(MANUAL));
+        // The first pop was fast-forwarded, so only the second one's View is left to remove
+        assertEquals(2, container.getChildCount());
+        assertEquals(1, viewStack.size());
+        assertSame(middle, container.getChildAt(1));
+
+        viewStack.popAnimationListener.onAnimationEnd(null);
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+        verifyOnViewRemovedCalled(2);
     }
 
     @Test
-    public void peek() {
+    public void popDuringPushAnimationCancelsPush() {
         viewStack.push(BOTTOM_LAYOUT_RES);
+        View pushed = viewStack.pushWithAnimation(TOP_LAYOUT_RES, MANUAL);
 
-        viewStack.push(TOP_LAYOUT_RES);
+        assertSame(pushed, viewStack.popWithAnimation(MANUAL));
 
-        View view = viewStack.peek();
+        // Removed right away, without a pop animation
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+        verifyOnViewRemovedCalled(1);
 
-        assertTrue(view instanceof TwoLineListItem);
+        // A late end callback of the cancelled push changes nothing
+        viewStack.pushAnimatorListener.onAnimationEnd(null);
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
     }
 
     @Test
-    public void size() {
+    public void pushDuringPopAnimationSettlesPop() {
         viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.popWithAnimation(MANUAL);
+
         viewStack.push(TOP_LAYOUT_RES);
 
         assertNumberOfViews(2);
+        assertBottomViewIsCorrectType();
+        assertTopViewIsCorrectType();
+        assertEquals(View.GONE, container.getChildAt(0).getVisibility());
+        verifyOnViewRemovedCalled(1);
     }
 
     @Test
-    public void clear() {
+    public void pushReusesPoppedViewFromViewPool() {
+        viewStack.setViewPool(ViewPool.create(2, 4));
         viewStack.push(BOTTOM_LAYOUT_RES);
-        viewStack.push(TOP_LAYOUT_RES);
-
-        viewStack.clear();
+        View top = viewStack.push(TOP_LAYOUT_RES);
 
-        assertNumberOfViews(0);
+        View popped = viewStack.pop();
+        View pushed = viewStack.push(TOP_LAYOUT_RES);
 
-        verifyOnViewAddedCalled(2);
-        verifyOnViewRemovedCalled(1);
+        assertSame(top, popped);
+        assertSame(top, pushed);
+        assertNumberOfViews(2);
     }
 
-    private void verifyOnViewAddedCalled(int times) {
-        verify(stackChangedListener1, times(times)).onViewAdded(isA(View.class));
-        verify(stackChangedListener2, times(times)).onViewAdded(isA(View.class));
+    @Test
+    public void popWithAnimationReleasesViewToViewPool() {
+        ViewPool viewPool = ViewPool.create(2, 4);
+        viewStack.setViewPool(viewPool);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        View top = viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.popWithAnimation(MANUAL);
+        viewStack.popAnimationListener.onAnimationEnd(null);
+
+        assertEquals(1, viewPool.size(TOP_LAYOUT_RES));
+        assertSame(top, viewStack.push(TOP_LAYOUT_RES));
     }
 
-    private void verifyOnViewRemovedCalled(int times) {
-        verify(stackChangedListener1, times(times)).onViewRemoved();
-        verify(stackChangedListener2, times(times)).onViewRemoved();
+    @Test
+    public void clearReleasesViewsToViewPool() {
+        ViewPool viewPool = ViewPool.create(2, 4);
+        viewStack.setViewPool(viewPool);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.clear();
+
+        assertEquals(1, viewPool.size(BOTTOM_LAYOUT_RES));
+        assertEquals(1, viewPool.size(TOP_LAYOUT_RES));
+        assertEquals(View.VISIBLE, viewPool.acquire(BOTTOM_LAYOUT_RES).getVisibility());
+    }
+
+    @Test
+    public void setMaxLiveViewsWithNonPositiveLimit() {
+        try {
+            viewStack.setMaxLiveViews(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("maxLiveViews <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pushEvictsViewsBeyondMaxLiveViews() {
+        viewStack.setMaxLiveViews(2);
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        assertEquals(3, viewStack.size());
+        assertEquals(2, container.getChildCount());
+        assertTopViewIsCorrectType();
+    }
+
+    @Test
+    public void popRevivesEvictedView() {
+        viewStack.setMaxLiveViews(1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.pop();
+
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+        verifyOnViewRemovedCalled(1);
+    }
+
+    @Test
+    public void popWithAnimationRevivesEvictedView() {
+        viewStack.setMaxLiveViews(1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.popWithAnimation(MANUAL);
+        assertEquals(2, container.getChildCount());
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+
+        viewStack.popAnimationListener.onAnimationEnd(null);
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+    }
+
+    @Test
+    public void liveViewByteBudgetEvictsDeepViews() {
+        viewStack.setLiveViewByteBudget(1, new MemoryEstimator() {
+            @Override
+            public long estimateBytes(View view) {
+                return 1;
+            }
+        });
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertEquals(2, viewStack.size());
+        assertEquals(1, container.getChildCount());
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void rebuildFromBundleOnlyInflatesLiveViews() {
+        ParcelableIntStack intStack = new ParcelableIntStack();
+        intStack.push(BOTTOM_LAYOUT_RES);
+        intStack.push(BOTTOM_LAYOUT_RES);
+        intStack.push(TOP_LAYOUT_RES);
+        Bundle bundle = new Bundle();
+        bundle.putParcelable("tag", intStack);
+
+        viewStack.setMaxLiveViews(1);
+        viewStack.rebuildFromBundle(bundle, "tag");
+
+        assertEquals(3, viewStack.size());
+        assertEquals(1, container.getChildCount());
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+        verifyOnViewAddedCalled(1);
+    }
+
+    @Test
+    public void pushAllOnlyInflatesTopView() {
+        viewStack.pushAll(BOTTOM_LAYOUT_RES, BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES);
+
+        assertEquals(3, viewStack.size());
+        assertEquals(1, container.getChildCount());
+        assertTrue(viewStack.peek() instanceof TwoLineListItem);
+        verifyOnViewAddedCalled(1);
+    }
+
+    @Test
+    public void pushAllThenPopInflatesDeferredView() {
+        viewStack.pushAll(BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES);
+
+        viewStack.pop();
+
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+    }
+
+    @Test
+    public void popTo() {
+        View bottom = viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        View top = viewStack.popTo(BOTTOM_LAYOUT_RES);
+
+        assertSame(bottom, top);
+        assertNumberOfViews(1);
+        assertEquals(View.VISIBLE, bottom.getVisibility());
+        verifyOnViewAddedCalled(3);
+        verifyOnViewRemovedCalled(1);
+    }
+
+    @Test
+    public void popToWithMissingLayoutId() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        try {
+            viewStack.popTo(TOP_LAYOUT_RES);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("layoutId isn't in the stack", e.getMessage());
+        }
+    }
+
+    @Test
+    public void replaceStackReusesMatchingBottomEntries() {
+        View bottom = viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.replaceStack(BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES);
+
+        assertNumberOfViews(2);
+        assertSame(bottom, container.getChildAt(0));
+        assertTopViewIsCorrectType();
+        assertEquals(View.GONE, bottom.getVisibility());
+        verifyOnViewAddedCalled(3);
+    }
+
+    @Test
+    public void transactionWithEmptyTarget() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        try {
+            viewStack.beginTransaction().pop().commit();
+            fail();
+        } catch (EmptyStackException e) {
+            assertNotNull(e);
+        }
+        assertNumberOfViews(1);
+    }
+
+    @Test
+    public void transactionCommittedTwice() {
+        Transaction transaction = viewStack.beginTransaction().push(BOTTOM_LAYOUT_RES);
+        transaction.commit();
+
+        try {
+            transaction.commit();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Transaction was already committed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void transactionWithoutChangesDoesNotNotify() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.beginTransaction().push(TOP_LAYOUT_RES).pop().commit();
+
+        assertNumberOfViews(1);
+        verifyOnViewAddedCalled(1);
+        verifyOnViewRemovedCalled(0);
+    }
+
+    @Test
+    public void pushTakesPrefetchedView() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.prefetch(TOP_LAYOUT_RES);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(1, viewStack.prefetchedViewCount());
+
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertEquals(0, viewStack.prefetchedViewCount());
+        assertNumberOfViews(1);
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void prefetchRespectsMaxViews() {
+        viewStack.setPrefetchLimits(1, 10000);
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.prefetch(BOTTOM_LAYOUT_RES);
+                viewStack.prefetch(TOP_LAYOUT_RES);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(1, viewStack.prefetchedViewCount());
+    }
+
+    @Test
+    public void setPrefetchLimitsWithNonPositiveValues() {
+        try {
+            viewStack.setPrefetchLimits(0, 1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("maxViews <= 0", e.getMessage());
+        }
+        try {
+            viewStack.setPrefetchLimits(1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("expiryMillis <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pushUsesCompiledLayout() {
+        final View view = new View(InstrumentationRegistry.getContext());
+        viewStack.setCompiledLayout(TOP_LAYOUT_RES, new CompiledLayout() {
+            @Override
+            public View createView(Context context, ViewGroup container) {
+                return view;
+            }
+        });
+
+        assertSame(view, viewStack.push(TOP_LAYOUT_RES));
+        assertBottomLayoutIsInflatedFromXml();
+    }
+
+    @Test
+    public void setCompiledLayoutWithNullInflatesFromXml() {
+        viewStack.setCompiledLayout(BOTTOM_LAYOUT_RES, new CompiledLayout() {
+            @Override
+            public View createView(Context context, ViewGroup container) {
+                return new View(context);
+            }
+        });
+        viewStack.setCompiledLayout(BOTTOM_LAYOUT_RES, null);
+
+        assertBottomLayoutIsInflatedFromXml();
+    }
+
+    @Test
+    public void compiledLayoutReturnsNull() {
+        viewStack.setCompiledLayout(BOTTOM_LAYOUT_RES, new CompiledLayout() {
+            @Override
+            public View createView(Context context, ViewGroup container) {
+                return null;
+            }
+        });
+        try {
+            viewStack.push(BOTTOM_LAYOUT_RES);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("CompiledLayout for layout id 0x"
+                    + Integer.toHexString(BOTTOM_LAYOUT_RES) + " returned null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void listenerCanRemoveItselfWhileNotified() {
+        StackChangedListener removing = new StackChangedListener() {
+            @Override
+            public void onViewAdded(View view) {
+                viewStack.removeStackChangedListener(this);
+            }
+
+            @Override
+            public void onViewRemoved() {
+            }
+        };
+        viewStack.addStackChangedListener(removing);
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertFalse(viewStack.removeStackChangedListener(removing));
+        verifyOnViewAddedCalled(2);
+    }
+
+    @Test
+    public void stackOperationListenerReportsPushAndPop() {
+        RecordingOperationListener listener = new RecordingOperationListener();
+        viewStack.addStackOperationListener(listener);
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        listener.assertLast(StackOperationListener.OPERATION_PUSH, 0, 1, 0, BOTTOM_LAYOUT_RES);
+
+        viewStack.push(TOP_LAYOUT_RES);
+        listener.assertLast(StackOperationListener.OPERATION_PUSH, 1, 2, BOTTOM_LAYOUT_RES,
+                TOP_LAYOUT_RES);
+
+        viewStack.pop();
+        listener.assertLast(StackOperationListener.OPERATION_POP, 2, 1, TOP_LAYOUT_RES,
+                BOTTOM_LAYOUT_RES);
+
+        viewStack.clear();
+        listener.assertLast(StackOperationListener.OPERATION_CLEAR, 1, 0, BOTTOM_LAYOUT_RES, 0);
+        assertEquals(4, listener.count);
+    }
+
+    @Test
+    public void stackEventLogRecordsOperations() {
+        StackEventLog log = StackEventLog.create(8);
+        viewStack.setStackEventLog(log);
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.pop();
+        viewStack.setStackEventLog(null);
+        viewStack.clear();
+
+        assertEquals(3, log.size());
+        assertEquals(StackEventLog.EVENT_PUSH, log.getEvent(1));
+        assertEquals(TOP_LAYOUT_RES, log.getLayoutId(1));
+        assertEquals(2, log.getStackSize(1));
+        assertEquals(StackEventLog.EVENT_POP, log.getEvent(2));
+        assertEquals(BOTTOM_LAYOUT_RES, log.getLayoutId(2));
+        assertEquals(1, log.getStackSize(2));
+    }
+
+    @Test
+    public void stackOperationListenerReportsTransaction() {
+        RecordingOperationListener listener = new RecordingOperationListener();
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.addStackOperationListener(listener);
+
+        viewStack.pushAll(TOP_LAYOUT_RES, TOP_LAYOUT_RES);
+
+        listener.assertLast(StackOperationListener.OPERATION_TRANSACTION, 1, 3,
+                BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES);
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void removeStackOperationListener() {
+        RecordingOperationListener listener = new RecordingOperationListener();
+        viewStack.addStackOperationListener(listener);
+
+        assertTrue(viewStack.removeStackOperationListener(listener));
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        assertEquals(0, listener.count);
+        assertFalse(viewStack.removeStackOperationListener(listener));
+    }
+
+    @Test
+    public void setVisibilityPolicyWithNull() {
+        try {
+            viewStack.setVisibilityPolicy(null);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("visibilityPolicy == null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void invisiblePolicyHidesViewsBelowTop() {
+        viewStack.setVisibilityPolicy(VisibilityPolicy.INVISIBLE);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertEquals(View.INVISIBLE, container.getChildAt(0).getVisibility());
+        assertEquals(View.VISIBLE, container.getChildAt(1).getVisibility());
+
+        viewStack.pop();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+    }
+
+    @Test
+    public void keepVisiblePolicyKeepsEntriesBelowTopVisible() {
+        viewStack.setVisibilityPolicy(VisibilityPolicy.KeepVisible.create(1));
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertEquals(View.GONE, container.getChildAt(0).getVisibility());
+        assertEquals(View.VISIBLE, container.getChildAt(1).getVisibility());
+        assertEquals(View.VISIBLE, container.getChildAt(2).getVisibility());
+
+        viewStack.pop();
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+        assertEquals(View.VISIBLE, container.getChildAt(1).getVisibility());
+    }
+
+    @Test
+    public void onTrimMemoryDropsCachedViews() {
+        ViewPool viewPool = ViewPool.create(2, 4);
+        viewStack.setViewPool(viewPool);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.pop();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.prefetch(THIRD_LAYOUT_RES);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        viewStack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertEquals(0, viewPool.size());
+        assertEquals(0, viewStack.prefetchedViewCount());
+        assertNumberOfViews(2);
+    }
+
+    @Test
+    public void onTrimMemoryDefersHiddenEntries() {
+        viewStack.setViewPool(ViewPool.create(2, 4));
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(THIRD_LAYOUT_RES);
+
+        viewStack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertEquals(3, viewStack.size());
+        assertEquals(1, container.getChildCount());
+
+        viewStack.pop();
+        assertEquals(2, viewStack.size());
+        assertEquals(1, container.getChildCount());
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+        assertEquals(View.VISIBLE, container.getChildAt(0).getVisibility());
+
+        viewStack.pop();
+        assertNumberOfViews(1);
+        assertBottomViewIsCorrectType();
+    }
+
+    @Test
+    public void onTrimMemoryKeepsVisibleEntries() {
+        viewStack.setVisibilityPolicy(VisibilityPolicy.KeepVisible.create(1));
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(THIRD_LAYOUT_RES);
+
+        viewStack.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        assertEquals(2, container.getChildCount());
+        assertTrue(container.getChildAt(0) instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void setVisibilityPolicyAppliesToExistingViews() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.setVisibilityPolicy(VisibilityPolicy.INVISIBLE);
+
+        assertEquals(View.INVISIBLE, container.getChildAt(0).getVisibility());
+    }
+
+    @Test
+    public void keepVisibleWithNonPositiveCount() {
+        try {
+            VisibilityPolicy.KeepVisible.create(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("count <= 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pushAndPopReportPhasesToTransitionMetrics() {
+        TransitionHistograms histograms = TransitionHistograms.create();
+        viewStack.setTransitionMetrics(histograms);
+
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.pop();
+
+        assertEquals(1, histograms.getCount(BOTTOM_LAYOUT_RES,
+                TransitionMetrics.OPERATION_PUSH, TransitionMetrics.PHASE_INFLATE));
+        assertEquals(1, histograms.getCount(TOP_LAYOUT_RES,
+                TransitionMetrics.OPERATION_PUSH, TransitionMetrics.PHASE_ATTACH));
+        assertEquals(1, histograms.getCount(TOP_LAYOUT_RES,
+                TransitionMetrics.OPERATION_POP, TransitionMetrics.PHASE_REMOVE));
+        // The uncovered View was still live, so nothing was inflated by the pop
+        assertEquals(0, histograms.getCount(BOTTOM_LAYOUT_RES,
+                TransitionMetrics.OPERATION_POP, TransitionMetrics.PHASE_INFLATE));
+    }
+
+    @Test
+    public void popWithAnimationReportsAnimationPhase() {
+        TransitionHistograms histograms = TransitionHistograms.create();
+        viewStack.setTransitionMetrics(histograms);
+        viewStack.setMaxLiveViews(1);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.popWithAnimation(MANUAL);
+        viewStack.popAnimationListener.onAnimationEnd(null);
+
+        assertEquals(1, histograms.getCount(BOTTOM_LAYOUT_RES,
+                TransitionMetrics.OPERATION_POP, TransitionMetrics.PHASE_INFLATE));
+        assertEquals(1, histograms.getCount(TOP_LAYOUT_RES,
+                TransitionMetrics.OPERATION_POP, TransitionMetrics.PHASE_ANIMATION));
+        assertEquals(1, histograms.getCount(TOP_LAYOUT_RES,
+                TransitionMetrics.OPERATION_POP, TransitionMetrics.PHASE_REMOVE));
+    }
+
+    @Test
+    public void stackEventLogRecordsAnimations() {
+        StackEventLog log = StackEventLog.create(8);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.setStackEventLog(log);
+
+        viewStack.popWithAnimation(MANUAL);
+        viewStack.popAnimationListener.onAnimationEnd(null);
+
+        assertEquals(3, log.size());
+        assertEquals(StackEventLog.EVENT_ANIMATION_START, log.getEvent(0));
+        assertEquals(TOP_LAYOUT_RES, log.getLayoutId(0));
+        assertEquals(StackEventLog.EVENT_ANIMATION_END, log.getEvent(1));
+        assertEquals(StackEventLog.EVENT_POP, log.getEvent(2));
+    }
+
+    @Test
+    public void transitionFrameListenerReportsWhenAnimationEnds() {
+        final FrameMonitorTest.RecordingFrameListener listener =
+                new FrameMonitorTest.RecordingFrameListener();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.setTransitionFrameListener(listener);
+                viewStack.push(BOTTOM_LAYOUT_RES);
+                viewStack.push(TOP_LAYOUT_RES);
+                viewStack.popWithAnimation(MANUAL);
+                viewStack.popAnimationListener.onAnimationEnd(null);
+            }
+        });
+
+        assertEquals(1, listener.count);
+        assertEquals(TransitionMetrics.OPERATION_POP, listener.operation);
+        assertEquals(TOP_LAYOUT_RES, listener.layoutId);
+        assertSame(MANUAL, listener.animatorFactory);
+    }
+
+    @Test
+    public void peekWithSizeZero() {
+        try {
+            viewStack.peek();
+            fail();
+        } catch (EmptyStackException e) {
+            assertNotNull(e);
+        }
+    }
+
+    @Test
+    public void peek() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.push(TOP_LAYOUT_RES);
+
+        View view = viewStack.peek();
+
+        assertTrue(view instanceof TwoLineListItem);
+    }
+
+    @Test
+    public void size() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        assertNumberOfViews(2);
+    }
+
+    @Test
+    public void clear() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+
+        viewStack.clear();
+
+        assertNumberOfViews(0);
+
+        verifyOnViewAddedCalled(2);
+        verifyOnViewRemovedCalled(1);
+    }
+
+    @Test
+    public void pushWithUnknownFlags() {
+        try {
+            viewStack.push(BOTTOM_LAYOUT_RES, 4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown push flags: 4", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pushSingleTopReusesTop() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        View top = viewStack.push(TOP_LAYOUT_RES);
+        RecordingOperationListener listener = new RecordingOperationListener();
+        viewStack.addStackOperationListener(listener);
+
+        View pushed = viewStack.push(TOP_LAYOUT_RES, ViewStack.FLAG_SINGLE_TOP);
+
+        assertSame(top, pushed);
+        assertNumberOfViews(2);
+        assertEquals(1, listener.count);
+        listener.assertLast(StackOperationListener.OPERATION_TRANSACTION, 2, 2, TOP_LAYOUT_RES,
+                TOP_LAYOUT_RES);
+    }
+
+    @Test
+    public void pushSingleTopPushesOtherLayout() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.push(TOP_LAYOUT_RES, ViewStack.FLAG_SINGLE_TOP);
+
+        assertNumberOfViews(2);
+        assertTopViewIsCorrectType();
+    }
+
+    @Test
+    public void pushClearTopReusesExistingEntry() {
+        View bottom = viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(THIRD_LAYOUT_RES);
+        RecordingOperationListener listener = new RecordingOperationListener();
+        viewStack.addStackOperationListener(listener);
+
+        View pushed = viewStack.push(BOTTOM_LAYOUT_RES, ViewStack.FLAG_CLEAR_TOP);
+
+        assertSame(bottom, pushed);
+        assertNumberOfViews(1);
+        assertEquals(View.VISIBLE, bottom.getVisibility());
+        assertEquals(1, listener.count);
+        listener.assertLast(StackOperationListener.OPERATION_TRANSACTION, 3, 1,
+                THIRD_LAYOUT_RES, BOTTOM_LAYOUT_RES);
+    }
+
+    @Test
+    public void pushClearTopLoopsKeepStackFlat() {
+        ViewPool viewPool = ViewPool.create(1, 4);
+        viewStack.setViewPool(viewPool);
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        viewStack.push(THIRD_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES, ViewStack.FLAG_CLEAR_TOP);
+        View[] views = {container.getChildAt(0), container.getChildAt(1)};
+
+        for (int i = 0; i < 100; i++) {
+            viewStack.push(THIRD_LAYOUT_RES, ViewStack.FLAG_CLEAR_TOP);
+            viewStack.push(TOP_LAYOUT_RES, ViewStack.FLAG_CLEAR_TOP);
+        }
+
+        // Without flags the stack would be 202 entries deep
+        assertEquals(2, viewStack.size());
+        assertNumberOfViews(2);
+        assertSame(views[0], container.getChildAt(0));
+        assertSame(views[1], container.getChildAt(1));
+        // The third View moves between the stack and the pool instead of being inflated again
+        assertEquals(1, viewPool.size());
+    }
+
+    @Test
+    public void transactionPushWithFlags() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+
+        viewStack.beginTransaction()
+                .push(TOP_LAYOUT_RES)
+                .push(TOP_LAYOUT_RES, ViewStack.FLAG_SINGLE_TOP)
+                .push(THIRD_LAYOUT_RES)
+                .push(TOP_LAYOUT_RES, ViewStack.FLAG_CLEAR_TOP)
+                .commit();
+
+        assertArrayEquals(new int[]{BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES},
+                viewStack.getSnapshot().toArray());
+    }
+
+    @Test
+    public void snapshotFollowsStack() {
+        StackSnapshot empty = viewStack.getSnapshot();
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        StackSnapshot pushed = viewStack.getSnapshot();
+        viewStack.pop();
+        StackSnapshot popped = viewStack.getSnapshot();
+
+        assertEquals(0, empty.size());
+        assertArrayEquals(new int[]{BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES}, pushed.toArray());
+        assertEquals(TOP_LAYOUT_RES, pushed.getTopLayoutId());
+        assertArrayEquals(new int[]{BOTTOM_LAYOUT_RES}, popped.toArray());
+        assertTrue(pushed.getVersion() > empty.getVersion());
+        assertTrue(popped.getVersion() > pushed.getVersion());
+    }
+
+    @Test
+    public void snapshotIsPublishedOncePerTransaction() {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        final StackSnapshot[] seen = new StackSnapshot[1];
+        viewStack.addStackChangedListener(new StackChangedListener() {
+            @Override
+            public void onViewAdded(View view) {
+                seen[0] = viewStack.getSnapshot();
+            }
+
+            @Override
+            public void onViewRemoved() {
+            }
+        });
+
+        viewStack.replaceStack(TOP_LAYOUT_RES, BOTTOM_LAYOUT_RES);
+
+        assertArrayEquals(new int[]{TOP_LAYOUT_RES, BOTTOM_LAYOUT_RES}, seen[0].toArray());
+    }
+
+    @Test
+    public void snapshotIsReadableFromOtherThreads() throws InterruptedException {
+        viewStack.push(BOTTOM_LAYOUT_RES);
+        viewStack.push(TOP_LAYOUT_RES);
+        final int[][] read = new int[1][];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read[0] = viewStack.getSnapshot().toArray();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertArrayEquals(new int[]{BOTTOM_LAYOUT_RES, TOP_LAYOUT_RES}, read[0]);
+    }
+
+    @Test
+    public void postedOperationsRunOnMainThreadInOrder() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                viewStack.postPush(BOTTOM_LAYOUT_RES);
+                viewStack.postPush(TOP_LAYOUT_RES);
+                viewStack.postPush(BOTTOM_LAYOUT_RES);
+                viewStack.postPop();
+            }
+        });
+        thread.start();
+        thread.join();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertNumberOfViews(2);
+        assertBottomViewIsCorrectType();
+        assertTopViewIsCorrectType();
+    }
+
+    @Test
+    public void postedPopOnEmptyStackDoesNothing() {
+        viewStack.postPop();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(0, viewStack.size());
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    private static void awaitOnMainThread(CountDownLatch latch) throws InterruptedException {
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    private static AsyncPushCallback countDown(final CountDownLatch latch) {
+        return new AsyncPushCallback() {
+            @Override
+            public void onPushed(View view) {
+                latch.countDown();
+            }
+        };
+    }
+
+    static class ManualAnimator extends Animator {
+        @Override
+        public long getStartDelay() {
+            return 0;
+        }
+
+        @Override
+        public void setStartDelay(long startDelay) {
+        }
+
+        @Override
+        public Animator setDuration(long duration) {
+            return this;
+        }
+
+        @Override
+        public long getDuration() {
+            return 0;
+        }
+
+        @Override
+        public void setInterpolator(TimeInterpolator value) {
+        }
+
+        @Override
+        public boolean isRunning() {
+            return false;
+        }
+    }
+
+    static class RecordingReusableFactory implements ReusableAnimatorFactory {
+        final Animator animator = new ManualAnimator();
+        int released;
+
+        @Override
+        public Animator createAnimator(View view) {
+            return animator;
+        }
+
+        @Override
+        public void releaseAnimator(Animator animator) {
+            assertSame(this.animator, animator);
+            released++;
+        }
+    }
+
+    private void verifyOnViewAddedCalled(int times) {
+        verify(stackChangedListener1, times(times)).onViewAdded(isA(View.class));
+        verify(stackChangedListener2, times(times)).onViewAdded(isA(View.class));
+    }
+
+    static class RecordingOperationListener implements StackOperationListener {
+        int count;
+        int operation;
+        int oldSize;
+        int newSize;
+        int oldTopLayoutId;
+        int newTopLayoutId;
+
+        @Override
+        public void onStackOperation(int operation, int oldSize, int newSize,
+                                     int oldTopLayoutId, int newTopLayoutId) {
+            count++;
+            this.operation = operation;
+            this.oldSize = oldSize;
+            this.newSize = newSize;
+            this.oldTopLayoutId = oldTopLayoutId;
+            this.newTopLayoutId = newTopLayoutId;
+        }
+
+        void assertLast(int operation, int oldSize, int newSize, int oldTopLayoutId,
+                        int newTopLayoutId) {
+            assertEquals(operation, this.operation);
+            assertEquals(oldSize, this.oldSize);
+            assertEquals(newSize, this.newSize);
+            assertEquals(oldTopLayoutId, this.oldTopLayoutId);
+            assertEquals(newTopLayoutId, this.newTopLayoutId);
+        }
+    }
+
+    private void verifyOnViewRemovedCalled(int times) {
+        verify(stackChangedListener1, times(times)).onViewRemoved();
+        verify(stackChangedListener2, times(times)).onViewRemoved();
+    }
+
+    private void assertBottomLayoutIsInflatedFromXml() {
+        assertTrue(viewStack.push(BOTTOM_LAYOUT_RES) instanceof TextView);
     }
 
     private void assertBottomViewIsCorrectType() {
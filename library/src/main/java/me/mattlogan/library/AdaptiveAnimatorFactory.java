@@ -0,0 +1,240 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * An AnimatorFactory which lowers the quality of its transitions while they drop frames, and
+ * raises it again once they don't. It uses one of three levels: the full animation, a reduced
+ * one, e.g. shorter or cheaper to draw, and AnimatorFactory.NONE.
+ * <p>
+ * It learns about dropped frames as a TransitionFrameListener, so set it as the ViewStack's
+ * TransitionFrameListener too, which requires API 16; below that it keeps the full animation.
+ * It only counts the transitions it animated itself, so when a ViewStack uses more than one
+ * AdaptiveAnimatorFactory, e.g. one for pushes and one for pops, set a TransitionFrameListener
+ * which passes each report on to all of them.
+ * It remembers the frames of the last few transitions it animated. When their share of slow frames
+ * goes over the degrade threshold it steps down a level, and when it goes under the recover
+ * threshold it steps up a level. Transitions at the lowest level count as having no frames, so
+ * after as many transitions as are remembered, the next level up is tried again. Every level is
+ * kept for at least that many transitions. Must be used on the main thread.
+ */
+public final class AdaptiveAnimatorFactory implements ReusableAnimatorFactory,
+        TransitionFrameListener {
+
+    public static final int LEVEL_FULL = 0;
+    public static final int LEVEL_REDUCED = 1;
+    public static final int LEVEL_NONE = 2;
+
+    private static final float DEFAULT_DEGRADE_RATIO = 0.25f;
+    private static final float DEFAULT_RECOVER_RATIO = 0.05f;
+    private static final int DEFAULT_HISTORY_SIZE = 3;
+
+    /**
+     * Listener interface for level changes, e.g. for graphing them
+     */
+    public interface OnLevelChangedListener {
+
+        /**
+         * Called after the level changed, before the next transition is animated
+         *
+         * @param oldLevel       The previous LEVEL_ constant
+         * @param newLevel       The new LEVEL_ constant
+         * @param slowFrameRatio The share of slow frames in the remembered transitions which
+         *                       caused the change
+         */
+        void onLevelChanged(int oldLevel, int newLevel, float slowFrameRatio);
+    }
+
+    private final AnimatorFactory full;
+    private final AnimatorFactory reduced;
+
+    private float degradeRatio = DEFAULT_DEGRADE_RATIO;
+    private float recoverRatio = DEFAULT_RECOVER_RATIO;
+    @Nullable private OnLevelChangedListener levelListener;
+    private int level = LEVEL_FULL;
+
+    // The frames and slow frames of the remembered transitions, in a ring
+    private int[] frameCounts = new int[DEFAULT_HISTORY_SIZE];
+    private int[] slowFrameCounts = new int[DEFAULT_HISTORY_SIZE];
+    private int next;
+    private int remembered;
+
+    /**
+     * Creates an AdaptiveAnimatorFactory whose reduced level runs the full animation in half the
+     * time
+     *
+     * @param full Creates the full animation
+     * @return A new AdaptiveAnimatorFactory instance
+     */
+    public static AdaptiveAnimatorFactory create(AnimatorFactory full) {
+        checkNotNull(full, "full == null");
+        return new AdaptiveAnimatorFactory(full, new Shortened(full));
+    }
+
+    /**
+     * Creates an AdaptiveAnimatorFactory
+     *
+     * @param full    Creates the full animation
+     * @param reduced Creates the reduced animation, e.g. a shorter or cheaper one
+     * @return A new AdaptiveAnimatorFactory instance
+     */
+    public static AdaptiveAnimatorFactory create(AnimatorFactory full, AnimatorFactory reduced) {
+        checkNotNull(full, "full == null");
+        checkNotNull(reduced, "reduced == null");
+        return new AdaptiveAnimatorFactory(full, reduced);
+    }
+
+    private AdaptiveAnimatorFactory(AnimatorFactory full, AnimatorFactory reduced) {
+        this.full = full;
+        this.reduced = reduced;
+    }
+
+    /**
+     * Sets the shares of slow frames at which the level changes. Defaults to 0.25 and 0.05.
+     *
+     * @param degradeRatio Steps down a level when the share of slow frames is over this
+     * @param recoverRatio Steps up a level when the share of slow frames is under this; must be
+     *                     at most degradeRatio
+     */
+    public void setThresholds(float degradeRatio, float recoverRatio) {
+        if (!(recoverRatio >= 0 && recoverRatio <= degradeRatio && degradeRatio <= 1)) {
+            throw new IllegalArgumentException(
+                    "Thresholds must satisfy 0 <= recoverRatio <= degradeRatio <= 1");
+        }
+        this.degradeRatio = degradeRatio;
+        this.recoverRatio = recoverRatio;
+    }
+
+    /**
+     * Sets how many of the most recent transitions are remembered, and so how many transitions a
+     * level is kept for at least. Defaults to 3. Forgets the transitions remembered so far.
+     *
+     * @param transitions The number of transitions to remember
+     */
+    public void setHistorySize(int transitions) {
+        checkPositive(transitions, "transitions <= 0");
+        frameCounts = new int[transitions];
+        slowFrameCounts = new int[transitions];
+        forget();
+    }
+
+    /**
+     * @param listener Notified of level changes, or null
+     */
+    public void setOnLevelChangedListener(@Nullable OnLevelChangedListener listener) {
+        this.levelListener = listener;
+    }
+
+    /**
+     * @return The current LEVEL_ constant
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public Animator createAnimator(View view) {
+        switch (level) {
+            case LEVEL_FULL:
+                return full.createAnimator(view);
+            case LEVEL_REDUCED:
+                return reduced.createAnimator(view);
+            default:
+                return NONE.createAnimator(view);
+        }
+    }
+
+    @Override
+    public void releaseAnimator(Animator animator) {
+        release(full, animator);
+        release(reduced, animator);
+    }
+
+    @Override
+    public void onTransitionFrames(int operation, @LayoutRes int layoutId,
+                                   AnimatorFactory animatorFactory,
+                                   int frameCount, int slowFrameCount, long worstFrameNanos) {
+        // Other AnimatorFactories' transitions aren't affected by the level
+        if (animatorFactory != this) return;
+        // Without an animation, the frames say nothing about how the animations would do
+        boolean animated = level != LEVEL_NONE;
+        frameCounts[next] = animated ? frameCount : 0;
+        slowFrameCounts[next] = animated ? slowFrameCount : 0;
+        next = (next + 1) % frameCounts.length;
+        if (remembered < frameCounts.length) {
+            remembered++;
+        }
+        if (remembered < frameCounts.length) return;
+        float ratio = slowFrameRatio();
+        if (ratio > degradeRatio && level < LEVEL_NONE) {
+            changeLevel(level + 1, ratio);
+        } else if (ratio < recoverRatio && level > LEVEL_FULL) {
+            changeLevel(level - 1, ratio);
+        }
+    }
+
+    private float slowFrameRatio() {
+        long frames = 0;
+        long slowFrames = 0;
+        for (int i = 0; i < remembered; i++) {
+            frames += frameCounts[i];
+            slowFrames += slowFrameCounts[i];
+        }
+        return frames > 0 ? (float) slowFrames / frames : 0;
+    }
+
+    private void changeLevel(int newLevel, float ratio) {
+        int oldLevel = level;
+        level = newLevel;
+        // The new level is judged on its own transitions
+        forget();
+        if (levelListener != null) {
+            levelListener.onLevelChanged(oldLevel, newLevel, ratio);
+        }
+    }
+
+    private void forget() {
+        next = 0;
+        remembered = 0;
+    }
+
+    /**
+     * Hands the Animator back to the AnimatorFactory if it reuses its Animators. It ignores
+     * Animators which it didn't create.
+     */
+    private static void release(AnimatorFactory animatorFactory, Animator animator) {
+        if (animatorFactory instanceof ReusableAnimatorFactory) {
+            ((ReusableAnimatorFactory) animatorFactory).releaseAnimator(animator);
+        }
+    }
+
+    /**
+     * Runs another AnimatorFactory's animation in half its duration. A ReusableAnimatorFactory
+     * resets the duration of a reused Animator, so it isn't halved again.
+     */
+    private static final class Shortened implements ReusableAnimatorFactory {
+        private final AnimatorFactory animatorFactory;
+
+        Shortened(AnimatorFactory animatorFactory) {
+            this.animatorFactory = animatorFactory;
+        }
+
+        @Override
+        public Animator createAnimator(View view) {
+            Animator animator = animatorFactory.createAnimator(view);
+            animator.setDuration(animator.getDuration() / 2);
+            return animator;
+        }
+
+        @Override
+        public void releaseAnimator(Animator animator) {
+            release(animatorFactory, animator);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package me.mattlogan.library;
 
 import android.animation.Animator;
-import android.animation.TimeInterpolator;
 import android.view.View;
 
 /**
@@ -10,40 +9,15 @@ import android.view.View;
 public interface AnimatorFactory {
     Animator createAnimator(View view);
 
+    /**
+     * No animation. pushWithAnimation() and popWithAnimation() skip the animation path for it
+     * and complete the transition right away, like push() and pop(). Its Animators, e.g. for a
+     * wrapping AnimatorFactory, end as soon as they're started.
+     */
     AnimatorFactory NONE = new AnimatorFactory() {
         @Override
         public Animator createAnimator(View view) {
-            return new Animator() {
-                @Override
-                public long getStartDelay() {
-                    return 0;
-                }
-
-                @Override
-                public void setStartDelay(long startDelay) {
-
-                }
-
-                @Override
-                public Animator setDuration(long duration) {
-                    return null;
-                }
-
-                @Override
-                public long getDuration() {
-                    return 0;
-                }
-
-                @Override
-                public void setInterpolator(TimeInterpolator value) {
-
-                }
-
-                @Override
-                public boolean isRunning() {
-                    return false;
-                }
-            };
+            return new NoOpAnimator();
         }
     };
 }
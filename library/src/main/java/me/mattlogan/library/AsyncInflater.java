@@ -0,0 +1,65 @@
+package me.mattlogan.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Inflates layouts for pending pushes on a single background thread and hands the results back
+ * to the main thread. A single thread is shared by all ViewStacks, so inflations finish in the
+ * order they were requested.
+ */
+final class AsyncInflater {
+
+    interface Callback {
+        void onInflated(PendingPush pendingPush);
+    }
+
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ViewStack-inflater");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final ViewInflater inflater;
+    private final ViewGroup container;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    AsyncInflater(ViewInflater inflater, ViewGroup container) {
+        this.inflater = inflater;
+        this.container = container;
+    }
+
+    void inflate(final PendingPush pendingPush, final Callback callback) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!pendingPush.cancelled && pendingPush.view == null) {
+                    try {
+                        long start = System.nanoTime();
+                        View view = inflater.inflate(pendingPush.layoutId, container);
+                        pendingPush.inflateNanos = System.nanoTime() - start;
+                        pendingPush.view = view;
+                    } catch (RuntimeException e) {
+                        pendingPush.error = e;
+                    }
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onInflated(pendingPush);
+                    }
+                });
+            }
+        });
+    }
+}
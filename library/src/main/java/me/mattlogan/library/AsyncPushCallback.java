@@ -0,0 +1,16 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+/**
+ * Callback interface for pushAsync() and pushWithAnimationAsync()
+ */
+public interface AsyncPushCallback {
+    /**
+     * Called on the main thread after the View has been inflated, added to the container and
+     * pushed onto the navigation stack
+     *
+     * @param view The pushed View
+     */
+    void onPushed(View view);
+}
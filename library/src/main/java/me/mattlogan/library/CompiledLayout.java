@@ -0,0 +1,39 @@
+package me.mattlogan.library;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Interface for building the View hierarchy of a layout id in code instead of inflating it from
+ * XML. Register one with ViewStack.setCompiledLayout() or ViewStackGroup.setCompiledLayout().
+ * <p>
+ * CompiledLayouts may be called on the background thread used by pushAsync(), so they must be
+ * safe to call from there if the layout is pushed asynchronously.
+ */
+public interface CompiledLayout {
+
+    /**
+     * Builds a new View hierarchy without adding it to the container
+     *
+     * @param context   The container's Context
+     * @param container The container the View will be added to, for generating LayoutParams
+     * @return The new View
+     */
+    View createView(Context context, ViewGroup container);
+
+    /**
+     * Something which CompiledLayouts can be registered with, e.g. by generated code
+     */
+    interface Registry {
+        /**
+         * Sets the CompiledLayout for a layout id
+         *
+         * @param layoutId       The layout id
+         * @param compiledLayout A CompiledLayout, or null to inflate the layout from XML again
+         */
+        void setCompiledLayout(@LayoutRes int layoutId, @Nullable CompiledLayout compiledLayout);
+    }
+}
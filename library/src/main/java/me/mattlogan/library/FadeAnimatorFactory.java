@@ -0,0 +1,49 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * A ReusableAnimatorFactory which fades the View in or out. Its Animators are reused, so after the
+ * first transition animating with it doesn't allocate. Must be used on the main thread.
+ */
+public final class FadeAnimatorFactory extends PooledAnimatorFactory {
+
+    /**
+     * Fades the View in, e.g. for pushWithAnimation()
+     */
+    public static final int IN = 0;
+
+    /**
+     * Fades the View out, e.g. for popWithAnimation()
+     */
+    public static final int OUT = 1;
+
+    private final int direction;
+
+    /**
+     * Creates a new FadeAnimatorFactory
+     *
+     * @param direction      IN or OUT
+     * @param durationMillis The duration of the animation
+     * @return A new FadeAnimatorFactory instance
+     */
+    public static FadeAnimatorFactory create(int direction, long durationMillis) {
+        if (direction != IN && direction != OUT) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        checkPositive(durationMillis, "durationMillis <= 0");
+        return new FadeAnimatorFactory(direction, durationMillis);
+    }
+
+    private FadeAnimatorFactory(int direction, long durationMillis) {
+        super(durationMillis);
+        this.direction = direction;
+    }
+
+    @Override
+    void apply(View view, float fraction) {
+        view.setAlpha(direction == IN ? fraction : 1 - fraction);
+    }
+}
@@ -0,0 +1,72 @@
+package me.mattlogan.library;
+
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Calls onFirstFrame() from the pre-draw pass of the first frame in which the View has a size,
+ * i.e. right after its first layout and before it's drawn, then unregisters itself. If the View
+ * is detached before that, onDetachedBeforeFirstFrame() is called instead. Either way nothing
+ * stays registered on the View or its ViewTreeObserver.
+ */
+abstract class FirstFrameListener implements ViewTreeObserver.OnPreDrawListener,
+        View.OnAttachStateChangeListener {
+
+    private final View view;
+    private ViewTreeObserver observer;
+    private boolean registered;
+
+    FirstFrameListener(View view) {
+        this.view = view;
+    }
+
+    void register() {
+        observer = view.getViewTreeObserver();
+        observer.addOnPreDrawListener(this);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            view.addOnAttachStateChangeListener(this);
+        }
+        registered = true;
+    }
+
+    void unregister() {
+        if (!registered) return;
+        registered = false;
+        // The observer of a View without a window is merged into the window's observer once the
+        // View is attached, and can't be used after that
+        if (observer.isAlive()) {
+            observer.removeOnPreDrawListener(this);
+        } else {
+            view.getViewTreeObserver().removeOnPreDrawListener(this);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            view.removeOnAttachStateChangeListener(this);
+        }
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        // Until its first layout the View's width and height are zero
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            unregister();
+            onFirstFrame(view);
+        }
+        return true;
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        observer = v.getViewTreeObserver();
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        unregister();
+        onDetachedBeforeFirstFrame(view);
+    }
+
+    abstract void onFirstFrame(View view);
+
+    abstract void onDetachedBeforeFirstFrame(View view);
+}
@@ -0,0 +1,107 @@
+package me.mattlogan.library;
+
+import android.os.Build;
+import android.support.annotation.LayoutRes;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+
+/**
+ * Counts the frames of a running transition animation with a Choreographer frame callback, which
+ * is only posted between start() and stop(), so nothing runs while no animation does. Requires
+ * API 16, and must be used on the main thread.
+ */
+final class FrameMonitor implements Choreographer.FrameCallback {
+
+    private static final float DEFAULT_REFRESH_RATE = 60;
+
+    private final Choreographer choreographer;
+    private final TransitionFrameListener listener;
+
+    private boolean running;
+    private int operation;
+    @LayoutRes private int layoutId;
+    private AnimatorFactory animatorFactory;
+    private long slowFrameNanos;
+
+    // The time of the previous frame, or 0 before the first one
+    private long lastFrameNanos;
+    private int frameCount;
+    private int slowFrameCount;
+    private long worstFrameNanos;
+
+    FrameMonitor(TransitionFrameListener listener) {
+        this.choreographer = Choreographer.getInstance();
+        this.listener = listener;
+    }
+
+    TransitionFrameListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Starts counting frames for an animation of the provided View, ending a previous count
+     * without reporting it
+     */
+    void start(int operation, @LayoutRes int layoutId, AnimatorFactory animatorFactory,
+               View view) {
+        cancel();
+        this.operation = operation;
+        this.layoutId = layoutId;
+        this.animatorFactory = animatorFactory;
+        this.slowFrameNanos = (long) (1.5 * 1000000000L / refreshRate(view));
+        lastFrameNanos = 0;
+        frameCount = 0;
+        slowFrameCount = 0;
+        worstFrameNanos = 0;
+        running = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Stops counting frames and reports them to the listener, if a count was running
+     */
+    void stop() {
+        if (!running) return;
+        cancel();
+        AnimatorFactory animatorFactory = this.animatorFactory;
+        // Not kept past the transition
+        this.animatorFactory = null;
+        listener.onTransitionFrames(operation, layoutId, animatorFactory, frameCount,
+                slowFrameCount, worstFrameNanos);
+    }
+
+    /**
+     * Stops counting frames without reporting them
+     */
+    void cancel() {
+        if (!running) return;
+        running = false;
+        choreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        frameCount++;
+        if (lastFrameNanos != 0) {
+            long frameNanos = frameTimeNanos - lastFrameNanos;
+            if (frameNanos > slowFrameNanos) {
+                slowFrameCount++;
+            }
+            worstFrameNanos = Math.max(worstFrameNanos, frameNanos);
+        }
+        lastFrameNanos = frameTimeNanos;
+        choreographer.postFrameCallback(this);
+    }
+
+    private static float refreshRate(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = view.getDisplay();
+            if (display != null && display.getRefreshRate() > 0) {
+                return display.getRefreshRate();
+            }
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+}
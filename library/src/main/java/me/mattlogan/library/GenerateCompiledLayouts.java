@@ -0,0 +1,24 @@
+package me.mattlogan.library;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks the optional layout-compiler annotation processor to generate CompiledLayouts for the
+ * named layouts. The annotated class must be in the package of the app's R class. For a class Foo
+ * the processor generates Foo_CompiledLayouts, whose register(CompiledLayout.Registry) method
+ * registers them with a ViewStack or ViewStackGroup.
+ * <p>
+ * Layouts which use XML features the processor doesn't support are skipped with a warning, and
+ * keep being inflated from XML.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateCompiledLayouts {
+    /**
+     * @return The names of the layouts, e.g. "view_red" for R.layout.view_red
+     */
+    String[] value();
+}
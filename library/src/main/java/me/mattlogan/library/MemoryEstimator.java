@@ -0,0 +1,38 @@
+package me.mattlogan.library;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Interface for estimating how many bytes a View in the navigation stack keeps alive. Used with
+ * ViewStack.setLiveViewByteBudget() and ViewStackGroup.setInactiveViewByteBudget().
+ */
+public interface MemoryEstimator {
+    long estimateBytes(View view);
+
+    /**
+     * Estimates one ARGB_8888 frame the size of the View, plus a fixed cost for each View in its
+     * hierarchy
+     */
+    MemoryEstimator DEFAULT = new MemoryEstimator() {
+        private static final long BYTES_PER_PIXEL = 4;
+        private static final long BYTES_PER_VIEW = 1024;
+
+        @Override
+        public long estimateBytes(View view) {
+            return BYTES_PER_PIXEL * view.getWidth() * view.getHeight()
+                    + BYTES_PER_VIEW * countViews(view);
+        }
+
+        private int countViews(View view) {
+            int count = 1;
+            if (view instanceof ViewGroup) {
+                ViewGroup group = (ViewGroup) view;
+                for (int i = 0; i < group.getChildCount(); i++) {
+                    count += countViews(group.getChildAt(i));
+                }
+            }
+            return count;
+        }
+    };
+}
@@ -0,0 +1,58 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+
+import java.util.ArrayList;
+
+/**
+ * The Animator of AnimatorFactory.NONE. It ends as soon as it's started. Every transition gets
+ * its own instance, so listeners which callers add and don't remove never hear of other
+ * transitions. Must be used on the main thread.
+ */
+final class NoOpAnimator extends Animator {
+
+    @Override
+    public void start() {
+        ArrayList<AnimatorListener> listeners = getListeners();
+        if (listeners == null) return;
+        // Listeners may remove themselves when the animation ends, so they're called from the
+        // last one down
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).onAnimationStart(this);
+        }
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            if (i < listeners.size()) {
+                listeners.get(i).onAnimationEnd(this);
+            }
+        }
+    }
+
+    @Override
+    public long getStartDelay() {
+        return 0;
+    }
+
+    @Override
+    public void setStartDelay(long startDelay) {
+    }
+
+    @Override
+    public Animator setDuration(long duration) {
+        return this;
+    }
+
+    @Override
+    public long getDuration() {
+        return 0;
+    }
+
+    @Override
+    public void setInterpolator(TimeInterpolator value) {
+    }
+
+    @Override
+    public boolean isRunning() {
+        return false;
+    }
+}
@@ -3,17 +3,35 @@ package me.mattlogan.library;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 
-class ParcelableIntStack extends Stack<Integer> implements Parcelable {
+/**
+ * A growable stack of primitive ints backed by an int array. Unlike java.util.Stack, this doesn't
+ * box its elements or synchronize on every operation, so push(), pop() and peek() don't allocate
+ * once the backing array has grown to fit the stack.
+ */
+final class ParcelableIntStack implements Parcelable {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] elements;
+    private int size;
 
     ParcelableIntStack() {
+        elements = new int[DEFAULT_CAPACITY];
+    }
+
+    private ParcelableIntStack(ParcelableIntStack other) {
+        elements = Arrays.copyOf(other.elements, other.elements.length);
+        size = other.size;
     }
 
     private ParcelableIntStack(Parcel in) {
-        int[] elements = in.createIntArray();
-        for (int element : elements) {
-            add(element);
+        size = in.readInt();
+        elements = new int[Math.max(size, DEFAULT_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            elements[i] = in.readInt();
         }
     }
 
@@ -29,6 +47,54 @@ class ParcelableIntStack extends Stack<Integer> implements Parcelable {
         }
     };
 
+    ParcelableIntStack copy() {
+        return new ParcelableIntStack(this);
+    }
+
+    void push(int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = element;
+    }
+
+    int pop() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[--size];
+    }
+
+    int peek() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        return elements[size - 1];
+    }
+
+    /**
+     * @param index The position in the stack, where 0 is the bottom
+     * @return The element at the provided position
+     */
+    int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return elements[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -36,10 +102,9 @@ class ParcelableIntStack extends Stack<Integer> implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        int[] elements = new int[size()];
-        for (int i = 0; i < size(); i++) {
-            elements[i] = get(i);
+        dest.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            dest.writeInt(elements[i]);
         }
-        dest.writeIntArray(elements);
     }
 }
@@ -0,0 +1,56 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+/**
+ * A handle for a push whose View is still being inflated in the background. See
+ * ViewStack.pushAsync() for the ordering rules.
+ */
+public final class PendingPush {
+
+    final ViewStack viewStack;
+    final int layoutId;
+    final AnimatorFactory animatorFactory;
+    final AsyncPushCallback callback;
+
+    // Read on the inflation thread so that cancelled pushes which haven't started inflating yet
+    // can be skipped
+    volatile boolean cancelled;
+
+    boolean inflated;
+    boolean attached;
+    View view;
+    RuntimeException error;
+    long inflateNanos;
+
+    PendingPush(ViewStack viewStack, int layoutId, AnimatorFactory animatorFactory,
+                AsyncPushCallback callback) {
+        this.viewStack = viewStack;
+        this.layoutId = layoutId;
+        this.animatorFactory = animatorFactory;
+        this.callback = callback;
+    }
+
+    /**
+     * Cancels this push if it hasn't been attached yet. Must be called on the main thread.
+     *
+     * @return true if the push was cancelled, false if it was already attached or cancelled
+     */
+    public boolean cancel() {
+        return viewStack.cancelPendingPush(this);
+    }
+
+    /**
+     * @return true if this push was cancelled before it was attached
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the View has been attached and pushed onto the navigation stack
+     */
+    public boolean isAttached() {
+        return attached;
+    }
+}
@@ -0,0 +1,103 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.view.View;
+import android.view.animation.AccelerateDecelerateInterpolator;
+
+import java.util.Arrays;
+
+/**
+ * Base class of the built-in ReusableAnimatorFactories. Each of their Animators is a ValueAnimator
+ * whose update listener applies the animated fraction to the View it was created for, so
+ * retargeting one only means replacing that View. Released Animators are kept, so once there's
+ * one for each transition which runs at the same time, nothing is allocated. Must be used on the
+ * main thread.
+ */
+abstract class PooledAnimatorFactory implements ReusableAnimatorFactory {
+
+    private static final TimeInterpolator INTERPOLATOR = new AccelerateDecelerateInterpolator();
+
+    private final long durationMillis;
+    private TransitionAnimator[] animators = new TransitionAnimator[1];
+    private int animatorCount;
+
+    PooledAnimatorFactory(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    @Override
+    public final Animator createAnimator(View view) {
+        for (int i = 0; i < animatorCount; i++) {
+            if (animators[i].view == null) {
+                return animators[i].retarget(view);
+            }
+        }
+        if (animatorCount == animators.length) {
+            animators = Arrays.copyOf(animators, animatorCount * 2);
+        }
+        TransitionAnimator transitionAnimator = new TransitionAnimator();
+        animators[animatorCount++] = transitionAnimator;
+        return transitionAnimator.retarget(view);
+    }
+
+    @Override
+    public final void releaseAnimator(Animator animator) {
+        for (int i = 0; i < animatorCount; i++) {
+            if (animators[i].animator == animator) {
+                animators[i].view = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the animated properties of the View
+     *
+     * @param view     The animated View
+     * @param fraction The interpolated fraction of the animation, from 0 to 1
+     */
+    abstract void apply(View view, float fraction);
+
+    /**
+     * A ValueAnimator and the View it animates, or null while it's released. The interpolated
+     * fraction is taken from the interpolator, since ValueAnimator.getAnimatedFraction() requires
+     * API 12 and getAnimatedValue() boxes.
+     */
+    private final class TransitionAnimator implements TimeInterpolator,
+            ValueAnimator.AnimatorUpdateListener {
+
+        final ValueAnimator animator = ValueAnimator.ofFloat(0, 1);
+        View view;
+        private float fraction;
+
+        TransitionAnimator() {
+            animator.addUpdateListener(this);
+        }
+
+        Animator retarget(View view) {
+            this.view = view;
+            animator.setDuration(durationMillis);
+            animator.setStartDelay(0);
+            animator.setInterpolator(this);
+            // The View is drawn at its start values even if the Animator isn't started right away
+            fraction = 0;
+            apply(view, 0);
+            return animator;
+        }
+
+        @Override
+        public float getInterpolation(float input) {
+            fraction = INTERPOLATOR.getInterpolation(input);
+            return fraction;
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            if (view != null) {
+                apply(view, fraction);
+            }
+        }
+    }
+}
@@ -14,6 +14,12 @@ final class Preconditions {
         }
     }
 
+    static void checkPositive(long value, String message) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
     private Preconditions() {
         throw new AssertionError("No instances");
     }
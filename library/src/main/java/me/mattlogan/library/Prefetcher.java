@@ -0,0 +1,174 @@
+package me.mattlogan.library;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Inflates requested layouts while the main thread is idle and keeps the detached Views until a
+ * push takes them. At most maxViews Views are kept, and each one is dropped after expiryMillis,
+ * or when the container is detached from its window.
+ */
+final class Prefetcher {
+
+    private final ViewInflater inflater;
+    private final ViewGroup container;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private int maxViews;
+    private long expiryMillis;
+
+    // Requested layout ids, oldest first
+    private int[] requested;
+    private int requestedCount;
+
+    // Prefetched Views, oldest first
+    private int[] readyLayoutIds;
+    private View[] readyViews;
+    private long[] readyTimes;
+    private int readyCount;
+
+    private boolean idleHandlerAdded;
+
+    Prefetcher(ViewInflater inflater, ViewGroup container, int maxViews, long expiryMillis) {
+        this.inflater = inflater;
+        this.container = container;
+        setLimits(maxViews, expiryMillis);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            container.addOnAttachStateChangeListener(clearWhenDetached);
+        }
+    }
+
+    void setLimits(int maxViews, long expiryMillis) {
+        clear();
+        this.maxViews = maxViews;
+        this.expiryMillis = expiryMillis;
+        requested = new int[maxViews];
+        requestedCount = 0;
+        readyLayoutIds = new int[maxViews];
+        readyViews = new View[maxViews];
+        readyTimes = new long[maxViews];
+    }
+
+    void request(@LayoutRes int layoutId) {
+        if (indexOf(readyLayoutIds, readyCount, layoutId) >= 0
+                || indexOf(requested, requestedCount, layoutId) >= 0) {
+            return;
+        }
+        if (requestedCount == requested.length) {
+            // The oldest request is the least likely to still be relevant
+            removeAt(requested, requestedCount, 0);
+            requestedCount--;
+        }
+        requested[requestedCount++] = layoutId;
+        if (!idleHandlerAdded) {
+            idleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(inflateWhenIdle);
+        }
+    }
+
+    /**
+     * @return A prefetched View for the layout id, or null if there isn't one
+     */
+    @Nullable
+    View take(@LayoutRes int layoutId) {
+        int index = indexOf(readyLayoutIds, readyCount, layoutId);
+        if (index < 0) return null;
+        View view = readyViews[index];
+        removeReadyAt(index);
+        return view;
+    }
+
+    /**
+     * Drops all prefetched Views and pending requests
+     */
+    void clear() {
+        requestedCount = 0;
+        handler.removeCallbacks(expire);
+        for (int i = 0; i < readyCount; i++) {
+            readyViews[i] = null;
+        }
+        readyCount = 0;
+    }
+
+    int size() {
+        return readyCount;
+    }
+
+    private final MessageQueue.IdleHandler inflateWhenIdle = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (requestedCount > 0) {
+                int layoutId = requested[0];
+                removeAt(requested, requestedCount, 0);
+                requestedCount--;
+                if (readyCount == maxViews) {
+                    removeReadyAt(0);
+                }
+                readyLayoutIds[readyCount] = layoutId;
+                readyViews[readyCount] = inflater.inflate(layoutId, container);
+                readyTimes[readyCount] = SystemClock.uptimeMillis();
+                readyCount++;
+                if (readyCount == 1) {
+                    handler.postDelayed(expire, expiryMillis);
+                }
+            }
+            idleHandlerAdded = requestedCount > 0;
+            return idleHandlerAdded;
+        }
+    };
+
+    // Prefetched Views and the pending expiry would otherwise keep the container's Context, e.g.
+    // an Activity which is being destroyed, until they expire
+    private final View.OnAttachStateChangeListener clearWhenDetached =
+            new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    clear();
+                }
+            };
+
+    private final Runnable expire = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.uptimeMillis();
+            while (readyCount > 0 && now - readyTimes[0] >= expiryMillis) {
+                removeReadyAt(0);
+            }
+            if (readyCount > 0) {
+                handler.postAtTime(expire, readyTimes[0] + expiryMillis);
+            }
+        }
+    };
+
+    private void removeReadyAt(int index) {
+        removeAt(readyLayoutIds, readyCount, index);
+        System.arraycopy(readyTimes, index + 1, readyTimes, index, readyCount - index - 1);
+        System.arraycopy(readyViews, index + 1, readyViews, index, readyCount - index - 1);
+        readyViews[--readyCount] = null;
+        if (readyCount == 0) {
+            handler.removeCallbacks(expire);
+        }
+    }
+
+    private static int indexOf(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static void removeAt(int[] array, int count, int index) {
+        System.arraycopy(array, index + 1, array, index, count - index - 1);
+    }
+}
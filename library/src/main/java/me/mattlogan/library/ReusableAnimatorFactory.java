@@ -0,0 +1,32 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.view.View;
+
+/**
+ * An AnimatorFactory which reuses its Animators, so that transitions don't allocate a new one
+ * each time. ViewStack hands every Animator it got from createAnimator() back through
+ * releaseAnimator() once the transition is over, i.e. after the Animator ended or was cancelled
+ * and ViewStack stopped listening to it.
+ * <p>
+ * createAnimator() may return a released Animator again, retargeted to the new View. It has to
+ * reset anything which callers may have changed, e.g. the duration, since a wrapping
+ * AnimatorFactory may adjust the Animator it returns.
+ */
+public interface ReusableAnimatorFactory extends AnimatorFactory {
+
+    /**
+     * @param view The View to animate
+     * @return An Animator for the View, which may be one that was released before
+     */
+    @Override
+    Animator createAnimator(View view);
+
+    /**
+     * Called once an Animator returned by createAnimator() isn't used anymore. It should let go
+     * of the View it animated. Animators which this factory didn't create are ignored.
+     *
+     * @param animator The Animator, which isn't running
+     */
+    void releaseAnimator(Animator animator);
+}
@@ -0,0 +1,84 @@
+package me.mattlogan.library;
+
+import android.animation.Animator;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * The animated push or pop of a ViewStack which hasn't finished yet. A ViewStack runs at most one
+ * at a time and reuses a single instance for all of them.
+ */
+final class RunningTransition {
+
+    static final int NONE = -1;
+
+    // NONE, or TransitionMetrics.OPERATION_PUSH or OPERATION_POP
+    int operation = NONE;
+    int layoutId;
+    @Nullable View view;
+
+    // Set while a push waits for its first frame, and then replaced by the started Animator and
+    // the AnimatorFactory which created it
+    @Nullable FirstFrameListener firstFrameListener;
+    @Nullable Animator animator;
+    @Nullable AnimatorFactory animatorFactory;
+
+    // 0 unless the animation is being timed
+    long startNanos;
+
+    // Views promoted to hardware layers for the animation, and their original layer types
+    private final View[] layerViews = new View[2];
+    private final int[] layerTypes = new int[2];
+    private int layerCount;
+
+    void begin(int operation, int layoutId, View view) {
+        this.operation = operation;
+        this.layoutId = layoutId;
+        this.view = view;
+    }
+
+    /**
+     * Draws the View from a hardware layer until the transition is cleared, so that its children
+     * aren't redrawn on every frame of the animation
+     */
+    void promoteToHardwareLayer(View view) {
+        int layerType = view.getLayerType();
+        if (layerType == View.LAYER_TYPE_HARDWARE) return;
+        layerViews[layerCount] = view;
+        layerTypes[layerCount] = layerType;
+        layerCount++;
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+    }
+
+    boolean isRunning() {
+        return operation != NONE;
+    }
+
+    boolean isPush() {
+        return operation == TransitionMetrics.OPERATION_PUSH;
+    }
+
+    /**
+     * Stops listening for the animation's first frame or end, restores the original layer types
+     * and forgets the transition
+     */
+    void clear(Animator.AnimatorListener animatorListener) {
+        for (int i = 0; i < layerCount; i++) {
+            layerViews[i].setLayerType(layerTypes[i], null);
+            layerViews[i] = null;
+        }
+        layerCount = 0;
+        if (firstFrameListener != null) {
+            firstFrameListener.unregister();
+        }
+        if (animator != null) {
+            animator.removeListener(animatorListener);
+        }
+        operation = NONE;
+        view = null;
+        firstFrameListener = null;
+        animator = null;
+        animatorFactory = null;
+        startNanos = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package me.mattlogan.library;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes saved state which is kept in a file instead of a Bundle. Files are written
+ * to a temporary file first and then renamed, and are checked against a CRC-32 when they're
+ * read back.
+ */
+final class SavedStateFile {
+
+    /**
+     * @return The CRC-32 of the written bytes
+     */
+    static long write(File file, byte[] bytes) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Couldn't rename " + temp + " to " + file);
+        }
+        return crc(bytes);
+    }
+
+    /**
+     * @throws IOException if the file can't be read or doesn't match the CRC-32
+     */
+    static byte[] read(File file, long crc) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException(file + " was truncated");
+                }
+            }
+            byte[] bytes = buffer.array();
+            if (crc(bytes) != crc) {
+                throw new IOException(file + " doesn't match its checksum");
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Deletes the least recently modified files in the directory whose names are the prefix
+     * followed by a hexadecimal number, so that the newest file and keep - 1 others are left
+     */
+    static void deleteOldest(File directory, final String prefix, final File newest, int keep) {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return name.startsWith(prefix) && isHex(name, prefix.length())
+                        && !file.equals(newest);
+            }
+        });
+        if (files == null || files.length < keep) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long aModified = a.lastModified();
+                long bModified = b.lastModified();
+                return aModified > bModified ? -1 : aModified < bModified ? 1 : 0;
+            }
+        });
+        for (int i = keep - 1; i < files.length; i++) {
+            // If it can't be deleted, it's tried again by the next sweep
+            files[i].delete();
+        }
+    }
+
+    private static boolean isHex(String name, int start) {
+        if (start >= name.length()) return false;
+        for (int i = start; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private SavedStateFile() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,51 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * A ReusableAnimatorFactory which slides the View horizontally, in from the right edge of the
+ * container or out to it. Its Animators are reused, so after the first transition animating with
+ * it doesn't allocate. Must be used on the main thread.
+ */
+public final class SlideAnimatorFactory extends PooledAnimatorFactory {
+
+    /**
+     * Slides the View in from the right edge, e.g. for pushWithAnimation()
+     */
+    public static final int IN = 0;
+
+    /**
+     * Slides the View out to the right edge, e.g. for popWithAnimation()
+     */
+    public static final int OUT = 1;
+
+    private final int direction;
+
+    /**
+     * Creates a new SlideAnimatorFactory
+     *
+     * @param direction      IN or OUT
+     * @param durationMillis The duration of the animation
+     * @return A new SlideAnimatorFactory instance
+     */
+    public static SlideAnimatorFactory create(int direction, long durationMillis) {
+        if (direction != IN && direction != OUT) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        checkPositive(durationMillis, "durationMillis <= 0");
+        return new SlideAnimatorFactory(direction, durationMillis);
+    }
+
+    private SlideAnimatorFactory(int direction, long durationMillis) {
+        super(durationMillis);
+        this.direction = direction;
+    }
+
+    @Override
+    void apply(View view, float fraction) {
+        float offset = direction == IN ? 1 - fraction : fraction;
+        view.setTranslationX(offset * view.getWidth());
+    }
+}
@@ -0,0 +1,126 @@
+package me.mattlogan.library;
+
+/**
+ * Encodes a stack of layout ids into a compact byte array for saved state. The format is a
+ * sequence of unsigned varints:
+ * <pre>
+ * version, size, then runs of (zigzag(layoutId - previousLayoutId), runLength)
+ * </pre>
+ * Layout ids of one app share their high bits, so the difference from the previous run's id
+ * usually takes one or two bytes instead of four, and repeated entries take one run.
+ */
+final class StackCodec {
+
+    static final int VERSION = 1;
+
+    static byte[] encode(ParcelableIntStack stack) {
+        // Sized in a first pass, so only the result is allocated
+        int length = varintLength(VERSION) + varintLength(stack.size());
+        int previous = 0;
+        for (int i = 0; i < stack.size(); ) {
+            int runLength = runLength(stack, i);
+            length += varintLength(zigzag(stack.get(i) - previous)) + varintLength(runLength);
+            previous = stack.get(i);
+            i += runLength;
+        }
+        byte[] bytes = new byte[length];
+        int position = writeVarint(bytes, 0, VERSION);
+        position = writeVarint(bytes, position, stack.size());
+        previous = 0;
+        for (int i = 0; i < stack.size(); ) {
+            int runLength = runLength(stack, i);
+            position = writeVarint(bytes, position, zigzag(stack.get(i) - previous));
+            position = writeVarint(bytes, position, runLength);
+            previous = stack.get(i);
+            i += runLength;
+        }
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes weren't written by encode() or use an
+     *                                  unsupported version
+     */
+    static ParcelableIntStack decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        int version = reader.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported saved state version: " + version);
+        }
+        int size = reader.readVarint();
+        ParcelableIntStack stack = new ParcelableIntStack();
+        int previous = 0;
+        while (stack.size() < size) {
+            int layoutId = previous + unzigzag(reader.readVarint());
+            int runLength = reader.readVarint();
+            if (runLength <= 0 || runLength > size - stack.size()) {
+                throw new IllegalArgumentException("Malformed saved state");
+            }
+            for (int i = 0; i < runLength; i++) {
+                stack.push(layoutId);
+            }
+            previous = layoutId;
+        }
+        return stack;
+    }
+
+    private static int runLength(ParcelableIntStack stack, int start) {
+        int end = start + 1;
+        while (end < stack.size() && stack.get(end) == stack.get(start)) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int writeVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position == bytes.length) {
+                    throw new IllegalArgumentException("Malformed saved state");
+                }
+                byte b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed saved state");
+        }
+    }
+
+    private StackCodec() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,155 @@
+package me.mattlogan.library;
+
+import android.os.SystemClock;
+import android.support.annotation.LayoutRes;
+
+import java.io.PrintWriter;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * A fixed-size ring buffer of the most recent events of one or more ViewStacks, for dumping into
+ * crash reports. Set one with ViewStack.setStackEventLog(). Events are kept in primitive arrays
+ * allocated up front, so recording one doesn't allocate; once the buffer is full, each event
+ * overwrites the oldest one.
+ * <p>
+ * ViewStacks record events on the main thread. Reading and dumping are safe from any thread, e.g.
+ * from an uncaught exception handler.
+ */
+public final class StackEventLog {
+
+    public static final int EVENT_PUSH = StackOperationListener.OPERATION_PUSH;
+    public static final int EVENT_POP = StackOperationListener.OPERATION_POP;
+    public static final int EVENT_TRANSACTION = StackOperationListener.OPERATION_TRANSACTION;
+    public static final int EVENT_CLEAR = StackOperationListener.OPERATION_CLEAR;
+    public static final int EVENT_REBUILD = StackOperationListener.OPERATION_REBUILD;
+    public static final int EVENT_ANIMATION_START = 5;
+    public static final int EVENT_ANIMATION_END = 6;
+    public static final int EVENT_ANIMATION_CANCEL = 7;
+
+    private static final String[] EVENT_NAMES = {"push", "pop", "transaction", "clear",
+            "rebuild", "animation start", "animation end", "animation cancel"};
+
+    private final long[] uptimeMillis;
+    private final int[] events;
+    private final int[] layoutIds;
+    private final int[] stackSizes;
+
+    // The index which the next event is written to
+    private int next;
+    private int size;
+
+    /**
+     * Creates a new, empty StackEventLog
+     *
+     * @param capacity The number of most recent events to keep
+     * @return A new StackEventLog instance
+     */
+    public static StackEventLog create(int capacity) {
+        checkPositive(capacity, "capacity <= 0");
+        return new StackEventLog(capacity);
+    }
+
+    private StackEventLog(int capacity) {
+        uptimeMillis = new long[capacity];
+        events = new int[capacity];
+        layoutIds = new int[capacity];
+        stackSizes = new int[capacity];
+    }
+
+    /**
+     * Records an event, overwriting the oldest one if the log is full
+     *
+     * @param event     One of the EVENT_ constants
+     * @param layoutId  The layout id at the top of the stack after a stack operation, or of the
+     *                  animated View for animation events
+     * @param stackSize The size of the stack after the event
+     */
+    synchronized void record(int event, @LayoutRes int layoutId, int stackSize) {
+        uptimeMillis[next] = SystemClock.uptimeMillis();
+        events[next] = event;
+        layoutIds[next] = layoutId;
+        stackSizes[next] = stackSize;
+        next = (next + 1) % events.length;
+        if (size < events.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return The number of events in the log, at most its capacity
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the event, 0 being the oldest one in the log
+     * @return One of the EVENT_ constants
+     */
+    public synchronized int getEvent(int index) {
+        return events[position(index)];
+    }
+
+    /**
+     * @param index The index of the event, 0 being the oldest one in the log
+     * @return The layout id at the top of the stack after a stack operation, or of the animated
+     * View for animation events
+     */
+    @LayoutRes
+    public synchronized int getLayoutId(int index) {
+        return layoutIds[position(index)];
+    }
+
+    /**
+     * @param index The index of the event, 0 being the oldest one in the log
+     * @return The size of the stack after the event
+     */
+    public synchronized int getStackSize(int index) {
+        return stackSizes[position(index)];
+    }
+
+    /**
+     * @param index The index of the event, 0 being the oldest one in the log
+     * @return When the event happened, in SystemClock.uptimeMillis()
+     */
+    public synchronized long getUptimeMillis(int index) {
+        return uptimeMillis[position(index)];
+    }
+
+    /**
+     * Writes the events in the log, oldest first, with how long ago each one happened, e.g. into
+     * a crash report
+     *
+     * @param writer The PrintWriter to write to
+     */
+    public synchronized void dump(PrintWriter writer) {
+        checkNotNull(writer, "writer == null");
+        long now = SystemClock.uptimeMillis();
+        for (int i = 0; i < size; i++) {
+            int position = position(i);
+            writer.println("-" + (now - uptimeMillis[position]) + "ms "
+                    + EVENT_NAMES[events[position]] + " layout 0x"
+                    + Integer.toHexString(layoutIds[position]) + " size "
+                    + stackSizes[position]);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Discards all recorded events
+     */
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+    }
+
+    private int position(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        // The oldest event is at next once the log has wrapped around, and at 0 before
+        return (next - size + index + events.length) % events.length;
+    }
+}
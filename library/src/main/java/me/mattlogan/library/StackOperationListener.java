@@ -0,0 +1,33 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+
+/**
+ * Listener interface for stack changes, with the kind of operation and the stack's size and top
+ * layout id before and after it. All arguments are primitives, so dispatching doesn't allocate.
+ */
+public interface StackOperationListener {
+
+    int OPERATION_PUSH = 0;
+    int OPERATION_POP = 1;
+    int OPERATION_TRANSACTION = 2;
+    int OPERATION_CLEAR = 3;
+    int OPERATION_REBUILD = 4;
+
+    /**
+     * Called after the navigation stack changed, right after the StackChangedListeners. A push
+     * with ViewStack.FLAG_SINGLE_TOP or FLAG_CLEAR_TOP which reuses an entry already in the stack
+     * is reported as OPERATION_TRANSACTION, even when the reused entry is the top and the stack
+     * is unchanged.
+     *
+     * @param operation      One of the OPERATION_ constants
+     * @param oldSize        The size of the stack before the operation
+     * @param newSize        The size of the stack after the operation
+     * @param oldTopLayoutId The layout id at the top of the stack before the operation, or 0 if
+     *                       the stack was empty
+     * @param newTopLayoutId The layout id at the top of the stack after the operation, or 0 if
+     *                       the stack is empty
+     */
+    void onStackOperation(int operation, int oldSize, int newSize,
+                          @LayoutRes int oldTopLayoutId, @LayoutRes int newTopLayoutId);
+}
@@ -0,0 +1,102 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a ViewStack's layout ids at one point in time, which may be read from any
+ * thread. ViewStack.getSnapshot() returns the latest one without locking.
+ * <p>
+ * Snapshots share the entries they have in common: each one only holds its top layout id and the
+ * snapshot below it, so publishing one after a push or pop doesn't copy the stack. The layout ids
+ * are only copied into an array when toArray() is called, on the reading thread.
+ */
+public final class StackSnapshot {
+
+    static final StackSnapshot EMPTY = new StackSnapshot(null, 0, 0, 0);
+
+    @Nullable private final StackSnapshot below;
+    private final int topLayoutId;
+    private final int size;
+    private final long version;
+
+    private StackSnapshot(@Nullable StackSnapshot below, @LayoutRes int topLayoutId, int size,
+                          long version) {
+        this.below = below;
+        this.topLayoutId = topLayoutId;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * @return A snapshot with the provided layout id pushed on top of this one
+     */
+    StackSnapshot push(@LayoutRes int layoutId, long version) {
+        return new StackSnapshot(this, layoutId, size + 1, version);
+    }
+
+    /**
+     * @return A snapshot with the top layout id of this one popped off
+     */
+    StackSnapshot pop(long version) {
+        if (below == null || below.size == 0) {
+            return new StackSnapshot(null, 0, 0, version);
+        }
+        return new StackSnapshot(below.below, below.topLayoutId, below.size, version);
+    }
+
+    /**
+     * @return The number of layout ids in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The layout id at the top of the snapshot, or 0 if it's empty
+     */
+    @LayoutRes
+    public int getTopLayoutId() {
+        return topLayoutId;
+    }
+
+    /**
+     * @return A number which is larger for every later snapshot of the same ViewStack, for
+     * telling whether the stack changed since an earlier snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A new array with the layout ids of the snapshot, bottom first
+     */
+    public int[] toArray() {
+        int[] layoutIds = new int[size];
+        StackSnapshot snapshot = this;
+        for (int i = size - 1; i >= 0; i--) {
+            layoutIds[i] = snapshot.topLayoutId;
+            snapshot = snapshot.below;
+        }
+        return layoutIds;
+    }
+
+    /**
+     * @return true if the snapshot contains the provided layout id
+     */
+    public boolean contains(@LayoutRes int layoutId) {
+        for (StackSnapshot snapshot = this; snapshot != null && snapshot.size > 0;
+             snapshot = snapshot.below) {
+            if (snapshot.topLayoutId == layoutId) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "StackSnapshot{version=" + version + ", layoutIds=" + Arrays.toString(toArray())
+                + "}";
+    }
+}
@@ -0,0 +1,63 @@
+package me.mattlogan.library;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Named android.os.Trace sections for the work ViewStacks do, so that it shows up in systrace
+ * and Perfetto. Off by default; see ViewStack.setTraceSectionsEnabled().
+ * <p>
+ * Sections have to end on the thread and in the frame they began in, so work which spans frames,
+ * i.e. waiting for the first layout and running an animation, shows up as the sections for its
+ * start and end. The names are constants, so tracing doesn't allocate.
+ */
+final class TraceSections {
+
+    static final String PUSH = "ViewStack push";
+    static final String POP = "ViewStack pop";
+    static final String TRANSACTION = "ViewStack transaction";
+    static final String INFLATE = "ViewStack inflate";
+    static final String ADD_VIEW = "ViewStack addView";
+    static final String REMOVE_VIEW = "ViewStack removeView";
+    static final String FIRST_LAYOUT = "ViewStack first layout";
+    static final String ANIMATION_START = "ViewStack animation start";
+    static final String ANIMATION_END = "ViewStack animation end";
+
+    private static final boolean SUPPORTED =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    private static volatile boolean enabled;
+
+    static void setEnabled(boolean enabled) {
+        TraceSections.enabled = enabled && SUPPORTED;
+    }
+
+    /**
+     * Begins a section if tracing is enabled. Pass the result to end(), so that sections stay
+     * balanced when tracing is switched on or off in between.
+     *
+     * @return true if a section was begun
+     */
+    static boolean begin(String name) {
+        if (!enabled) return false;
+        Trace.beginSection(name);
+        return true;
+    }
+
+    static void end(boolean begun) {
+        if (begun) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Adds an empty section, marking a point in time
+     */
+    static void mark(String name) {
+        end(begin(name));
+    }
+
+    private TraceSections() {
+        throw new AssertionError("No instances");
+    }
+}
@@ -0,0 +1,139 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+
+import java.util.EmptyStackException;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+
+/**
+ * A batch of stack operations which is applied to a ViewStack in one step. Operations only change
+ * the target stack of layout ids; nothing is inflated until commit() is called. Create one with
+ * ViewStack.beginTransaction().
+ */
+public final class Transaction {
+
+    private final ViewStack viewStack;
+    private final ParcelableIntStack target;
+    private boolean committed;
+
+    Transaction(ViewStack viewStack, ParcelableIntStack target) {
+        this.viewStack = viewStack;
+        this.target = target;
+    }
+
+    /**
+     * Pushes a layout id onto the target stack
+     *
+     * @param layoutId The layout id to push
+     * @return This Transaction
+     */
+    public Transaction push(@LayoutRes int layoutId) {
+        checkNotCommitted();
+        target.push(layoutId);
+        return this;
+    }
+
+    /**
+     * Pushes a layout id onto the target stack, unless the flags reuse an entry which is already
+     * in it, as with ViewStack.push(int, int)
+     *
+     * @param layoutId The layout id to push
+     * @param flags    ViewStack.FLAG_SINGLE_TOP, ViewStack.FLAG_CLEAR_TOP or 0
+     * @return This Transaction
+     */
+    public Transaction push(@LayoutRes int layoutId, int flags) {
+        checkNotCommitted();
+        int index = ViewStack.reusableIndex(target, layoutId, flags);
+        if (index < 0) {
+            target.push(layoutId);
+            return this;
+        }
+        while (target.size() > index + 1) {
+            target.pop();
+        }
+        return this;
+    }
+
+    /**
+     * Pushes several layout ids onto the target stack, in order
+     *
+     * @param layoutIds The layout ids to push, bottom first
+     * @return This Transaction
+     */
+    public Transaction pushAll(@LayoutRes int... layoutIds) {
+        checkNotCommitted();
+        checkNotNull(layoutIds, "layoutIds == null");
+        for (int layoutId : layoutIds) {
+            target.push(layoutId);
+        }
+        return this;
+    }
+
+    /**
+     * Pops the top layout id off the target stack
+     *
+     * @return This Transaction
+     */
+    public Transaction pop() {
+        checkNotCommitted();
+        target.pop();
+        return this;
+    }
+
+    /**
+     * Pops layout ids off the target stack until the provided layout id is at the top
+     *
+     * @param layoutId The layout id to pop to
+     * @return This Transaction
+     */
+    public Transaction popTo(@LayoutRes int layoutId) {
+        checkNotCommitted();
+        int index = target.size() - 1;
+        while (index >= 0 && target.get(index) != layoutId) {
+            index--;
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("layoutId isn't in the stack");
+        }
+        while (target.size() > index + 1) {
+            target.pop();
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the whole target stack
+     *
+     * @param layoutIds The new layout ids, bottom first
+     * @return This Transaction
+     */
+    public Transaction replaceStack(@LayoutRes int... layoutIds) {
+        checkNotCommitted();
+        checkNotNull(layoutIds, "layoutIds == null");
+        target.clear();
+        return pushAll(layoutIds);
+    }
+
+    /**
+     * Applies the target stack to the ViewStack. Entries at the bottom which match the current
+     * stack keep their Views, only the new top View is inflated, and StackChangedListeners are
+     * notified once.
+     *
+     * @throws EmptyStackException if the target stack is empty
+     */
+    public void commit() {
+        checkNotCommitted();
+        if (target.isEmpty()) {
+            throw new EmptyStackException();
+        }
+        committed = true;
+        viewStack.applyTransaction(target);
+    }
+
+    private void checkNotCommitted() {
+        if (committed) {
+            throw new IllegalStateException("Transaction was already committed");
+        }
+    }
+}
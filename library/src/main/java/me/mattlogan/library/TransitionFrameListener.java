@@ -0,0 +1,28 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+
+/**
+ * Interface for receiving the frame statistics of each animated push and pop. Set one with
+ * ViewStack.setTransitionFrameListener(). Called on the main thread when the animation ends or is
+ * cancelled, with primitive arguments and the AnimatorFactory which created the animation, so
+ * dispatching doesn't allocate.
+ */
+public interface TransitionFrameListener {
+
+    /**
+     * Called once for each animated transition
+     *
+     * @param operation            TransitionMetrics.OPERATION_PUSH or OPERATION_POP
+     * @param layoutId             The layout id of the pushed or popped View
+     * @param animatorFactory      The AnimatorFactory instance which created the animation
+     * @param frameCount           The number of frames drawn while the animation ran
+     * @param slowFrameCount       The number of those frames which took over one and a half frame
+     *                             intervals of the display, i.e. in which at least one frame was
+     *                             dropped
+     * @param worstFrameNanos      The longest time between two of those frames, in nanoseconds
+     */
+    void onTransitionFrames(int operation, @LayoutRes int layoutId,
+                            AnimatorFactory animatorFactory,
+                            int frameCount, int slowFrameCount, long worstFrameNanos);
+}
@@ -0,0 +1,150 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+
+/**
+ * A TransitionMetrics which keeps a histogram of the timings of each operation and phase, per
+ * layout id. Buckets are powers of two of nanoseconds, so recording a timing is a few array
+ * operations and only allocates the first time a layout id is seen. Must be used on the main
+ * thread.
+ */
+public final class TransitionHistograms implements TransitionMetrics {
+
+    private static final int OPERATION_COUNT = 2;
+    private static final int PHASE_COUNT = 5;
+
+    // Bucket b counts timings below 2^b nanoseconds and at least 2^(b - 1); the last bucket also
+    // counts everything longer, i.e. anything over about 17 minutes
+    private static final int BUCKET_COUNT = 41;
+
+    private static final String[] OPERATION_NAMES = {"push", "pop"};
+    private static final String[] PHASE_NAMES =
+            {"inflate", "attach", "first layout", "animation", "remove"};
+
+    // Bucket counts by layout id, indexed by (operation * PHASE_COUNT + phase) * BUCKET_COUNT
+    private final SparseArray<long[]> histograms = new SparseArray<>();
+
+    /**
+     * Creates a new, empty TransitionHistograms
+     *
+     * @return A new TransitionHistograms instance
+     */
+    public static TransitionHistograms create() {
+        return new TransitionHistograms();
+    }
+
+    private TransitionHistograms() {
+    }
+
+    @Override
+    public void onPhaseTimed(int operation, int phase, @LayoutRes int layoutId,
+                             long durationNanos) {
+        long[] histogram = histograms.get(layoutId);
+        if (histogram == null) {
+            histogram = new long[OPERATION_COUNT * PHASE_COUNT * BUCKET_COUNT];
+            histograms.put(layoutId, histogram);
+        }
+        histogram[offset(operation, phase) + bucket(durationNanos)]++;
+    }
+
+    /**
+     * @return The number of timings recorded for the layout id, operation and phase
+     */
+    public long getCount(@LayoutRes int layoutId, int operation, int phase) {
+        long[] histogram = histograms.get(layoutId);
+        if (histogram == null) return 0;
+        int offset = offset(operation, phase);
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += histogram[offset + i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns an upper bound for a percentile of the timings recorded for the layout id,
+     * operation and phase. The bound is the end of the histogram bucket which contains the
+     * percentile, so it's at most twice the actual value.
+     *
+     * @param percentile A percentile between 0 and 100
+     * @return The upper bound in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(@LayoutRes int layoutId, int operation, int phase,
+                                   double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long count = getCount(layoutId, operation, phase);
+        if (count == 0) return 0;
+        long[] histogram = histograms.get(layoutId);
+        int offset = offset(operation, phase);
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKET_COUNT - 1) {
+            seen += histogram[offset + bucket];
+            if (seen >= rank) break;
+            bucket++;
+        }
+        return 1L << bucket;
+    }
+
+    /**
+     * Writes the count and the 50th, 90th and 99th percentiles of every recorded layout id,
+     * operation and phase, e.g. from a debug screen or dumpsys
+     *
+     * @param writer The PrintWriter to write to
+     */
+    public void dump(PrintWriter writer) {
+        checkNotNull(writer, "writer == null");
+        for (int i = 0; i < histograms.size(); i++) {
+            int layoutId = histograms.keyAt(i);
+            writer.println("layout 0x" + Integer.toHexString(layoutId));
+            for (int operation = 0; operation < OPERATION_COUNT; operation++) {
+                for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                    long count = getCount(layoutId, operation, phase);
+                    if (count == 0) continue;
+                    long p50 = getPercentileNanos(layoutId, operation, phase, 50);
+                    long p90 = getPercentileNanos(layoutId, operation, phase, 90);
+                    long p99 = getPercentileNanos(layoutId, operation, phase, 99);
+                    writer.println("  " + OPERATION_NAMES[operation] + " " + PHASE_NAMES[phase]
+                            + ": count=" + count + " p50<=" + formatNanos(p50)
+                            + " p90<=" + formatNanos(p90) + " p99<=" + formatNanos(p99));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Discards all recorded timings
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    private static int offset(int operation, int phase) {
+        if (operation < 0 || operation >= OPERATION_COUNT) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        if (phase < 0 || phase >= PHASE_COUNT) {
+            throw new IllegalArgumentException("Unknown phase: " + phase);
+        }
+        return (operation * PHASE_COUNT + phase) * BUCKET_COUNT;
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), BUCKET_COUNT - 1);
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos >= 1000000) return (nanos / 1000000) + "ms";
+        if (nanos >= 1000) return (nanos / 1000) + "us";
+        return nanos + "ns";
+    }
+}
@@ -0,0 +1,52 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+
+/**
+ * Interface for receiving timings of each phase of push and pop transitions. Set one with
+ * ViewStack.setTransitionMetrics(). Called on the main thread with primitive arguments only, so
+ * an implementation which doesn't allocate can be left on in release builds.
+ */
+public interface TransitionMetrics {
+
+    int OPERATION_PUSH = 0;
+    int OPERATION_POP = 1;
+
+    /**
+     * Creating the View: inflating it, or taking it from the prefetched Views or the ViewPool.
+     * For pops, inflating the uncovered View if it was deferred.
+     */
+    int PHASE_INFLATE = 0;
+
+    /**
+     * Adding the pushed View to the container and hiding the View below it
+     */
+    int PHASE_ATTACH = 1;
+
+    /**
+     * Waiting between attaching an animated View and the first frame in which it has a size, when
+     * the animation starts
+     */
+    int PHASE_FIRST_LAYOUT = 2;
+
+    /**
+     * Running the Animator created by the AnimatorFactory
+     */
+    int PHASE_ANIMATION = 3;
+
+    /**
+     * Removing the popped View from the container and recycling it
+     */
+    int PHASE_REMOVE = 4;
+
+    /**
+     * Called once for each phase of a transition, in the order the phases finish
+     *
+     * @param operation     OPERATION_PUSH or OPERATION_POP
+     * @param phase         One of the PHASE_ constants
+     * @param layoutId      The layout id of the pushed or popped View, or of the uncovered View
+     *                      for PHASE_INFLATE of a pop
+     * @param durationNanos How long the phase took, in nanoseconds
+     */
+    void onPhaseTimed(int operation, int phase, @LayoutRes int layoutId, long durationNanos);
+}
@@ -0,0 +1,81 @@
+package me.mattlogan.library;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.view.View;
+
+/**
+ * Passes the memory pressure reported to the application on to a ViewStack or ViewStackGroup.
+ * It's registered with the application Context only while their container is attached to a
+ * window, so the application never holds on to a ViewStack, and through it an Activity, which is
+ * gone. Requires API 14, and must be used on the main thread.
+ */
+final class TrimMemoryCallbacks implements ComponentCallbacks2, View.OnAttachStateChangeListener {
+
+    /**
+     * Gives up memory according to a ComponentCallbacks2 trim level
+     */
+    interface Target {
+        void onTrimMemory(int level);
+    }
+
+    private final Target target;
+    private final View container;
+    private final Context context;
+    private boolean registered;
+
+    TrimMemoryCallbacks(Target target, View container) {
+        this.target = target;
+        this.container = container;
+        this.context = container.getContext().getApplicationContext();
+    }
+
+    void enable() {
+        container.addOnAttachStateChangeListener(this);
+        if (container.getWindowToken() != null) {
+            register();
+        }
+    }
+
+    void disable() {
+        container.removeOnAttachStateChangeListener(this);
+        unregister();
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        register();
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        unregister();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        target.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        target.onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void register() {
+        if (registered) return;
+        registered = true;
+        context.registerComponentCallbacks(this);
+    }
+
+    private void unregister() {
+        if (!registered) return;
+        registered = false;
+        context.unregisterComponentCallbacks(this);
+    }
+}
@@ -0,0 +1,54 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Creates Views for layout ids with the registered CompiledLayout, or inflates them from XML if
+ * there isn't one. May be used from the inflation thread: the CompiledLayouts are copied on every
+ * change, so lookups read a SparseArray which is never modified.
+ */
+final class ViewInflater implements CompiledLayout.Registry {
+
+    private final LayoutInflater layoutInflater;
+    private volatile SparseArray<CompiledLayout> compiledLayouts = new SparseArray<>(0);
+
+    ViewInflater(LayoutInflater layoutInflater) {
+        this.layoutInflater = layoutInflater;
+    }
+
+    View inflate(@LayoutRes int layoutId, ViewGroup container) {
+        // Also traced on the inflation thread of async pushes and prefetches
+        boolean traced = TraceSections.begin(TraceSections.INFLATE);
+        try {
+            CompiledLayout compiledLayout = compiledLayouts.get(layoutId);
+            if (compiledLayout == null) {
+                return layoutInflater.inflate(layoutId, container, false);
+            }
+            View view = compiledLayout.createView(container.getContext(), container);
+            if (view == null) {
+                throw new NullPointerException("CompiledLayout for layout id 0x"
+                        + Integer.toHexString(layoutId) + " returned null");
+            }
+            return view;
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    @Override
+    public void setCompiledLayout(@LayoutRes int layoutId,
+                                  @Nullable CompiledLayout compiledLayout) {
+        SparseArray<CompiledLayout> copy = compiledLayouts.clone();
+        if (compiledLayout != null) {
+            copy.put(layoutId, compiledLayout);
+        } else {
+            copy.remove(layoutId);
+        }
+        compiledLayouts = copy;
+    }
+}
@@ -0,0 +1,168 @@
+package me.mattlogan.library;
+
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * A pool of detached Views keyed by layout id. When a ViewStack has a ViewPool, popped Views are
+ * released into the pool and pushing the same layout id again reuses one of them instead of
+ * inflating a new View.
+ * <p>
+ * The pool holds at most maxViewsPerLayout Views for each layout id and at most maxViews Views in
+ * total. When either limit is reached the least recently released View is evicted.
+ */
+public final class ViewPool {
+
+    /**
+     * Interface for resetting a View before it's stored in the pool, e.g. clearing text inputs
+     * or scroll positions. The default Resetter makes the View visible again and resets the
+     * properties which push and pop animations usually change, since a View can be released
+     * in the middle of an animation or with its end values.
+     */
+    public interface Resetter {
+        void reset(View view, @LayoutRes int layoutId);
+    }
+
+    public static final Resetter DEFAULT_RESETTER = new Resetter() {
+        @Override
+        public void reset(View view, @LayoutRes int layoutId) {
+            view.setVisibility(View.VISIBLE);
+            view.setAlpha(1);
+            view.setTranslationX(0);
+            view.setTranslationY(0);
+            view.setScaleX(1);
+            view.setScaleY(1);
+            view.setRotation(0);
+        }
+    };
+
+    private final int maxViewsPerLayout;
+    private final Resetter resetter;
+
+    // Ordered from least to most recently released
+    private final int[] layoutIds;
+    private final View[] views;
+    private int size;
+
+    /**
+     * Creates a new ViewPool
+     *
+     * @param maxViewsPerLayout The maximum number of Views to keep for each layout id
+     * @param maxViews          The maximum number of Views to keep in total
+     * @return A new ViewPool instance
+     */
+    public static ViewPool create(int maxViewsPerLayout, int maxViews) {
+        return create(maxViewsPerLayout, maxViews, DEFAULT_RESETTER);
+    }
+
+    /**
+     * Creates a new ViewPool
+     *
+     * @param maxViewsPerLayout The maximum number of Views to keep for each layout id
+     * @param maxViews          The maximum number of Views to keep in total
+     * @param resetter          Resets each View before it's stored in the pool
+     * @return A new ViewPool instance
+     */
+    public static ViewPool create(int maxViewsPerLayout, int maxViews, Resetter resetter) {
+        checkPositive(maxViewsPerLayout, "maxViewsPerLayout <= 0");
+        checkPositive(maxViews, "maxViews <= 0");
+        checkNotNull(resetter, "resetter == null");
+        return new ViewPool(maxViewsPerLayout, maxViews, resetter);
+    }
+
+    private ViewPool(int maxViewsPerLayout, int maxViews, Resetter resetter) {
+        this.maxViewsPerLayout = maxViewsPerLayout;
+        this.resetter = resetter;
+        this.layoutIds = new int[maxViews];
+        this.views = new View[maxViews];
+    }
+
+    /**
+     * Removes and returns the most recently released View for the provided layout id
+     *
+     * @param layoutId The layout id of the View
+     * @return A detached View, or null if the pool doesn't contain one for this layout id
+     */
+    @Nullable
+    public View acquire(@LayoutRes int layoutId) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (layoutIds[i] == layoutId) {
+                View view = views[i];
+                removeAt(i);
+                return view;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resets the provided View and stores it in the pool, evicting the least recently released
+     * View if the pool is full
+     *
+     * @param layoutId The layout id the View was inflated from
+     * @param view     A View which has been removed from its parent
+     */
+    public void release(@LayoutRes int layoutId, View view) {
+        checkNotNull(view, "view == null");
+        if (view.getParent() != null) {
+            throw new IllegalArgumentException("view still has a parent");
+        }
+        resetter.reset(view, layoutId);
+        int oldest = -1;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (layoutIds[i] == layoutId) {
+                if (oldest == -1) oldest = i;
+                count++;
+            }
+        }
+        if (count >= maxViewsPerLayout) {
+            removeAt(oldest);
+        } else if (size == views.length) {
+            removeAt(0);
+        }
+        layoutIds[size] = layoutId;
+        views[size] = view;
+        size++;
+    }
+
+    /**
+     * @param layoutId A layout id
+     * @return The number of Views in the pool for the provided layout id
+     */
+    public int size(@LayoutRes int layoutId) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (layoutIds[i] == layoutId) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return The total number of Views in the pool
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all Views from the pool
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            views[i] = null;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        System.arraycopy(layoutIds, index + 1, layoutIds, index, moved);
+        System.arraycopy(views, index + 1, views, index, moved);
+        views[--size] = null;
+    }
+}
@@ -2,33 +2,133 @@ package me.mattlogan.library;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
+import android.content.ComponentCallbacks2;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcelable;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.Nullable;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.EmptyStackException;
-import java.util.List;
+import java.util.Random;
 
 import static me.mattlogan.library.Preconditions.checkNotNull;
+import static me.mattlogan.library.Preconditions.checkPositive;
 import static me.mattlogan.library.Preconditions.checkStringNotEmpty;
+import static me.mattlogan.library.StackOperationListener.OPERATION_CLEAR;
+import static me.mattlogan.library.StackOperationListener.OPERATION_REBUILD;
+import static me.mattlogan.library.StackOperationListener.OPERATION_TRANSACTION;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_POP;
+import static me.mattlogan.library.TransitionMetrics.OPERATION_PUSH;
+import static me.mattlogan.library.TransitionMetrics.PHASE_ANIMATION;
+import static me.mattlogan.library.TransitionMetrics.PHASE_ATTACH;
+import static me.mattlogan.library.TransitionMetrics.PHASE_FIRST_LAYOUT;
+import static me.mattlogan.library.TransitionMetrics.PHASE_INFLATE;
+import static me.mattlogan.library.TransitionMetrics.PHASE_REMOVE;
 
 /**
  * This manages a navigation stack by representing each item in the stack as a layout id, which is
  * responsible for View creation. All standard Java Stack operations are supported, with additional
  * methods for pushing and popping with animated transitions.
  */
-public final class ViewStack {
+public final class ViewStack implements CompiledLayout.Registry, TrimMemoryCallbacks.Target {
+
+    /**
+     * Push flag: if the layout id is already at the top of the stack, the push only notifies
+     * listeners again, like an Activity with the singleTop launch mode
+     */
+    public static final int FLAG_SINGLE_TOP = 1;
+
+    /**
+     * Push flag: if the layout id is already in the stack, the entries above its highest entry are
+     * popped and its View is reused instead of pushing a new one, like an Intent with
+     * FLAG_ACTIVITY_CLEAR_TOP. Implies FLAG_SINGLE_TOP.
+     */
+    public static final int FLAG_CLEAR_TOP = 2;
+
+    private static final String DEFERRED_STATES_SUFFIX = ":deferredStates";
+    private static final String FILE_SUFFIX = ":file";
+    private static final String CRC_SUFFIX = ":crc";
+    private static final int DEFAULT_MAX_PREFETCHED_VIEWS = 2;
+    private static final long DEFAULT_PREFETCH_EXPIRY_MILLIS = 10000;
+    // Makes every saved state file name unique, so stacks saved with the same tag, e.g. by two
+    // instances of an Activity, don't overwrite each other's files
+    private static final Random FILE_NAME_RANDOM = new Random();
+    // Files which are neither rebuilt from nor deleted by their ViewStack, e.g. those of an
+    // Activity whose process was killed and which was never restored, are only bounded by this
+    private static final int MAX_SAVED_STATE_FILES_PER_TAG = 8;
+    // Read in place of a saved stack whose file is missing or corrupt
+    private static final ParcelableIntStack LOST_SAVED_STACK = new ParcelableIntStack();
 
     private final ViewGroup container;
     private final ViewStackDelegate delegate;
-    private final LayoutInflater inflater;
+    private final ViewInflater inflater;
 
     private final ParcelableIntStack stack = new ParcelableIntStack();
-    private final List<StackChangedListener> listeners = new ArrayList<>();
+
+    // The snapshot follows every change to the stack, and is published to other threads through
+    // the volatile field once each operation is complete
+    private StackSnapshot workingSnapshot = StackSnapshot.EMPTY;
+    private long snapshotVersion;
+    private volatile StackSnapshot snapshot = StackSnapshot.EMPTY;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Copied on every change, so dispatching iterates a snapshot without allocating and listeners
+    // can add or remove listeners while they're notified
+    private StackChangedListener[] listeners = new StackChangedListener[0];
+    private StackOperationListener[] operationListeners = new StackOperationListener[0];
+
+    private final AsyncInflater asyncInflater;
+    private final Prefetcher prefetcher;
+    private final ArrayDeque<PendingPush> pendingPushes = new ArrayDeque<>();
+
+    @Nullable private ViewPool viewPool;
+
+    // Only one animated push or pop runs at a time. Any other operation first fast-forwards it to
+    // its end, except for a pop during a push animation, which cancels the push instead.
+    private final RunningTransition transition = new RunningTransition();
+    private boolean useHardwareLayers;
+    private VisibilityPolicy visibilityPolicy = VisibilityPolicy.GONE;
+
+    // The Views of the entries in the stack, by stack index. An entry is "deferred" while its View
+    // is null, either because it was removed to bound memory use or because it was never shown.
+    // Deferred entries keep their hierarchy state by stack index and are inflated again when
+    // they're needed.
+    private View[] entryViews = new View[8];
+    private int liveCount;
+    private final SparseArray<SparseArray<Parcelable>> deferredStates = new SparseArray<>();
+    private int maxLiveViews = Integer.MAX_VALUE;
+    private long liveViewByteBudget = Long.MAX_VALUE;
+    private MemoryEstimator memoryEstimator = MemoryEstimator.DEFAULT;
+    private boolean idleInflationScheduled;
+
+    // The encoded stack for saved state, or null if the stack changed since it was last encoded
+    @Nullable private byte[] encodedStack;
+    @Nullable private File savedStateDirectory;
+    private int minSavedStateFileBytes;
+    // The last file this ViewStack saved to, which it deletes once a newer save replaces it
+    @Nullable private File writtenFile;
+    private long writtenFileCrc;
+    // The tag for which writtenFile holds the current encodedStack, if any
+    @Nullable private String writtenFileTag;
+
+    @Nullable private TransitionMetrics transitionMetrics;
+    @Nullable private StackEventLog eventLog;
+    @Nullable private FrameMonitor frameMonitor;
+    @Nullable private TrimMemoryCallbacks trimMemoryCallbacks;
 
     /**
      * Creates a new ViewStack
@@ -45,13 +145,28 @@ public final class ViewStack {
     }
 
     private ViewStack(ViewGroup container, ViewStackDelegate delegate) {
+        this(container, delegate, new ViewInflater(LayoutInflater.from(container.getContext())),
+                null);
+    }
+
+    /**
+     * Creates a ViewStack which shares its ViewInflater and, if provided, its Prefetcher with
+     * other ViewStacks, e.g. those of a ViewStackGroup
+     */
+    ViewStack(ViewGroup container, ViewStackDelegate delegate, ViewInflater inflater,
+              @Nullable Prefetcher prefetcher) {
         this.container = container;
         this.delegate = delegate;
-        this.inflater = LayoutInflater.from(container.getContext());
+        this.inflater = inflater;
+        this.asyncInflater = new AsyncInflater(inflater, container);
+        this.prefetcher = prefetcher != null ? prefetcher : new Prefetcher(inflater, container,
+                DEFAULT_MAX_PREFETCHED_VIEWS, DEFAULT_PREFETCH_EXPIRY_MILLIS);
     }
 
     /**
-     * Saves the ViewStack state to the provided Bundle using the provided tag
+     * Saves the ViewStack state to the provided Bundle using the provided tag. The layout ids are
+     * stored in a compact encoding, or in a file if setSavedStateDirectory() was called and the
+     * encoding is large enough.
      *
      * @param bundle The Bundle in which to save the serialized Stack of view ids
      * @param tag    The tag, or "bundle key," for the stored data
@@ -59,26 +174,211 @@ public final class ViewStack {
     public void saveToBundle(Bundle bundle, String tag) {
         checkNotNull(bundle, "bundle == null");
         checkStringNotEmpty(tag, "tag is empty");
-        bundle.putParcelable(tag, stack);
+        if (encodedStack == null) {
+            encodedStack = StackCodec.encode(stack);
+        }
+        if (savedStateDirectory == null || !saveToFile(bundle, tag)) {
+            bundle.putByteArray(tag, encodedStack);
+        }
+        if (deferredStates.size() > 0) {
+            Bundle states = new Bundle();
+            for (int i = 0; i < deferredStates.size(); i++) {
+                states.putSparseParcelableArray(String.valueOf(deferredStates.keyAt(i)),
+                        deferredStates.valueAt(i));
+            }
+            bundle.putBundle(tag + DEFERRED_STATES_SUFFIX, states);
+        }
     }
 
     /**
-     * Resets the navigation stack state to what it was when saveToBundle() was called
+     * Writes the encoded stack to a new file if it's large enough, and puts the file name and its
+     * checksum in the Bundle. The file written by the previous save is deleted, since the new
+     * Bundle replaces the one which referred to it, and so are the oldest files saved with the
+     * same tag beyond MAX_SAVED_STATE_FILES_PER_TAG.
+     *
+     * @return true if the stack was saved to a file
+     */
+    private boolean saveToFile(Bundle bundle, String tag) {
+        bundle.remove(tag + FILE_SUFFIX);
+        bundle.remove(tag + CRC_SUFFIX);
+        if (encodedStack.length < minSavedStateFileBytes) {
+            deleteWrittenFile();
+            return false;
+        }
+        // Touching the current file keeps it among the newest, and fails if it was deleted
+        if (!tag.equals(writtenFileTag)
+                || !writtenFile.setLastModified(System.currentTimeMillis())) {
+            String prefix = savedStateFilePrefix(tag);
+            File file = new File(savedStateDirectory,
+                    prefix + Long.toHexString(FILE_NAME_RANDOM.nextLong()));
+            try {
+                long crc = SavedStateFile.write(file, encodedStack);
+                deleteWrittenFile();
+                writtenFile = file;
+                writtenFileCrc = crc;
+                writtenFileTag = tag;
+                SavedStateFile.deleteOldest(savedStateDirectory, prefix, file,
+                        MAX_SAVED_STATE_FILES_PER_TAG);
+            } catch (IOException e) {
+                // The Bundle still works, it's just larger
+                deleteWrittenFile();
+                return false;
+            }
+        }
+        bundle.remove(tag);
+        bundle.putString(tag + FILE_SUFFIX, writtenFile.getName());
+        bundle.putLong(tag + CRC_SUFFIX, writtenFileCrc);
+        return true;
+    }
+
+    private void deleteWrittenFile() {
+        if (writtenFile != null) {
+            // If it can't be deleted, it's only left over
+            writtenFile.delete();
+            writtenFile = null;
+            writtenFileTag = null;
+        }
+    }
+
+    /**
+     * @return The saved stack, LOST_SAVED_STACK if it was saved to a file which is missing or
+     * corrupt, or null if the Bundle doesn't contain any ViewStack state
+     */
+    @Nullable
+    private ParcelableIntStack readSavedStack(Bundle bundle, String tag) {
+        Object saved = bundle.get(tag);
+        if (saved instanceof byte[]) {
+            return StackCodec.decode((byte[]) saved);
+        }
+        if (saved instanceof ParcelableIntStack) {
+            // Saved by an older version
+            return (ParcelableIntStack) saved;
+        }
+        String fileName = bundle.getString(tag + FILE_SUFFIX);
+        if (fileName == null) return null;
+        if (savedStateDirectory == null) {
+            throw new IllegalStateException("ViewStack state was saved to a file, "
+                    + "but setSavedStateDirectory() wasn't called");
+        }
+        File file = new File(savedStateDirectory, fileName);
+        long crc = bundle.getLong(tag + CRC_SUFFIX);
+        try {
+            return StackCodec.decode(SavedStateFile.read(file, crc));
+        } catch (IOException e) {
+            return LOST_SAVED_STACK;
+        }
+    }
+
+    /**
+     * Takes over the file which a rebuilt stack was read from, so it's deleted once the next save
+     * replaces it, and isn't written again as long as the stack doesn't change
+     */
+    private void adoptSavedStateFile(Bundle bundle, String tag) {
+        String fileName = bundle.getString(tag + FILE_SUFFIX);
+        if (fileName == null) return;
+        deleteWrittenFile();
+        writtenFile = new File(savedStateDirectory, fileName);
+        writtenFileCrc = bundle.getLong(tag + CRC_SUFFIX);
+        writtenFileTag = tag;
+    }
+
+    private static String savedStateFilePrefix(String tag) {
+        try {
+            return "viewstack-" + URLEncoder.encode(tag, "UTF-8") + "-";
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Resets the navigation stack state to what it was when saveToBundle() was called. If the
+     * number of live Views is limited, only the top entries are inflated and the rest are inflated
+     * when pop() reaches them.
+     * <p>
+     * If the state was saved to a file with setSavedStateDirectory() and the file is missing or
+     * corrupt, e.g. because app data was cleared, the stack is left as it is and false is
+     * returned, so the caller can start over as if nothing was saved.
      *
      * @param bundle A bundle containing saved ViewStack state
      * @param tag    The tag, or key, for which the ViewStack state was saved
+     * @return true if the stack was rebuilt, false if its saved state file was lost
      */
-    public void rebuildFromBundle(Bundle bundle, String tag) {
+    public boolean rebuildFromBundle(Bundle bundle, String tag) {
+        return rebuildFromBundle(bundle, tag, maxLiveViews);
+    }
+
+    /**
+     * Resets the navigation stack state to what it was when saveToBundle() was called, but only
+     * inflates the View at the top of the stack. The other entries are kept as layout ids and
+     * inflated when pop() reaches them, or earlier if inflateDeferredViewsWhenIdle() is called.
+     * <p>
+     * Note that the host Activity only restores hierarchy state for Views which are in the
+     * container when it calls onRestoreInstanceState(), so deferred entries only get back the
+     * state which the ViewStack saved for Views it had removed itself.
+     *
+     * @param bundle A bundle containing saved ViewStack state
+     * @param tag    The tag, or key, for which the ViewStack state was saved
+     * @return true if the stack was rebuilt, false if its saved state file was lost, as with
+     * rebuildFromBundle()
+     */
+    public boolean rebuildFromBundleLazily(Bundle bundle, String tag) {
+        return rebuildFromBundle(bundle, tag, 1);
+    }
+
+    private boolean rebuildFromBundle(Bundle bundle, String tag, int liveViews) {
         checkNotNull(bundle, "bundle == null");
         checkStringNotEmpty(tag, "tag is empty");
-        ParcelableIntStack savedStack = bundle.getParcelable(tag);
+        ParcelableIntStack savedStack = readSavedStack(bundle, tag);
         checkNotNull(savedStack, "Bundle doesn't contain any ViewStack state.");
-        for (Integer layoutResource : savedStack) {
-            pushWithoutNotifyingListeners(layoutResource);
+        if (savedStack == LOST_SAVED_STACK) return false;
+        settleTransition();
+        cancelPendingPushes();
+        int oldSize = stack.size();
+        int oldTopLayoutId = layoutIdAt(oldSize - 1);
+        Bundle states = bundle.getBundle(tag + DEFERRED_STATES_SUFFIX);
+        if (states != null) {
+            int offset = stack.size();
+            for (String key : states.keySet()) {
+                SparseArray<Parcelable> state = states.getSparseParcelableArray(key);
+                deferredStates.put(offset + Integer.parseInt(key), state);
+            }
+        }
+        for (int i = 0; i < savedStack.size(); i++) {
+            pushEntry(savedStack.get(i));
+        }
+        if (oldSize == 0) {
+            adoptSavedStateFile(bundle, tag);
+        }
+        int live = Math.min(savedStack.size(), liveViews);
+        for (int i = stack.size() - live; i < stack.size(); i++) {
+            inflateEntry(i);
         }
-        callOnViewAdded();
+        applyVisibilityPolicy();
+        trimLiveViews();
+        callOnViewAdded(OPERATION_REBUILD, oldSize, oldTopLayoutId);
+        return true;
     }
 
+    /**
+     * Inflates entries whose Views were deferred by rebuildFromBundleLazily(), one per main thread
+     * idle pass, starting with the entry closest to the top. Stops once setMaxLiveViews() or
+     * setLiveViewByteBudget() wouldn't allow another View. Must be called on the main thread.
+     */
+    public void inflateDeferredViewsWhenIdle() {
+        if (idleInflationScheduled) return;
+        idleInflationScheduled = true;
+        Looper.myQueue().addIdleHandler(inflateDeferredViewWhenIdle);
+    }
+
+    private final MessageQueue.IdleHandler inflateDeferredViewWhenIdle =
+            new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    idleInflationScheduled = inflateDeferredViewBelowLiveViews();
+                    return idleInflationScheduled;
+                }
+            };
+
     /**
      * Inflates a View in the container and pushes it onto the navigation stack
      *
@@ -86,38 +386,196 @@ public final class ViewStack {
      * @return The inflated View
      */
     public View push(@LayoutRes int layoutId) {
-        View pushed = pushWithoutNotifyingListeners(layoutId);
-        callOnViewAdded();
-        return pushed;
+        boolean traced = TraceSections.begin(TraceSections.PUSH);
+        try {
+            settleTransition();
+            View pushed = pushWithoutNotifyingListeners(layoutId);
+            callOnViewPushed();
+            return pushed;
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    /**
+     * Like push(), but the flags may reuse an entry which is already in the stack instead. A
+     * reused entry keeps its View, so nothing is inflated, and listeners are notified once, with
+     * StackOperationListener.OPERATION_TRANSACTION.
+     *
+     * @param layoutId The layout id to inflate into the parent ViewGroup
+     * @param flags    FLAG_SINGLE_TOP, FLAG_CLEAR_TOP or 0
+     * @return The View at the top of the navigation stack
+     */
+    public View push(@LayoutRes int layoutId, int flags) {
+        int index = reusableIndex(stack, layoutId, flags);
+        return index >= 0 ? reuseEntry(index) : push(layoutId);
     }
 
     private View pushWithoutNotifyingListeners(@LayoutRes int layoutId) {
-        stack.push(layoutId);
-        View pushed = inflater.inflate(layoutId, container, false);
-        container.addView(pushed);
-        setBelowViewVisibility(View.GONE);
+        long start = startTiming();
+        View pushed = obtainView(layoutId);
+        start = reportPhase(OPERATION_PUSH, PHASE_INFLATE, layoutId, start);
+        pushViewWithoutNotifyingListeners(layoutId, pushed);
+        reportPhase(OPERATION_PUSH, PHASE_ATTACH, layoutId, start);
         return pushed;
     }
 
+    private View pushViewWithoutNotifyingListeners(@LayoutRes int layoutId, View pushed) {
+        pushEntry(layoutId);
+        attachEntryView(stack.size() - 1, pushed);
+        hideCoveredEntry();
+        trimLiveViews();
+        return pushed;
+    }
+
+    /**
+     * Inflates a View on a background thread, then adds it to the container and pushes it onto
+     * the navigation stack on the main thread.
+     * <p>
+     * Pending pushes follow these rules:
+     * <ul>
+     * <li>They're attached in the order they were requested, even if a later one finishes
+     * inflating first.</li>
+     * <li>Synchronous pushes are attached immediately. Pending pushes are attached on top of them
+     * once their inflation finishes.</li>
+     * <li>pop() and popWithAnimation() cancel the most recently requested pending push instead of
+     * popping an attached View, and return null.</li>
+     * <li>clear() and rebuildFromBundle() cancel every pending push.</li>
+     * <li>A cancelled push never reaches the container or the StackChangedListeners. If its
+     * inflation has already started it runs to completion and the View is discarded.</li>
+     * </ul>
+     * The layout must be safe to inflate off the main thread, e.g. its Views must not create a
+     * Handler in their constructors.
+     *
+     * @param layoutId The layout id to inflate into the parent ViewGroup
+     * @param callback Notified on the main thread once the View has been pushed
+     * @return A PendingPush, which can be used to cancel the push before it's attached
+     */
+    public PendingPush pushAsync(@LayoutRes int layoutId, AsyncPushCallback callback) {
+        return enqueuePendingPush(layoutId, null, callback);
+    }
+
+    /**
+     * Like pushAsync(), but animates the View onto the navigation stack using the Animator created
+     * by the provided AnimatorFactory once it's attached
+     *
+     * @param layoutId        The layout id to inflate into the parent ViewGroup
+     * @param animatorFactory Responsible for the creation of an Animator to animate the next View
+     *                        onto the navigation stack
+     * @param callback        Notified on the main thread once the View has been pushed
+     * @return A PendingPush, which can be used to cancel the push before it's attached
+     */
+    public PendingPush pushWithAnimationAsync(@LayoutRes int layoutId,
+                                              AnimatorFactory animatorFactory,
+                                              AsyncPushCallback callback) {
+        checkNotNull(animatorFactory, "animatorFactory == null");
+        return enqueuePendingPush(layoutId, animatorFactory, callback);
+    }
+
+    private PendingPush enqueuePendingPush(@LayoutRes int layoutId,
+                                           @Nullable AnimatorFactory animatorFactory,
+                                           AsyncPushCallback callback) {
+        checkNotNull(callback, "callback == null");
+        PendingPush pendingPush = new PendingPush(this, layoutId, animatorFactory, callback);
+        // A cached View skips inflation, but still goes through the inflation thread so that it's
+        // attached in order
+        pendingPush.view = takeCachedView(layoutId);
+        pendingPushes.addLast(pendingPush);
+        asyncInflater.inflate(pendingPush, onInflated);
+        return pendingPush;
+    }
+
+    boolean cancelPendingPush(PendingPush pendingPush) {
+        if (pendingPush.attached || pendingPush.cancelled) return false;
+        pendingPush.cancelled = true;
+        pendingPushes.remove(pendingPush);
+        // The cancelled push may have been holding back pushes which are already inflated
+        attachInflatedPendingPushes();
+        return true;
+    }
+
+    private void cancelPendingPushes() {
+        while (!pendingPushes.isEmpty()) {
+            pendingPushes.pollFirst().cancelled = true;
+        }
+    }
+
+    private final AsyncInflater.Callback onInflated = new AsyncInflater.Callback() {
+        @Override
+        public void onInflated(PendingPush pendingPush) {
+            if (pendingPush.cancelled) return;
+            pendingPush.inflated = true;
+            attachInflatedPendingPushes();
+        }
+    };
+
+    private void attachInflatedPendingPushes() {
+        while (!pendingPushes.isEmpty() && pendingPushes.peekFirst().inflated) {
+            PendingPush pendingPush = pendingPushes.pollFirst();
+            if (pendingPush.error != null) {
+                throw pendingPush.error;
+            }
+            pendingPush.attached = true;
+            settleTransition();
+            View pushed = pendingPush.view;
+            if (transitionMetrics != null) {
+                transitionMetrics.onPhaseTimed(OPERATION_PUSH, PHASE_INFLATE,
+                        pendingPush.layoutId, pendingPush.inflateNanos);
+            }
+            if (pendingPush.animatorFactory == null
+                    || pendingPush.animatorFactory == AnimatorFactory.NONE) {
+                long start = startTiming();
+                pushViewWithoutNotifyingListeners(pendingPush.layoutId, pushed);
+                reportPhase(OPERATION_PUSH, PHASE_ATTACH, pendingPush.layoutId, start);
+                callOnViewPushed();
+            } else {
+                pushViewWithAnimation(pendingPush.layoutId, pushed, pendingPush.animatorFactory);
+            }
+            pendingPush.callback.onPushed(pushed);
+        }
+    }
+
     /**
-     * Pops the top View off the navigation stack
+     * Pops the top View off the navigation stack. If the top View is still being animated onto the
+     * stack by pushWithAnimation(), its animation is cancelled and it's removed right away.
      *
-     * @return The popped View from the top of the stack, or null if the top View is the last
+     * @return The popped View from the top of the stack, or null if the top View is the last or
+     * a pending push was cancelled instead
      */
     @Nullable
     public View pop() {
-        if (!shouldPop()) return null;
-        stack.pop();
-        setBelowViewVisibility(View.VISIBLE);
-        View popped = peek();
-        container.removeView(popped);
-        callOnViewRemoved();
+        if (cancelLatestPendingPush()) return null;
+        boolean traced = TraceSections.begin(TraceSections.POP);
+        try {
+            settleOrCancelTransition();
+            if (!shouldPop()) return null;
+            return popWithoutAnimation();
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private View popWithoutAnimation() {
+        // The top is only deferred if a ViewStackGroup saved this stack while it was inactive
+        inflateTopIfDeferred();
+        int layoutId = stack.peek();
+        View popped = popEntry();
+        long start = startTiming();
+        if (inflateTopIfDeferred()) {
+            start = reportPhase(OPERATION_POP, PHASE_INFLATE, stack.peek(), start);
+        }
+        revealUncoveredEntries();
+        removeFromContainer(popped);
+        recycle(layoutId, popped);
+        reportPhase(OPERATION_POP, PHASE_REMOVE, layoutId, start);
+        callOnViewPopped(layoutId);
         return popped;
     }
 
     /**
      * Pushes a View, created with the provided layout id, onto the navigation stack and animates
-     * it using the Animator created by the provided AnimatorFactory
+     * it using the Animator created by the provided AnimatorFactory. With AnimatorFactory.NONE
+     * this is a push(). A ReusableAnimatorFactory gets its Animator back when the animation ends.
      *
      * @param layoutId        The id of the view to be added to the top of the navigation stack
      * @param animatorFactory Responsible for the creation of an Animator to animate the next View
@@ -127,38 +585,229 @@ public final class ViewStack {
     public View pushWithAnimation(@LayoutRes int layoutId,
                                   final AnimatorFactory animatorFactory) {
         checkNotNull(animatorFactory, "animatorFactory == null");
-        stack.push(layoutId);
-        View pushed = inflater.inflate(layoutId, container, false);
-        container.addView(pushed);
-        callOnViewAdded();
-        pushed.getViewTreeObserver().addOnGlobalLayoutListener(new FirstLayoutListener(pushed) {
+        if (animatorFactory == AnimatorFactory.NONE) {
+            return push(layoutId);
+        }
+        boolean traced = TraceSections.begin(TraceSections.PUSH);
+        try {
+            settleTransition();
+            long start = startTiming();
+            View pushed = obtainView(layoutId);
+            reportPhase(OPERATION_PUSH, PHASE_INFLATE, layoutId, start);
+            return pushViewWithAnimation(layoutId, pushed, animatorFactory);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    /**
+     * Like pushWithAnimation(), but the flags may reuse an entry which is already in the stack
+     * instead, as with push(int, int). A reused entry isn't animated.
+     *
+     * @param layoutId        The id of the view to be added to the top of the navigation stack
+     * @param animatorFactory Responsible for the creation of an Animator to animate the next View
+     *                        onto the navigation stack
+     * @param flags           FLAG_SINGLE_TOP, FLAG_CLEAR_TOP or 0
+     * @return The View at the top of the navigation stack
+     */
+    public View pushWithAnimation(@LayoutRes int layoutId, AnimatorFactory animatorFactory,
+                                  int flags) {
+        checkNotNull(animatorFactory, "animatorFactory == null");
+        int index = reusableIndex(stack, layoutId, flags);
+        return index >= 0 ? reuseEntry(index) : pushWithAnimation(layoutId, animatorFactory);
+    }
+
+    /**
+     * @return The index of the entry in the stack which the push flags reuse for the layout id,
+     * or -1 if the layout id should be pushed
+     */
+    static int reusableIndex(ParcelableIntStack stack, @LayoutRes int layoutId, int flags) {
+        if ((flags & ~(FLAG_SINGLE_TOP | FLAG_CLEAR_TOP)) != 0) {
+            throw new IllegalArgumentException("Unknown push flags: " + flags);
+        }
+        if (flags == 0 || stack.isEmpty()) return -1;
+        int index = stack.size() - 1;
+        if ((flags & FLAG_CLEAR_TOP) != 0) {
+            while (index > 0 && stack.get(index) != layoutId) {
+                index--;
+            }
+        }
+        return stack.get(index) == layoutId ? index : -1;
+    }
+
+    private View reuseEntry(int index) {
+        settleTransition();
+        // Reported as OPERATION_TRANSACTION either way, like the pops which reach a lower entry
+        if (index == stack.size() - 1) {
+            callOnViewAdded(OPERATION_TRANSACTION, stack.size(), stack.peek());
+        } else {
+            ParcelableIntStack target = stack.copy();
+            while (target.size() > index + 1) {
+                target.pop();
+            }
+            applyTransaction(target);
+        }
+        return peek();
+    }
+
+    private View pushViewWithAnimation(@LayoutRes final int layoutId, View pushed,
+                                       final AnimatorFactory animatorFactory) {
+        long start = startTiming();
+        pushEntry(layoutId);
+        attachEntryView(stack.size() - 1, pushed);
+        final long attached = reportPhase(OPERATION_PUSH, PHASE_ATTACH, layoutId, start);
+        callOnViewPushed();
+        transition.begin(OPERATION_PUSH, layoutId, pushed);
+        transition.firstFrameListener = new FirstFrameListener(pushed) {
             @Override
-            public void onFirstLayout(View view) {
-                // We have to wait until the View's first layout pass to start the animation,
-                // otherwise the view's width and height would be zero.
+            void onFirstFrame(View view) {
+                // The animation starts in the same frame in which the View first has a size,
+                // so its first frame is drawn with the Animator's start values
+                transition.firstFrameListener = null;
+                TraceSections.mark(TraceSections.FIRST_LAYOUT);
+                transition.startNanos =
+                        reportPhase(OPERATION_PUSH, PHASE_FIRST_LAYOUT, layoutId, attached);
                 startAnimation(animatorFactory, view, pushAnimatorListener);
             }
-        });
+
+            @Override
+            void onDetachedBeforeFirstFrame(View view) {
+                // E.g. the container left the window; the push still has to be completed. The
+                // container's children can't be removed while it dispatches the detach, so live
+                // Views are trimmed by the next operation instead.
+                transition.firstFrameListener = null;
+                finishPushTransition(false);
+            }
+        };
+        transition.firstFrameListener.register();
         return pushed;
     }
 
     /**
      * Pops the top View off the navigation stack and animates it using the Animator created by the
-     * provided AnimatorFactory
+     * provided AnimatorFactory. If the top View is still being animated onto the stack by
+     * pushWithAnimation(), that animation is cancelled and the View is removed without animating.
+     * With AnimatorFactory.NONE this is a pop().
      *
      * @param animatorFactory Responsible for the creation of an Animator to animate the current
      *                        View off the navigation stack
-     * @return The popped View from the top of the stack, or null if the top View is the last
+     * @return The popped View from the top of the stack, or null if the top View is the last or
+     * a pending push was cancelled instead
      */
     @Nullable
     public View popWithAnimation(AnimatorFactory animatorFactory) {
         checkNotNull(animatorFactory, "animatorFactory == null");
-        if (!shouldPop()) return null;
-        stack.pop();
-        setBelowViewVisibility(View.VISIBLE);
-        View popped = peek();
-        startAnimation(animatorFactory, popped, popAnimationListener);
-        return popped;
+        if (animatorFactory == AnimatorFactory.NONE) {
+            return pop();
+        }
+        if (cancelLatestPendingPush()) return null;
+        boolean traced = TraceSections.begin(TraceSections.POP);
+        try {
+            boolean cancelledPush = settleOrCancelTransition();
+            if (!shouldPop()) return null;
+            if (cancelledPush) {
+                return popWithoutAnimation();
+            }
+            inflateTopIfDeferred();
+            int layoutId = stack.peek();
+            View popped = popEntry();
+            long start = startTiming();
+            if (inflateTopIfDeferred()) {
+                start = reportPhase(OPERATION_POP, PHASE_INFLATE, stack.peek(), start);
+            }
+            revealUncoveredEntries();
+            publishSnapshot();
+            transition.begin(OPERATION_POP, layoutId, popped);
+            transition.startNanos = start;
+            startAnimation(animatorFactory, popped, popAnimationListener);
+            return popped;
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    /**
+     * Starts a Transaction for applying several stack operations at once. Nothing changes until
+     * the Transaction is committed.
+     *
+     * @return A new Transaction, starting from the current stack
+     */
+    public Transaction beginTransaction() {
+        return new Transaction(this, stack.copy());
+    }
+
+    /**
+     * Pushes several layout ids in one step. Only the top View is inflated, the entries below it
+     * are inflated when pop() reaches them, and StackChangedListeners are notified once.
+     *
+     * @param layoutIds The layout ids to push, bottom first
+     * @return The View at the top of the navigation stack
+     */
+    public View pushAll(@LayoutRes int... layoutIds) {
+        beginTransaction().pushAll(layoutIds).commit();
+        return peek();
+    }
+
+    /**
+     * Pops entries off the navigation stack until the provided layout id is at the top, in one
+     * step
+     *
+     * @param layoutId The layout id to pop to
+     * @return The View at the top of the navigation stack
+     * @throws IllegalArgumentException if the layout id isn't in the stack
+     */
+    public View popTo(@LayoutRes int layoutId) {
+        beginTransaction().popTo(layoutId).commit();
+        return peek();
+    }
+
+    /**
+     * Replaces the whole navigation stack in one step. Entries at the bottom which match the
+     * current stack keep their Views, and only the new top View is inflated.
+     *
+     * @param layoutIds The new layout ids, bottom first
+     * @return The View at the top of the navigation stack
+     */
+    public View replaceStack(@LayoutRes int... layoutIds) {
+        beginTransaction().replaceStack(layoutIds).commit();
+        return peek();
+    }
+
+    void applyTransaction(ParcelableIntStack target) {
+        boolean traced = TraceSections.begin(TraceSections.TRANSACTION);
+        try {
+            settleTransition();
+            int oldTopLayoutId = layoutIdAt(stack.size() - 1);
+            int common = 0;
+            while (common < stack.size() && common < target.size()
+                    && stack.get(common) == target.get(common)) {
+                common++;
+            }
+            int oldSize = stack.size();
+            while (stack.size() > common) {
+                int layoutId = stack.peek();
+                View removed = popEntry();
+                if (removed != null) {
+                    removeFromContainer(removed);
+                    recycle(layoutId, removed);
+                }
+            }
+            // Entries below the new top are never shown, so they stay deferred
+            for (int i = common; i < target.size(); i++) {
+                pushEntry(target.get(i));
+            }
+            inflateTopIfDeferred();
+            applyVisibilityPolicy();
+            trimLiveViews();
+            // All container changes happen before the next traversal, so they share one layout pass
+            if (stack.size() > common) {
+                callOnViewAdded(OPERATION_TRANSACTION, oldSize, oldTopLayoutId);
+            } else if (oldSize > common) {
+                callOnViewRemoved(OPERATION_TRANSACTION, oldSize, oldTopLayoutId);
+            }
+        } finally {
+            TraceSections.end(traced);
+        }
     }
 
     /**
@@ -168,6 +817,7 @@ public final class ViewStack {
         if (size() == 0) {
             throw new EmptyStackException();
         }
+        inflateTopIfDeferred();
         return container.getChildAt(container.getChildCount() - 1);
     }
 
@@ -179,22 +829,368 @@ public final class ViewStack {
     }
 
     /**
-     * Clears the navigation stack and removes all Views from the provided ViewGroup container
+     * Returns an immutable snapshot of the layout ids in the navigation stack as of the last
+     * completed operation. Unlike the other methods, this may be called from any thread, and
+     * doesn't lock. An animated pop is complete as soon as it starts.
+     *
+     * @return The latest StackSnapshot
+     */
+    public StackSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Pushes the provided layout id on the main thread, as with push(). May be called from any
+     * thread. Posted operations run in the order they were posted.
+     *
+     * @param layoutId The layout id to inflate into the parent ViewGroup
+     */
+    public void postPush(@LayoutRes final int layoutId) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                push(layoutId);
+            }
+        });
+    }
+
+    /**
+     * Pops the top View on the main thread, as with pop(). May be called from any thread. Posted
+     * operations run in the order they were posted, and a posted pop does nothing if the stack is
+     * empty by the time it runs.
+     */
+    public void postPop() {
+        mainHandler.post(postedPop);
+    }
+
+    /**
+     * Replaces the navigation stack on the main thread, as with replaceStack(). May be called
+     * from any thread. Posted operations run in the order they were posted.
+     *
+     * @param layoutIds The new layout ids, bottom first
+     */
+    public void postReplaceStack(@LayoutRes int... layoutIds) {
+        final int[] copy = layoutIds.clone();
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                replaceStack(copy);
+            }
+        });
+    }
+
+    private final Runnable postedPop = new Runnable() {
+        @Override
+        public void run() {
+            if (size() > 0) {
+                pop();
+            }
+        }
+    };
+
+    /**
+     * Clears the navigation stack and removes all Views from the provided ViewGroup container.
+     * Deletes the file of the last save, if it was saved to one with setSavedStateDirectory().
      */
     public void clear() {
-        stack.clear();
+        settleTransition();
+        cancelPendingPushes();
+        deleteWrittenFile();
+        int oldSize = stack.size();
+        int oldTopLayoutId = layoutIdAt(oldSize - 1);
+        boolean traced = TraceSections.begin(TraceSections.REMOVE_VIEW);
         container.removeAllViews();
-        callOnViewRemoved();
+        TraceSections.end(traced);
+        while (!stack.isEmpty()) {
+            int layoutId = stack.peek();
+            View removed = popEntry();
+            if (removed != null) {
+                recycle(layoutId, removed);
+            }
+        }
+        callOnViewRemoved(OPERATION_CLEAR, oldSize, oldTopLayoutId);
+    }
+
+    /**
+     * Sets the ViewPool used to recycle popped Views. Views removed by pop(), popWithAnimation()
+     * and clear() are released into the pool, and pushes of the same layout id reuse them instead
+     * of inflating a new View. A View returned by pop() may therefore be pushed again later, so
+     * callers shouldn't hold on to it.
+     *
+     * @param viewPool A ViewPool, or null to stop recycling Views
+     */
+    public void setViewPool(@Nullable ViewPool viewPool) {
+        this.viewPool = viewPool;
+    }
+
+    /**
+     * Sets a CompiledLayout which builds the Views for the provided layout id in code, instead of
+     * inflating them from XML. Applies to every way a View is created: pushes, async pushes,
+     * prefetching and inflating deferred entries.
+     *
+     * @param layoutId       The layout id
+     * @param compiledLayout A CompiledLayout, or null to inflate the layout from XML again
+     */
+    @Override
+    public void setCompiledLayout(@LayoutRes int layoutId,
+                                  @Nullable CompiledLayout compiledLayout) {
+        inflater.setCompiledLayout(layoutId, compiledLayout);
+    }
+
+    /**
+     * Inflates the provided layout while the main thread is idle and keeps the detached View, so
+     * that the next push of this layout id only has to add it to the container. Useful for
+     * screens which are likely to be pushed next. Must be called on the main thread.
+     *
+     * @param layoutId The layout id to prefetch
+     */
+    public void prefetch(@LayoutRes int layoutId) {
+        prefetcher.request(layoutId);
     }
 
     /**
-     * Adds a StackChangedListener for stack-changed events
+     * Sets how many prefetched Views are kept and for how long. Discards any prefetched Views.
+     * The defaults are 2 Views for 10 seconds.
+     *
+     * @param maxViews     The maximum number of prefetched Views; the oldest is dropped first
+     * @param expiryMillis How long a prefetched View is kept before it's dropped
+     */
+    public void setPrefetchLimits(int maxViews, long expiryMillis) {
+        checkPositive(maxViews, "maxViews <= 0");
+        checkPositive(expiryMillis, "expiryMillis <= 0");
+        prefetcher.setLimits(maxViews, expiryMillis);
+    }
+
+    /**
+     * Keeps saved stacks whose encoding is at least minBytes long in a file in the provided
+     * directory instead of the Bundle, so the Bundle only holds the file name and a checksum. This
+     * keeps deep stacks from making the saved instance state, which goes through binder, too
+     * large. The file is only written again when the stack changed. Every save which writes a file
+     * gets a new file name, so ViewStacks which use the same tag and directory, e.g. those of two
+     * instances of an Activity, don't overwrite each other's state, and the file of the previous
+     * save is deleted. The file is also deleted by clear() and when the last entry is popped and
+     * the ViewStackDelegate is asked to finish the stack. Files left behind otherwise, e.g. by an
+     * Activity whose process was killed and which was never restored, are deleted once 8 newer
+     * files were saved with the same tag.
+     * <p>
+     * Use an app-private directory which isn't cleared while the app is in the background, e.g.
+     * Context.getFilesDir(), and call this before rebuildFromBundle(). If the file can't be
+     * written, the stack is saved to the Bundle instead.
+     *
+     * @param directory The directory for saved state files, or null to always use the Bundle
+     * @param minBytes  The smallest encoded stack which is saved to a file
+     */
+    public void setSavedStateDirectory(@Nullable File directory, int minBytes) {
+        checkPositive(minBytes, "minBytes <= 0");
+        this.savedStateDirectory = directory;
+        this.minSavedStateFileBytes = minBytes;
+        writtenFileTag = null;
+    }
+
+    /**
+     * Sets the VisibilityPolicy for Views below the top of the navigation stack and applies it to
+     * the Views in the container. A running animated transition is fast-forwarded first. The
+     * default is VisibilityPolicy.GONE.
+     *
+     * @param visibilityPolicy A VisibilityPolicy
+     */
+    public void setVisibilityPolicy(VisibilityPolicy visibilityPolicy) {
+        checkNotNull(visibilityPolicy, "visibilityPolicy == null");
+        settleTransition();
+        this.visibilityPolicy = visibilityPolicy;
+        applyVisibilityPolicy();
+    }
+
+    /**
+     * Sets whether the animating View, and the View below it while it's visible, are drawn from
+     * hardware layers during animated pushes and pops. Their original layer types are restored
+     * when the animation ends or is cancelled. Only applies while the container is hardware
+     * accelerated. Off by default.
+     * <p>
+     * This makes animations of alpha, translation, scale and rotation cheaper, since the Views'
+     * children aren't redrawn on every frame. It doesn't help, and costs memory, if the
+     * AnimatorFactory animates the content of the Views.
+     *
+     * @param useHardwareLayers true to use hardware layers during animations
+     */
+    public void setUseHardwareLayers(boolean useHardwareLayers) {
+        this.useHardwareLayers = useHardwareLayers;
+    }
+
+    /**
+     * Sets a TransitionMetrics which is given the timing of each phase of every push and pop, e.g.
+     * a TransitionHistograms. Transitions which are already running when it's set aren't timed.
+     *
+     * @param transitionMetrics A TransitionMetrics, or null to stop timing transitions
+     */
+    public void setTransitionMetrics(@Nullable TransitionMetrics transitionMetrics) {
+        this.transitionMetrics = transitionMetrics;
+        transition.startNanos = 0;
+    }
+
+    /**
+     * Sets a StackEventLog which records every stack operation and animation start, end and
+     * cancellation of this ViewStack, e.g. for crash reports. One StackEventLog may be shared by
+     * several ViewStacks.
+     *
+     * @param eventLog A StackEventLog, or null to stop recording events
+     */
+    public void setStackEventLog(@Nullable StackEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Sets a TransitionFrameListener which is given the number of frames, slow frames and the
+     * worst frame time of every animated push and pop. The frames are counted with a Choreographer
+     * frame callback which is only posted while an animation runs. Frames are only counted on
+     * API 16 and up.
+     *
+     * @param listener A TransitionFrameListener, or null to stop counting frames
+     */
+    public void setTransitionFrameListener(@Nullable TransitionFrameListener listener) {
+        if (frameMonitor != null) {
+            if (frameMonitor.getListener() == listener) return;
+            frameMonitor.cancel();
+        }
+        frameMonitor = listener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new FrameMonitor(listener) : null;
+    }
+
+    /**
+     * Sets whether this ViewStack gives up memory when the system reports memory pressure through
+     * ComponentCallbacks2, as onTrimMemory() describes. The callbacks are registered with the
+     * application Context only while the container is attached to a window. Only applies on
+     * API 14 and up. Off by default. Must be called on the main thread.
+     *
+     * @param enabled true to trim memory on memory pressure
+     */
+    public void setTrimMemoryEnabled(boolean enabled) {
+        if (enabled == (trimMemoryCallbacks != null)
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return;
+        }
+        if (enabled) {
+            trimMemoryCallbacks = new TrimMemoryCallbacks(this, container);
+            trimMemoryCallbacks.enable();
+        } else {
+            trimMemoryCallbacks.disable();
+            trimMemoryCallbacks = null;
+        }
+    }
+
+    /**
+     * Gives up memory according to the provided ComponentCallbacks2 trim level. Called by
+     * setTrimMemoryEnabled(), or forward an Activity's onTrimMemory() here instead.
+     * <p>
+     * At every level, prefetched Views, pending prefetches and the Views in the ViewPool are
+     * dropped. From TRIM_MEMORY_RUNNING_CRITICAL up, which includes TRIM_MEMORY_UI_HIDDEN and the
+     * background levels, the hierarchy state of every entry below the top which isn't visible is
+     * saved and its View is removed, so that only its layout id and saved state are kept. It's
+     * inflated again when pop() reaches it. Visible entries, e.g. below a dialog or during an
+     * animation, are kept.
+     *
+     * @param level A ComponentCallbacks2.TRIM_MEMORY_ constant
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            deferHiddenEntries();
+        }
+        // Cleared last, since deferred entries release their Views into the pool
+        prefetcher.clear();
+        if (viewPool != null) {
+            viewPool.clear();
+        }
+    }
+
+    /**
+     * Switches android.os.Trace sections for the work of all ViewStacks on or off, so that
+     * pushes, pops, transactions, inflation, adding and removing Views, the first layout of an
+     * animated push and the start and end of animations show up in systrace and Perfetto.
+     * Sections are only added on API 18 and up, and only while the app is being traced.
+     *
+     * @param enabled true to add trace sections
+     */
+    public static void setTraceSectionsEnabled(boolean enabled) {
+        TraceSections.setEnabled(enabled);
+    }
+
+    /**
+     * Fast-forwards a running animated transition, e.g. before the container is detached
+     */
+    void endTransition() {
+        settleTransition();
+    }
+
+    /**
+     * Saves the hierarchy state of every live entry, including the top, and removes their Views
+     * from the container, so that only the layout ids and saved state are kept. The top is
+     * inflated again by the next operation which needs it.
+     */
+    void deferAllViews() {
+        settleTransition();
+        for (int i = 0; i < stack.size(); i++) {
+            if (entryViews[i] != null) {
+                deferEntry(i);
+            }
+        }
+    }
+
+    /**
+     * @return The estimated bytes used by the Views in the container
+     */
+    long estimateLiveBytes(MemoryEstimator estimator) {
+        long bytes = 0;
+        for (int i = 0; i < container.getChildCount(); i++) {
+            bytes += estimator.estimateBytes(container.getChildAt(i));
+        }
+        return bytes;
+    }
+
+    // Package private for tests
+    int prefetchedViewCount() {
+        return prefetcher.size();
+    }
+
+    /**
+     * Limits the number of entries whose Views are kept in the container. Views of deeper entries
+     * have their hierarchy state saved and are removed, then inflated and restored again when
+     * pop() uncovers them.
+     *
+     * @param maxLiveViews The maximum number of Views to keep in the container
+     */
+    public void setMaxLiveViews(int maxLiveViews) {
+        checkPositive(maxLiveViews, "maxLiveViews <= 0");
+        this.maxLiveViews = maxLiveViews;
+        trimLiveViews();
+    }
+
+    /**
+     * Limits the estimated memory used by Views in the container. Views of the deepest entries
+     * are removed, as with setMaxLiveViews(), until the estimate fits the budget. The top View is
+     * always kept.
+     *
+     * @param maxBytes  The maximum estimated number of bytes for all Views in the container
+     * @param estimator Estimates the bytes used by a single View
+     */
+    public void setLiveViewByteBudget(long maxBytes, MemoryEstimator estimator) {
+        checkPositive(maxBytes, "maxBytes <= 0");
+        checkNotNull(estimator, "estimator == null");
+        this.liveViewByteBudget = maxBytes;
+        this.memoryEstimator = estimator;
+        trimLiveViews();
+    }
+
+    /**
+     * Adds a StackChangedListener for stack-changed events. Listeners may be added or removed
+     * while they're being notified; the change applies from the next event.
      *
      * @param listener A StackChangedListener
      * @return always true
      */
     public boolean addStackChangedListener(StackChangedListener listener) {
-        return listeners.add(listener);
+        listeners = append(listeners, listener);
+        return true;
     }
 
     /**
@@ -204,43 +1200,440 @@ public final class ViewStack {
      * @return true if the StackChangedListener was actually removed
      */
     public boolean removeStackChangedListener(StackChangedListener listener) {
-        return listeners.remove(listener);
+        StackChangedListener[] old = listeners;
+        listeners = remove(old, listener);
+        return listeners != old;
     }
 
     /**
      * Removes all StackChangedListeners
      */
     public void clearStackChangedListeners() {
-        listeners.clear();
+        listeners = new StackChangedListener[0];
+    }
+
+    /**
+     * Adds a StackOperationListener, which is told the kind of each stack change and the stack's
+     * size and top layout id before and after it. Listeners may be added or removed while they're
+     * being notified; the change applies from the next event.
+     *
+     * @param listener A StackOperationListener
+     */
+    public void addStackOperationListener(StackOperationListener listener) {
+        checkNotNull(listener, "listener == null");
+        operationListeners = append(operationListeners, listener);
+    }
+
+    /**
+     * Removes the supplied StackOperationListener
+     *
+     * @param listener The StackOperationListener to remove
+     * @return true if the StackOperationListener was actually removed
+     */
+    public boolean removeStackOperationListener(StackOperationListener listener) {
+        StackOperationListener[] old = operationListeners;
+        operationListeners = remove(old, listener);
+        return operationListeners != old;
+    }
+
+    /**
+     * Removes all StackOperationListeners
+     */
+    public void clearStackOperationListeners() {
+        operationListeners = new StackOperationListener[0];
     }
 
     // Animator listeners are package private so that animations can be "controlled" from tests
     Animator.AnimatorListener pushAnimatorListener = new AnimatorListenerAdapter() {
         @Override
         public void onAnimationEnd(Animator animator) {
-            setBelowViewVisibility(View.GONE);
+            if (transition.isPush()) {
+                finishPushTransition();
+            }
         }
     };
 
     Animator.AnimatorListener popAnimationListener = new AnimatorListenerAdapter() {
         @Override
         public void onAnimationEnd(Animator animator) {
-            container.removeView(peek());
-            callOnViewRemoved();
+            if (transition.isRunning() && !transition.isPush()) {
+                finishPopTransition();
+            }
         }
     };
 
-    private void setBelowViewVisibility(int visibility) {
-        if (container.getChildCount() > 1) {
-            container.getChildAt(container.getChildCount() - 2).setVisibility(visibility);
+    private void finishPushTransition() {
+        finishPushTransition(true);
+    }
+
+    private void finishPushTransition(boolean trim) {
+        boolean traced = TraceSections.begin(TraceSections.ANIMATION_END);
+        try {
+            int layoutId = transition.layoutId;
+            reportPhase(OPERATION_PUSH, PHASE_ANIMATION, layoutId, transition.startNanos);
+            recordEvent(StackEventLog.EVENT_ANIMATION_END, layoutId);
+            stopFrameMonitor();
+            Animator animator = transition.animator;
+            AnimatorFactory animatorFactory = transition.animatorFactory;
+            transition.clear(pushAnimatorListener);
+            releaseAnimator(animatorFactory, animator);
+            hideCoveredEntry();
+            if (trim) {
+                trimLiveViews();
+            }
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void finishPopTransition() {
+        boolean traced = TraceSections.begin(TraceSections.ANIMATION_END);
+        try {
+            int layoutId = transition.layoutId;
+            View popped = transition.view;
+            long start =
+                    reportPhase(OPERATION_POP, PHASE_ANIMATION, layoutId, transition.startNanos);
+            recordEvent(StackEventLog.EVENT_ANIMATION_END, layoutId);
+            stopFrameMonitor();
+            Animator animator = transition.animator;
+            AnimatorFactory animatorFactory = transition.animatorFactory;
+            transition.clear(popAnimationListener);
+            releaseAnimator(animatorFactory, animator);
+            removeFromContainer(popped);
+            recycle(layoutId, popped);
+            reportPhase(OPERATION_POP, PHASE_REMOVE, layoutId, start);
+            callOnViewPopped(layoutId);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    /**
+     * Fast-forwards the running transition, if any, to its end values and completes it
+     */
+    private void settleTransition() {
+        if (!transition.isRunning()) return;
+        Animator animator = transition.animator;
+        boolean push = transition.isPush();
+        if (animator != null) {
+            // Our listener is removed first, so the transition is completed exactly once below
+            // even if the Animator doesn't call onAnimationEnd() from end()
+            animator.removeListener(push ? pushAnimatorListener : popAnimationListener);
+            animator.end();
+        }
+        if (push) {
+            finishPushTransition();
+        } else {
+            finishPopTransition();
+        }
+    }
+
+    /**
+     * Prepares for a pop. A running push is cancelled, since the pop undoes it, and its View stays
+     * at the top of the stack for the pop to remove without animating. A running pop is settled.
+     *
+     * @return true if a running push was cancelled
+     */
+    private boolean settleOrCancelTransition() {
+        if (!transition.isPush()) {
+            settleTransition();
+            return false;
+        }
+        Animator animator = transition.animator;
+        AnimatorFactory animatorFactory = transition.animatorFactory;
+        recordEvent(StackEventLog.EVENT_ANIMATION_CANCEL, transition.layoutId);
+        stopFrameMonitor();
+        transition.clear(pushAnimatorListener);
+        if (animator != null) {
+            animator.cancel();
+            releaseAnimator(animatorFactory, animator);
+        }
+        return true;
+    }
+
+    /**
+     * Hands a finished Animator back to the ReusableAnimatorFactory which created it
+     */
+    private static void releaseAnimator(@Nullable AnimatorFactory animatorFactory,
+                                        @Nullable Animator animator) {
+        if (animator != null && animatorFactory instanceof ReusableAnimatorFactory) {
+            ((ReusableAnimatorFactory) animatorFactory).releaseAnimator(animator);
+        }
+    }
+
+    private View obtainView(@LayoutRes int layoutId) {
+        View view = takeCachedView(layoutId);
+        return view != null ? view : inflater.inflate(layoutId, container);
+    }
+
+    @Nullable
+    private View takeCachedView(@LayoutRes int layoutId) {
+        View view = prefetcher.take(layoutId);
+        if (view == null && viewPool != null) {
+            view = viewPool.acquire(layoutId);
+        }
+        return view;
+    }
+
+    private void recycle(@LayoutRes int layoutId, View view) {
+        if (viewPool != null) {
+            viewPool.release(layoutId, view);
+        }
+    }
+
+    /**
+     * Pushes an entry onto the stack without a View, i.e. deferred
+     */
+    private void pushEntry(@LayoutRes int layoutId) {
+        stack.push(layoutId);
+        workingSnapshot = workingSnapshot.push(layoutId, ++snapshotVersion);
+        invalidateEncodedStack();
+        if (stack.size() > entryViews.length) {
+            entryViews = Arrays.copyOf(entryViews, entryViews.length * 2);
+        }
+    }
+
+    /**
+     * Pops the top entry off the stack. Its View, if any, is left in the container.
+     *
+     * @return The View of the popped entry, or null if it was deferred
+     */
+    @Nullable
+    private View popEntry() {
+        int index = stack.size() - 1;
+        View view = entryViews[index];
+        if (view != null) {
+            entryViews[index] = null;
+            liveCount--;
+        }
+        deferredStates.remove(index);
+        stack.pop();
+        workingSnapshot = workingSnapshot.pop(++snapshotVersion);
+        invalidateEncodedStack();
+        return view;
+    }
+
+    private void invalidateEncodedStack() {
+        encodedStack = null;
+        writtenFileTag = null;
+    }
+
+    /**
+     * Adds the View of a deferred entry to the container, above the Views of all live entries
+     * below it
+     */
+    private void attachEntryView(int index, View view) {
+        int containerIndex = 0;
+        for (int i = index - 1; i >= 0; i--) {
+            if (entryViews[i] != null) {
+                containerIndex = container.indexOfChild(entryViews[i]) + 1;
+                break;
+            }
+        }
+        entryViews[index] = view;
+        liveCount++;
+        boolean traced = TraceSections.begin(TraceSections.ADD_VIEW);
+        container.addView(view, containerIndex);
+        TraceSections.end(traced);
+    }
+
+    /**
+     * Inflates the View of a deferred entry, restores its saved hierarchy state and adds it to the
+     * container
+     */
+    private View inflateEntry(int index) {
+        View view = obtainView(stack.get(index));
+        SparseArray<Parcelable> state = deferredStates.get(index);
+        if (state != null) {
+            view.restoreHierarchyState(state);
+            deferredStates.remove(index);
+        }
+        view.setVisibility(visibilityAt(index));
+        attachEntryView(index, view);
+        return view;
+    }
+
+    /**
+     * Saves the hierarchy state of a live entry, removes its View from the container and recycles
+     * it
+     */
+    private void deferEntry(int index) {
+        View view = entryViews[index];
+        SparseArray<Parcelable> state = new SparseArray<>();
+        view.saveHierarchyState(state);
+        deferredStates.put(index, state);
+        removeFromContainer(view);
+        entryViews[index] = null;
+        liveCount--;
+        recycle(stack.get(index), view);
+    }
+
+    private void deferHiddenEntries() {
+        for (int i = 0; i < stack.size() - 1; i++) {
+            View view = entryViews[i];
+            if (view != null && view.getVisibility() != View.VISIBLE) {
+                deferEntry(i);
+            }
+        }
+        // Deferred entries stay deferred until they're needed
+        if (idleInflationScheduled) {
+            idleInflationScheduled = false;
+            Looper.myQueue().removeIdleHandler(inflateDeferredViewWhenIdle);
+        }
+    }
+
+    private void trimLiveViews() {
+        boolean budgeted = liveViewByteBudget != Long.MAX_VALUE;
+        long bytes = budgeted ? estimateLiveBytes(memoryEstimator) : 0;
+        // The deepest live entries are deferred first, and the top entry is always kept
+        int index = 0;
+        while (liveCount > 1 && (liveCount > maxLiveViews || bytes > liveViewByteBudget)) {
+            while (entryViews[index] == null) {
+                index++;
+            }
+            if (budgeted) {
+                bytes -= memoryEstimator.estimateBytes(entryViews[index]);
+            }
+            deferEntry(index);
+        }
+    }
+
+    /**
+     * Inflates the highest deferred entry below the top, as long as the live window has room
+     * for it
+     *
+     * @return true if there may be room for another one
+     */
+    private boolean inflateDeferredViewBelowLiveViews() {
+        if (liveCount >= maxLiveViews) return false;
+        int index = stack.size() - 2;
+        while (index >= 0 && entryViews[index] != null) {
+            index--;
+        }
+        if (index < 0) return false;
+        inflateEntry(index);
+        trimLiveViews();
+        return entryViews[index] != null && liveCount < stack.size();
+    }
+
+    /**
+     * @return true if the top entry was deferred and has been inflated
+     */
+    boolean inflateTopIfDeferred() {
+        int top = stack.size() - 1;
+        if (top < 0 || entryViews[top] != null) return false;
+        inflateEntry(top);
+        return true;
+    }
+
+    /**
+     * @return The visibility which the VisibilityPolicy gives the entry at the stack index
+     */
+    private int visibilityAt(int index) {
+        int depth = stack.size() - 1 - index;
+        return depth <= visibilityPolicy.getVisibleEntriesBelowTop()
+                ? View.VISIBLE : visibilityPolicy.getHiddenVisibility();
+    }
+
+    private void updateVisibility(int index) {
+        if (index >= 0 && entryViews[index] != null) {
+            entryViews[index].setVisibility(visibilityAt(index));
+        }
+    }
+
+    /**
+     * After a push, hides the entry which has just dropped out of the visible entries below the
+     * top. All other entries already have the right visibility.
+     */
+    private void hideCoveredEntry() {
+        updateVisibility(stack.size() - 2 - visibilityPolicy.getVisibleEntriesBelowTop());
+    }
+
+    /**
+     * After a pop, shows the new top and the entry which has just moved into the visible entries
+     * below it
+     */
+    private void revealUncoveredEntries() {
+        updateVisibility(stack.size() - 1);
+        updateVisibility(stack.size() - 1 - visibilityPolicy.getVisibleEntriesBelowTop());
+    }
+
+    private void applyVisibilityPolicy() {
+        for (int i = 0; i < stack.size(); i++) {
+            updateVisibility(i);
         }
     }
 
     private void startAnimation(AnimatorFactory animatorFactory, View view,
                                 Animator.AnimatorListener listener) {
-        Animator animator = animatorFactory.createAnimator(view);
-        animator.addListener(listener);
-        animator.start();
+        boolean traced = TraceSections.begin(TraceSections.ANIMATION_START);
+        try {
+            recordEvent(StackEventLog.EVENT_ANIMATION_START, transition.layoutId);
+            if (frameMonitor != null) {
+                // Before start(), in case the Animator ends right away
+                frameMonitor.start(transition.operation, transition.layoutId, animatorFactory,
+                        view);
+            }
+            Animator animator = animatorFactory.createAnimator(view);
+            // Set before start(), in case the Animator ends right away
+            transition.animator = animator;
+            transition.animatorFactory = animatorFactory;
+            if (useHardwareLayers && container.isHardwareAccelerated()) {
+                transition.promoteToHardwareLayer(view);
+                // The animating View is at the top of the container during both pushes and pops
+                View below = container.getChildAt(container.getChildCount() - 2);
+                if (below != null && below.getVisibility() == View.VISIBLE) {
+                    transition.promoteToHardwareLayer(below);
+                }
+            }
+            animator.addListener(listener);
+            animator.start();
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void removeFromContainer(View view) {
+        boolean traced = TraceSections.begin(TraceSections.REMOVE_VIEW);
+        container.removeView(view);
+        TraceSections.end(traced);
+    }
+
+    private void stopFrameMonitor() {
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+    }
+
+    private void recordEvent(int event, @LayoutRes int layoutId) {
+        StackEventLog eventLog = this.eventLog;
+        if (eventLog != null) {
+            eventLog.record(event, layoutId, stack.size());
+        }
+    }
+
+    /**
+     * @return The start time for a timed phase, or 0 if transitions aren't being timed
+     */
+    private long startTiming() {
+        return transitionMetrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Reports a phase which started at startNanos, unless it wasn't timed
+     *
+     * @return The end time of the phase, for timing the next one
+     */
+    private long reportPhase(int operation, int phase, @LayoutRes int layoutId, long startNanos) {
+        long now = startTiming();
+        if (transitionMetrics != null && startNanos != 0) {
+            transitionMetrics.onPhaseTimed(operation, phase, layoutId, now - startNanos);
+        }
+        return now;
+    }
+
+    private boolean cancelLatestPendingPush() {
+        return !pendingPushes.isEmpty() && cancelPendingPush(pendingPushes.peekLast());
     }
 
     private boolean shouldPop() {
@@ -248,21 +1641,90 @@ public final class ViewStack {
             throw new EmptyStackException();
         }
         if (size() == 1) {
+            // A finished stack won't be rebuilt from its last save
+            deleteWrittenFile();
             delegate.finishStack();
             return false;
         }
         return true;
     }
 
-    private void callOnViewAdded() {
-        for (StackChangedListener listener : listeners) {
-            listener.onViewAdded(peek());
+    /**
+     * @return The layout id at the stack index, or 0 if the index is below the bottom
+     */
+    private int layoutIdAt(int index) {
+        return index >= 0 ? stack.get(index) : 0;
+    }
+
+    private void callOnViewPushed() {
+        callOnViewAdded(StackOperationListener.OPERATION_PUSH, stack.size() - 1,
+                layoutIdAt(stack.size() - 2));
+    }
+
+    private void callOnViewPopped(@LayoutRes int poppedLayoutId) {
+        callOnViewRemoved(StackOperationListener.OPERATION_POP, stack.size() + 1, poppedLayoutId);
+    }
+
+    private void publishSnapshot() {
+        if (snapshot != workingSnapshot) {
+            snapshot = workingSnapshot;
         }
     }
 
-    private void callOnViewRemoved() {
+    private void callOnViewAdded(int operation, int oldSize, @LayoutRes int oldTopLayoutId) {
+        // Every operation ends by notifying listeners, so it's complete at this point
+        publishSnapshot();
+        // Listeners may change the listeners or the stack, so each loop reads its array once
+        StackChangedListener[] listeners = this.listeners;
+        if (listeners.length > 0) {
+            View top = peek();
+            for (StackChangedListener listener : listeners) {
+                listener.onViewAdded(top);
+            }
+        }
+        callOnStackOperation(operation, oldSize, oldTopLayoutId);
+    }
+
+    private void callOnViewRemoved(int operation, int oldSize, @LayoutRes int oldTopLayoutId) {
+        publishSnapshot();
+        StackChangedListener[] listeners = this.listeners;
         for (StackChangedListener listener : listeners) {
             listener.onViewRemoved();
         }
+        callOnStackOperation(operation, oldSize, oldTopLayoutId);
+    }
+
+    private void callOnStackOperation(int operation, int oldSize, @LayoutRes int oldTopLayoutId) {
+        // The StackEventLog's event constants match the operations
+        recordEvent(operation, layoutIdAt(stack.size() - 1));
+        StackOperationListener[] operationListeners = this.operationListeners;
+        if (operationListeners.length == 0) return;
+        int newSize = stack.size();
+        int newTopLayoutId = layoutIdAt(newSize - 1);
+        for (StackOperationListener listener : operationListeners) {
+            listener.onStackOperation(operation, oldSize, newSize, oldTopLayoutId,
+                    newTopLayoutId);
+        }
+    }
+
+    private static <T> T[] append(T[] array, T element) {
+        T[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = element;
+        return result;
+    }
+
+    /**
+     * @return A copy of the array without the first occurrence of the element, or the array
+     * itself if it doesn't contain the element
+     */
+    private static <T> T[] remove(T[] array, T element) {
+        for (int i = 0; i < array.length; i++) {
+            if (element == null ? array[i] == null : element.equals(array[i])) {
+                T[] result = Arrays.copyOf(array, array.length - 1);
+                System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+                return result;
+            }
+        }
+        return array;
     }
 }
@@ -0,0 +1,363 @@
+package me.mattlogan.library;
+
+import android.content.ComponentCallbacks2;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+
+import static me.mattlogan.library.Preconditions.checkNotNull;
+import static me.mattlogan.library.Preconditions.checkPositive;
+import static me.mattlogan.library.Preconditions.checkStringNotEmpty;
+
+/**
+ * Manages several named ViewStacks, e.g. one per tab, in a single container. Each ViewStack keeps
+ * its Views in its own FrameLayout, and only the active ViewStack's FrameLayout is attached to the
+ * container, so switching back to a ViewStack re-attaches its Views instead of inflating them.
+ * <p>
+ * All ViewStacks share one LayoutInflater with its CompiledLayouts, one prefetcher and, if set, one
+ * ViewPool. Inactive ViewStacks keep their Views until setInactiveViewByteBudget() says
+ * otherwise, after which the least recently active ones only keep their layout ids and saved
+ * hierarchy state.
+ */
+public final class ViewStackGroup implements CompiledLayout.Registry, TrimMemoryCallbacks.Target {
+
+    private static final String NAMES_SUFFIX = ":names";
+    private static final String ACTIVE_SUFFIX = ":active";
+    private static final int DEFAULT_MAX_PREFETCHED_VIEWS = 2;
+    private static final long DEFAULT_PREFETCH_EXPIRY_MILLIS = 10000;
+
+    private static final class Entry {
+        final String name;
+        final FrameLayout container;
+        final ViewStack viewStack;
+
+        Entry(String name, FrameLayout container, ViewStack viewStack) {
+            this.name = name;
+            this.container = container;
+            this.viewStack = viewStack;
+        }
+    }
+
+    private final ViewGroup container;
+    private final ViewStackDelegate delegate;
+    private final ViewInflater inflater;
+    private final Prefetcher prefetcher;
+
+    // Ordered from most to least recently active
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    @Nullable private Entry active;
+
+    @Nullable private ViewPool viewPool;
+    private long inactiveViewByteBudget = Long.MAX_VALUE;
+    private MemoryEstimator memoryEstimator = MemoryEstimator.DEFAULT;
+    @Nullable private TrimMemoryCallbacks trimMemoryCallbacks;
+
+    /**
+     * Creates a new ViewStackGroup
+     *
+     * @param container Any ViewGroup container for the active ViewStack's Views
+     * @param delegate  A ViewStackDelegate responsible for "finishing" when any of the ViewStacks
+     *                  is finished
+     * @return A new ViewStackGroup instance
+     */
+    public static ViewStackGroup create(ViewGroup container, ViewStackDelegate delegate) {
+        checkNotNull(container, "container == null");
+        checkNotNull(delegate, "delegate == null");
+        return new ViewStackGroup(container, delegate);
+    }
+
+    private ViewStackGroup(ViewGroup container, ViewStackDelegate delegate) {
+        this.container = container;
+        this.delegate = delegate;
+        this.inflater = new ViewInflater(LayoutInflater.from(container.getContext()));
+        this.prefetcher = new Prefetcher(inflater, container, DEFAULT_MAX_PREFETCHED_VIEWS,
+                DEFAULT_PREFETCH_EXPIRY_MILLIS);
+    }
+
+    /**
+     * Returns the ViewStack with the provided name, creating an empty one if there isn't one yet.
+     * Its Views aren't attached to the container until it's made active.
+     *
+     * @param name The name of the ViewStack, e.g. a tab's
+     * @return The ViewStack with the provided name
+     */
+    public ViewStack getStack(String name) {
+        checkStringNotEmpty(name, "name is empty");
+        return obtainEntry(name).viewStack;
+    }
+
+    /**
+     * Attaches the Views of the ViewStack with the provided name to the container, creating the
+     * ViewStack if there isn't one yet, and detaches those of the previously active ViewStack. A
+     * running animated transition of the previously active ViewStack is fast-forwarded first.
+     *
+     * @param name The name of the ViewStack to make active
+     * @return The active ViewStack
+     */
+    public ViewStack setActiveStack(String name) {
+        checkStringNotEmpty(name, "name is empty");
+        Entry entry = obtainEntry(name);
+        if (entry == active) return entry.viewStack;
+        if (active != null) {
+            active.viewStack.endTransition();
+            container.removeView(active.container);
+        }
+        entries.remove(entry);
+        entries.add(0, entry);
+        active = entry;
+        // Only inflates if the ViewStack was kept as saved state
+        entry.viewStack.inflateTopIfDeferred();
+        container.addView(entry.container, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        trimInactiveViews();
+        return entry.viewStack;
+    }
+
+    /**
+     * @return The active ViewStack, or null if setActiveStack() hasn't been called
+     */
+    @Nullable
+    public ViewStack getActiveStack() {
+        return active != null ? active.viewStack : null;
+    }
+
+    /**
+     * @return The name of the active ViewStack, or null if setActiveStack() hasn't been called
+     */
+    @Nullable
+    public String getActiveStackName() {
+        return active != null ? active.name : null;
+    }
+
+    /**
+     * @return The number of ViewStacks in the group
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Sets the ViewPool shared by all ViewStacks in the group. See ViewStack.setViewPool().
+     *
+     * @param viewPool A ViewPool, or null to stop recycling Views
+     */
+    public void setViewPool(@Nullable ViewPool viewPool) {
+        this.viewPool = viewPool;
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).viewStack.setViewPool(viewPool);
+        }
+    }
+
+    /**
+     * Sets the CompiledLayout for a layout id for all ViewStacks in the group. See
+     * ViewStack.setCompiledLayout().
+     *
+     * @param layoutId       The layout id
+     * @param compiledLayout A CompiledLayout, or null to inflate the layout from XML again
+     */
+    @Override
+    public void setCompiledLayout(@LayoutRes int layoutId,
+                                  @Nullable CompiledLayout compiledLayout) {
+        inflater.setCompiledLayout(layoutId, compiledLayout);
+    }
+
+    /**
+     * Inflates the provided layout while the main thread is idle, so that the next push of this
+     * layout id onto any ViewStack in the group only has to add it to the container. See
+     * ViewStack.prefetch().
+     *
+     * @param layoutId The layout id to prefetch
+     */
+    public void prefetch(@LayoutRes int layoutId) {
+        prefetcher.request(layoutId);
+    }
+
+    /**
+     * Sets how many prefetched Views are kept for the group and for how long. See
+     * ViewStack.setPrefetchLimits().
+     *
+     * @param maxViews     The maximum number of prefetched Views; the oldest is dropped first
+     * @param expiryMillis How long a prefetched View is kept before it's dropped
+     */
+    public void setPrefetchLimits(int maxViews, long expiryMillis) {
+        checkPositive(maxViews, "maxViews <= 0");
+        checkPositive(expiryMillis, "expiryMillis <= 0");
+        prefetcher.setLimits(maxViews, expiryMillis);
+    }
+
+    /**
+     * Limits the estimated memory used by the Views of inactive ViewStacks. The most recently
+     * active ViewStacks keep their Views while they fit the budget. The others save the hierarchy
+     * state of their Views and release them into the ViewPool, if any, and are inflated again
+     * from their layout ids when they're made active. The active ViewStack is never trimmed.
+     *
+     * @param maxBytes  The maximum estimated number of bytes for the Views of inactive ViewStacks
+     * @param estimator Estimates the bytes used by a single View
+     */
+    public void setInactiveViewByteBudget(long maxBytes, MemoryEstimator estimator) {
+        checkPositive(maxBytes, "maxBytes <= 0");
+        checkNotNull(estimator, "estimator == null");
+        this.inactiveViewByteBudget = maxBytes;
+        this.memoryEstimator = estimator;
+        trimInactiveViews();
+    }
+
+    /**
+     * Sets whether this ViewStackGroup gives up memory when the system reports memory pressure
+     * through ComponentCallbacks2, as onTrimMemory() describes. The callbacks are registered with
+     * the application Context only while the container is attached to a window. Only applies on
+     * API 14 and up. Off by default. Must be called on the main thread.
+     * <p>
+     * Inactive ViewStacks are detached from the window, so their own setTrimMemoryEnabled() doesn't
+     * reach them. Use this instead.
+     *
+     * @param enabled true to trim memory on memory pressure
+     */
+    public void setTrimMemoryEnabled(boolean enabled) {
+        if (enabled == (trimMemoryCallbacks != null)
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return;
+        }
+        if (enabled) {
+            trimMemoryCallbacks = new TrimMemoryCallbacks(this, container);
+            trimMemoryCallbacks.enable();
+        } else {
+            trimMemoryCallbacks.disable();
+            trimMemoryCallbacks = null;
+        }
+    }
+
+    /**
+     * Gives up memory according to the provided ComponentCallbacks2 trim level. Called by
+     * setTrimMemoryEnabled(), or forward an Activity's onTrimMemory() here instead.
+     * <p>
+     * The active ViewStack is trimmed as with ViewStack.onTrimMemory(), and the shared prefetched
+     * Views and ViewPool are dropped at every level. From TRIM_MEMORY_RUNNING_CRITICAL up, every
+     * inactive ViewStack also saves the hierarchy state of its Views and releases them, as if it
+     * were over setInactiveViewByteBudget(), and is inflated again when it's made active.
+     *
+     * @param level A ComponentCallbacks2.TRIM_MEMORY_ constant
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // Over any budget, so every inactive ViewStack is trimmed
+            trimInactiveViews(-1);
+        }
+        if (active != null) {
+            active.viewStack.onTrimMemory(level);
+        }
+        // Cleared last, since trimmed ViewStacks release their Views into the pool
+        prefetcher.clear();
+        if (viewPool != null) {
+            viewPool.clear();
+        }
+    }
+
+    /**
+     * Saves every ViewStack in the group, and which one is active, to the provided Bundle. Each
+     * ViewStack is saved as with ViewStack.saveToBundle(), using the tag and its name.
+     * <p>
+     * Note that the host Activity only saves hierarchy state for Views which are attached, so
+     * Views of inactive ViewStacks only keep the state which was saved when they were trimmed.
+     *
+     * @param bundle The Bundle in which to save the ViewStacks
+     * @param tag    The tag, or "bundle key," for the stored data
+     */
+    public void saveToBundle(Bundle bundle, String tag) {
+        checkNotNull(bundle, "bundle == null");
+        checkStringNotEmpty(tag, "tag is empty");
+        String[] names = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            names[i] = entry.name;
+            entry.viewStack.saveToBundle(bundle, stackTag(tag, entry.name));
+        }
+        bundle.putStringArray(tag + NAMES_SUFFIX, names);
+        bundle.putString(tag + ACTIVE_SUFFIX, active != null ? active.name : null);
+    }
+
+    /**
+     * Rebuilds the ViewStacks which were saved with saveToBundle() and makes the one which was
+     * active when it was called active again. Only the active ViewStack's Views are inflated; the
+     * others are rebuilt lazily, as with ViewStack.rebuildFromBundleLazily().
+     * <p>
+     * A ViewStack whose saved state file is missing or corrupt, as described for
+     * ViewStack.rebuildFromBundle(), is left empty. Check the size of each ViewStack to find which
+     * ones need to start over.
+     *
+     * @param bundle A bundle containing saved ViewStackGroup state
+     * @param tag    The tag, or key, for which the ViewStackGroup state was saved
+     * @return true if every ViewStack was rebuilt, false if the saved state file of any of them was
+     * lost
+     */
+    public boolean rebuildFromBundle(Bundle bundle, String tag) {
+        checkNotNull(bundle, "bundle == null");
+        checkStringNotEmpty(tag, "tag is empty");
+        String[] names = bundle.getStringArray(tag + NAMES_SUFFIX);
+        checkNotNull(names, "Bundle doesn't contain any ViewStackGroup state.");
+        String activeName = bundle.getString(tag + ACTIVE_SUFFIX);
+        boolean rebuilt = true;
+        // Least recently active first, each moved to the front, so the order of entries is
+        // restored too
+        for (int i = names.length - 1; i >= 0; i--) {
+            Entry entry = obtainEntry(names[i]);
+            entries.remove(entry);
+            entries.add(0, entry);
+            ViewStack viewStack = entry.viewStack;
+            if (names[i].equals(activeName)) {
+                rebuilt &= viewStack.rebuildFromBundle(bundle, stackTag(tag, names[i]));
+            } else {
+                rebuilt &= viewStack.rebuildFromBundleLazily(bundle, stackTag(tag, names[i]));
+            }
+        }
+        if (activeName != null) {
+            setActiveStack(activeName);
+        }
+        return rebuilt;
+    }
+
+    private Entry obtainEntry(String name) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).name.equals(name)) {
+                return entries.get(i);
+            }
+        }
+        FrameLayout stackContainer = new FrameLayout(container.getContext());
+        ViewStack viewStack = new ViewStack(stackContainer, delegate, inflater, prefetcher);
+        viewStack.setViewPool(viewPool);
+        Entry entry = new Entry(name, stackContainer, viewStack);
+        // A new ViewStack is the least recently active one until it's made active
+        entries.add(entry);
+        return entry;
+    }
+
+    private void trimInactiveViews() {
+        if (inactiveViewByteBudget == Long.MAX_VALUE) return;
+        trimInactiveViews(inactiveViewByteBudget);
+    }
+
+    private void trimInactiveViews(long maxBytes) {
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry == active) continue;
+            if (bytes <= maxBytes) {
+                bytes += entry.viewStack.estimateLiveBytes(memoryEstimator);
+            }
+            if (bytes > maxBytes) {
+                entry.viewStack.deferAllViews();
+            }
+        }
+    }
+
+    private static String stackTag(String tag, String name) {
+        return tag + ":" + name;
+    }
+}
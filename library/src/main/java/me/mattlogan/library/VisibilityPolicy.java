@@ -0,0 +1,90 @@
+package me.mattlogan.library;
+
+import android.view.View;
+
+import static me.mattlogan.library.Preconditions.checkPositive;
+
+/**
+ * Interface for deciding which Views below the top of the navigation stack stay visible. The
+ * entries directly below the top are kept visible, and the other live Views are hidden.
+ */
+public interface VisibilityPolicy {
+
+    /**
+     * @return How many entries directly below the top stay visible
+     */
+    int getVisibleEntriesBelowTop();
+
+    /**
+     * @return The visibility of the other Views below the top, View.GONE or View.INVISIBLE
+     */
+    int getHiddenVisibility();
+
+    /**
+     * Makes every View below the top GONE. Hidden Views aren't measured or laid out, but pop()
+     * has to lay out the uncovered View again.
+     */
+    VisibilityPolicy GONE = new VisibilityPolicy() {
+        @Override
+        public int getVisibleEntriesBelowTop() {
+            return 0;
+        }
+
+        @Override
+        public int getHiddenVisibility() {
+            return View.GONE;
+        }
+    };
+
+    /**
+     * Makes every View below the top INVISIBLE. Hidden Views keep their layout, so pop() only
+     * has to draw the uncovered View, but they're still measured and laid out with the container.
+     */
+    VisibilityPolicy INVISIBLE = new VisibilityPolicy() {
+        @Override
+        public int getVisibleEntriesBelowTop() {
+            return 0;
+        }
+
+        @Override
+        public int getHiddenVisibility() {
+            return View.INVISIBLE;
+        }
+    };
+
+    /**
+     * Keeps a number of entries below the top visible, e.g. for translucent or dialog-style
+     * entries, and makes the Views below them GONE. Every visible View is drawn on each frame, so
+     * keep the count as low as possible. The visible entries need to be live, so any limit set
+     * with ViewStack.setMaxLiveViews() should be larger than the count.
+     */
+    final class KeepVisible implements VisibilityPolicy {
+
+        private final int count;
+
+        /**
+         * Creates a new KeepVisible policy
+         *
+         * @param count How many entries directly below the top stay visible
+         * @return A new KeepVisible instance
+         */
+        public static KeepVisible create(int count) {
+            checkPositive(count, "count <= 0");
+            return new KeepVisible(count);
+        }
+
+        private KeepVisible(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int getVisibleEntriesBelowTop() {
+            return count;
+        }
+
+        @Override
+        public int getHiddenVisibility() {
+            return View.GONE;
+        }
+    }
+}